@@ -49,6 +49,12 @@ tasks.compileJava {
     targetCompatibility = "17"
 }
 
+// java.lang.foreign, used by the FFM native backend, is a preview API on Java 21.
+// Only the classes using it are marked as preview, so the rest of the Java 21 layer loads as usual.
+tasks.named<JavaCompile>("compileJava21Java") {
+    options.compilerArgs.add("--enable-preview")
+}
+
 repositories {
     mavenCentral()
 }
@@ -65,6 +71,23 @@ dependencies {
     testRuntimeOnly(project(":natives"))
 }
 
+// Writes a memory-mapped asset bundle, to be served by WebviewAssetServer.addBundle.
+// Usage: ./gradlew assetBundle -PassetBundle.input=<directory> [-PassetBundle.output=<file>] [-PassetBundle.gzip=false]
+tasks.register<JavaExec>("assetBundle") {
+    group = "build"
+    description = "Writes a memory-mapped asset bundle from a directory of assets."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("net.notjustanna.webview.assets.AssetBundleWriter")
+
+    val input = providers.gradleProperty("assetBundle.input")
+    val output = providers.gradleProperty("assetBundle.output")
+        .orElse(layout.buildDirectory.file("assets.wvab").map { it.asFile.path })
+    val gzip = providers.gradleProperty("assetBundle.gzip").map { it.toBoolean() }.orElse(true)
+    argumentProviders.add(CommandLineArgumentProvider {
+        listOf(input.get(), output.get()) + if (gzip.get()) listOf("--gzip") else emptyList()
+    })
+}
+
 tasks.javadoc {
     // Configure Javadoc options to suppress warnings and link to the Java 17 API documentation.
     (options as StandardJavadocDocletOptions).addStringOption("Xdoclint:none", "-quiet")
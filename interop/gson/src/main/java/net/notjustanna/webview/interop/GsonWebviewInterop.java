@@ -3,12 +3,22 @@ package net.notjustanna.webview.interop;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 import net.notjustanna.webview.WebviewCore;
 import net.notjustanna.webview.interop.callback.GsonWebviewInteropFunction;
+import net.notjustanna.webview.interop.callback.GsonWebviewUploadFunction;
 import net.notjustanna.webview.interop.callback.WebviewInteropFunction;
+import net.notjustanna.webview.interop.callback.WebviewInteropRawFunction;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * A class that provides interop functionality for handling JavaScript requests
  * in a WebView using the Gson library. It extends the generic WebviewReflectionInterop
@@ -58,7 +68,23 @@ public class GsonWebviewInterop extends WebviewReflectionInterop<GsonWebviewInte
      */
     @Override
     protected @NotNull Object[] handleArgs(@NotNull String req, @NotNull Class<?>[] params) {
-        JsonArray json = this.gson.toJsonTree(req).getAsJsonArray();
+        return this.toArgs(this.gson.toJsonTree(req).getAsJsonArray(), params);
+    }
+
+    /**
+     * Parses the request JSON, as UTF-8 bytes, and maps it to an array of arguments.
+     *
+     * @param req    The request JSON in UTF-8 bytes.
+     * @param params The parameter types to map the arguments to.
+     * @return An array of arguments mapped to the specified parameter types.
+     * @throws IllegalArgumentException If the number of arguments does not match the parameter types.
+     */
+    @Override
+    protected @NotNull Object[] handleArgs(@NotNull InputStream req, @NotNull Class<?>[] params) {
+        return this.toArgs(readArray(this.gson, req), params);
+    }
+
+    private Object[] toArgs(JsonArray json, Class<?>[] params) {
         if (json.size() != params.length) {
             throw new IllegalArgumentException("Invalid number of arguments");
         }
@@ -74,20 +100,105 @@ public class GsonWebviewInterop extends WebviewReflectionInterop<GsonWebviewInte
     }
 
     /**
-     * Wraps a GsonWebviewInteropFunction into a WebviewInteropFunction.
+     * Runs the decoding and encoding done for bindings on synthetic payloads, so it is compiled early.
+     *
+     * @param iterations The number of synthetic calls.
+     * @see net.notjustanna.webview.WebviewPreload#warmUp(String, Runnable)
+     */
+    public static void warmUp(int iterations) {
+        warmUp(new Gson(), iterations);
+    }
+
+    /**
+     * Runs the decoding and encoding done for bindings on synthetic payloads, so it is compiled early.
+     *
+     * @param gson       The Gson instance bindings will use.
+     * @param iterations The number of synthetic calls.
+     * @see net.notjustanna.webview.WebviewPreload#warmUp(String, Runnable)
+     */
+    public static void warmUp(Gson gson, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            JsonArray json = readArray(gson, warmUpRequestStream(i));
+            gson.fromJson(json.get(0), Integer.class);
+            gson.fromJson(json.get(1), String.class);
+            gson.fromJson(json.get(2), Boolean.class);
+            gson.fromJson(json.get(5), int[].class);
+            Map<?, ?> object = gson.fromJson(json.get(4), Map.class);
+            gson.toJson(object);
+            gson.toJson(json);
+        }
+    }
+
+    /**
+     * Wraps a GsonWebviewInteropFunction into a WebviewInteropFunction, which reads requests straight from
+     * their UTF-8 bytes.
      *
      * @param callback The GsonWebviewInteropFunction to wrap.
      * @return A WebviewInteropFunction that processes JSON requests and responses.
      */
     @Override
     protected @NotNull WebviewInteropFunction wrap(@NotNull GsonWebviewInteropFunction callback) {
-        return req -> {
-            JsonArray json = this.gson.toJsonTree(req).getAsJsonArray();
+        return (WebviewInteropRawFunction) req -> {
+            JsonArray json = readArray(this.gson, req);
+            traceStage(TraceStage.DECODE);
             Object res = callback.apply(json);
+            traceStage(TraceStage.INVOKE);
             return handleResult(res);
         };
     }
 
+    /**
+     * Reads a JSON array from UTF-8 bytes. Gson only reads characters, so the bytes are decoded as they're read.
+     */
+    private static JsonArray readArray(Gson gson, InputStream req) {
+        return gson.fromJson(new InputStreamReader(req, StandardCharsets.UTF_8), JsonArray.class);
+    }
+
+    /**
+     * Evaluates a JavaScript script in the webview, and maps its result to the given type.
+     *
+     * @param script The script to be evaluated.
+     * @param type   The type to map the result to.
+     * @param <T>    The type of the result.
+     * @return A future of the result.
+     * @see WebviewCore#evaluateAsync(String)
+     */
+    public <T> CompletableFuture<T> evaluateAsync(@NotNull String script, @NotNull Class<T> type) {
+        return evaluateAsync(script, json -> this.gson.fromJson(json, type));
+    }
+
+    /**
+     * Evaluates a JavaScript script in the webview, and maps its result to the given generic type.
+     *
+     * @param script The script to be evaluated.
+     * @param type   The type to map the result to.
+     * @param <T>    The type of the result.
+     * @return A future of the result.
+     * @see WebviewCore#evaluateAsync(String)
+     */
+    public <T> CompletableFuture<T> evaluateAsync(@NotNull String script, @NotNull TypeToken<T> type) {
+        return evaluateAsync(script, json -> this.gson.fromJson(json, type.getType()));
+    }
+
+    /**
+     * Binds an upload handler to a new global JavaScript function, which uploads its argument in chunks.
+     * <p>
+     * The handler reads the uploaded JSON through a streaming reader, fed as chunks arrive, so the
+     * whole upload is never held in memory, as a string or as a tree.
+     *
+     * @param name    The name of the JavaScript function.
+     * @param handler The handler of uploads.
+     * @return The current instance of the class (for chaining).
+     * @see WebviewCore#bindUpload(String, net.notjustanna.webview.WebviewUploadHandler)
+     */
+    public GsonWebviewInterop bindUpload(@NotNull String name, @NotNull GsonWebviewUploadFunction handler) {
+        return bindUploadFunction(name, in -> {
+            try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                return this.gson.toJson(handler.apply(reader));
+            }
+        });
+    }
+
     /**
      * Converts a Throwable into a JSON string representation of the error.
      *
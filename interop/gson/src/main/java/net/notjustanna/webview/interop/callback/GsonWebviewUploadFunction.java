@@ -0,0 +1,25 @@
+package net.notjustanna.webview.interop.callback;
+
+import com.google.gson.stream.JsonReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A functional interface representing a handler of uploads from JavaScript in a WebView.
+ * The handler reads the uploaded JSON incrementally through a Gson JsonReader
+ * and returns a result that can be serialized to JSON.
+ */
+@FunctionalInterface
+public interface GsonWebviewUploadFunction {
+    /**
+     * Processes an upload from JavaScript and returns a result.
+     *
+     * @param reader A reader over the uploaded JSON, fed as chunks arrive.
+     * @return The result of the handler, which must be handleable by
+     *         {@link com.google.gson.Gson#toJson(Object)}.
+     * @throws Exception If an error occurs during processing, it will be caught
+     *                   and returned as a JSON string.
+     */
+    @Nullable
+    Object apply(@NotNull JsonReader reader) throws Exception;
+}
@@ -1,15 +1,24 @@
 package net.notjustanna.webview.interop;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import net.notjustanna.webview.WebviewCore;
 import net.notjustanna.webview.interop.callback.JacksonWebviewInteropFunction;
+import net.notjustanna.webview.interop.callback.JacksonWebviewUploadFunction;
 import net.notjustanna.webview.interop.callback.WebviewInteropFunction;
+import net.notjustanna.webview.interop.callback.WebviewInteropRawFunction;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * A class that provides interop functionality for handling JavaScript requests
  * in a WebView using the Jackson library. It extends the generic WebviewReflectionInterop
@@ -60,7 +69,23 @@ public class JacksonWebviewInterop extends WebviewReflectionInterop<JacksonWebvi
      */
     @Override
     protected @NotNull Object[] handleArgs(@NotNull String req, @NotNull Class<?>[] params) throws Exception {
-        ArrayNode json = (ArrayNode) this.objectMapper.readTree(req);
+        return this.toArgs((ArrayNode) this.objectMapper.readTree(req), params);
+    }
+
+    /**
+     * Parses the request JSON, as UTF-8 bytes, and maps it to an array of arguments.
+     *
+     * @param req    The request JSON in UTF-8 bytes.
+     * @param params The parameter types to map the arguments to.
+     * @return An array of arguments mapped to the specified parameter types.
+     * @throws Exception If an error occurs during parsing or mapping.
+     */
+    @Override
+    protected @NotNull Object[] handleArgs(@NotNull InputStream req, @NotNull Class<?>[] params) throws Exception {
+        return this.toArgs((ArrayNode) this.objectMapper.readTree(req), params);
+    }
+
+    private Object[] toArgs(ArrayNode json, Class<?>[] params) throws JsonProcessingException {
         if (json.size() != params.length) {
             throw new IllegalArgumentException("Invalid number of arguments");
         }
@@ -76,20 +101,102 @@ public class JacksonWebviewInterop extends WebviewReflectionInterop<JacksonWebvi
     }
 
     /**
-     * Wraps a JacksonWebviewInteropFunction into a WebviewInteropFunction.
+     * Runs the decoding and encoding done for bindings on synthetic payloads, so it is compiled early.
+     *
+     * @param iterations The number of synthetic calls.
+     * @see net.notjustanna.webview.WebviewPreload#warmUp(String, Runnable)
+     */
+    public static void warmUp(int iterations) {
+        warmUp(new ObjectMapper(), iterations);
+    }
+
+    /**
+     * Runs the decoding and encoding done for bindings on synthetic payloads, so it is compiled early.
+     *
+     * @param objectMapper The ObjectMapper instance bindings will use.
+     * @param iterations   The number of synthetic calls.
+     * @see net.notjustanna.webview.WebviewPreload#warmUp(String, Runnable)
+     */
+    public static void warmUp(ObjectMapper objectMapper, int iterations) {
+        try {
+            for (int i = 0; i < iterations; i++) {
+                ArrayNode json = (ArrayNode) objectMapper.readTree(warmUpRequestStream(i));
+                objectMapper.treeToValue(json.get(0), Integer.class);
+                objectMapper.treeToValue(json.get(1), String.class);
+                objectMapper.treeToValue(json.get(2), Boolean.class);
+                objectMapper.treeToValue(json.get(5), int[].class);
+                Map<?, ?> object = objectMapper.treeToValue(json.get(4), Map.class);
+                objectMapper.writeValueAsString(object);
+                objectMapper.writeValueAsString(json);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Wraps a JacksonWebviewInteropFunction into a WebviewInteropFunction, which parses requests straight
+     * from their UTF-8 bytes.
      *
      * @param callback The JacksonWebviewInteropFunction to wrap.
      * @return A WebviewInteropFunction that processes JSON requests and responses.
      */
     @Override
     protected @NotNull WebviewInteropFunction wrap(@NotNull JacksonWebviewInteropFunction callback) {
-        return req -> {
+        return (WebviewInteropRawFunction) req -> {
             ArrayNode json = (ArrayNode) this.objectMapper.readTree(req);
+            traceStage(TraceStage.DECODE);
             Object res = callback.apply(json);
+            traceStage(TraceStage.INVOKE);
             return this.objectMapper.writeValueAsString(res);
         };
     }
 
+    /**
+     * Evaluates a JavaScript script in the webview, and maps its result to the given type.
+     *
+     * @param script The script to be evaluated.
+     * @param type   The type to map the result to.
+     * @param <T>    The type of the result.
+     * @return A future of the result.
+     * @see WebviewCore#evaluateAsync(String)
+     */
+    public <T> CompletableFuture<T> evaluateAsync(@NotNull String script, @NotNull Class<T> type) {
+        return evaluateAsync(script, json -> this.objectMapper.readValue(json, type));
+    }
+
+    /**
+     * Evaluates a JavaScript script in the webview, and maps its result to the given generic type.
+     *
+     * @param script The script to be evaluated.
+     * @param type   The type to map the result to.
+     * @param <T>    The type of the result.
+     * @return A future of the result.
+     * @see WebviewCore#evaluateAsync(String)
+     */
+    public <T> CompletableFuture<T> evaluateAsync(@NotNull String script, @NotNull TypeReference<T> type) {
+        return evaluateAsync(script, json -> this.objectMapper.readValue(json, type));
+    }
+
+    /**
+     * Binds an upload handler to a new global JavaScript function, which uploads its argument in chunks.
+     * <p>
+     * The handler reads the uploaded JSON through a streaming parser, fed as chunks arrive, so the
+     * whole upload is never held in memory, as a string or as a tree.
+     *
+     * @param name    The name of the JavaScript function.
+     * @param handler The handler of uploads.
+     * @return The current instance of the class (for chaining).
+     * @see WebviewCore#bindUpload(String, net.notjustanna.webview.WebviewUploadHandler)
+     */
+    public JacksonWebviewInterop bindUpload(@NotNull String name, @NotNull JacksonWebviewUploadFunction handler) {
+        return bindUploadFunction(name, in -> {
+            try (JsonParser parser = this.objectMapper.createParser(in)) {
+                return this.objectMapper.writeValueAsString(handler.apply(parser));
+            }
+        });
+    }
+
     /**
      * Converts a Throwable into a JSON string representation of the error.
      *
@@ -0,0 +1,25 @@
+package net.notjustanna.webview.interop.callback;
+
+import com.fasterxml.jackson.core.JsonParser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A functional interface representing a handler of uploads from JavaScript in a WebView.
+ * The handler reads the uploaded JSON incrementally through a Jackson JsonParser
+ * and returns a result that can be serialized to JSON.
+ */
+@FunctionalInterface
+public interface JacksonWebviewUploadFunction {
+    /**
+     * Processes an upload from JavaScript and returns a result.
+     *
+     * @param parser A parser over the uploaded JSON, fed as chunks arrive.
+     * @return The result of the handler, which must be handleable by
+     *         {@link com.fasterxml.jackson.databind.ObjectMapper#writeValueAsString(Object)}.
+     * @throws Exception If an error occurs during processing, it will be caught
+     *                   and returned as a JSON string.
+     */
+    @Nullable
+    Object apply(@NotNull JsonParser parser) throws Exception;
+}
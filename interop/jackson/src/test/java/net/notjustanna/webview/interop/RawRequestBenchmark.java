@@ -0,0 +1,105 @@
+package net.notjustanna.webview.interop;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.ToIntFunction;
+
+/**
+ * Compares decoding a bound-call request from native memory through a string, as bindings used to,
+ * with parsing it straight from its UTF-8 bytes.
+ * <p>
+ * Each request is held in native memory, NUL-terminated and ending with the call metadata, as the
+ * webview library hands it to a binding.
+ */
+public class RawRequestBenchmark {
+    private static final int ROUNDS = 5;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) {
+        Payload[] payloads = {
+            new Payload("small ascii", request("\"hello\"", 1), 200_000),
+            new Payload("small cjk", request("\"" + "\u4f60\u597d\u4e16\u754c".repeat(8) + "\"", 1), 200_000),
+            new Payload("large ascii", request("\"" + "lorem ipsum ".repeat(20_000) + "\"", 4), 50),
+            new Payload("large cjk", request("\"" + "\u65e5\u672c\u8a9e\u306e\u30c6\u30ad\u30b9\u30c8".repeat(20_000) + "\"", 4), 5),
+        };
+
+        for (int warmup = 0; warmup < 2; warmup++) {
+            boolean print = warmup == 1;
+            for (Payload payload : payloads) {
+                run(print, payload, "string", RawRequestBenchmark::viaString);
+                run(print, payload, "raw", RawRequestBenchmark::viaBytes);
+            }
+        }
+    }
+
+    /**
+     * The previous path: decode the request, strip the metadata, escape it, then parse the string.
+     */
+    private static int viaString(Pointer req) {
+        try {
+            CallMeta meta = CallMeta.parse(req.getString(0, "UTF-8"));
+            JsonNode json = MAPPER.readTree(WebviewInterop.safeString(meta.requestString()));
+            return json.size();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The raw path: strip the metadata off the end of the bytes, then parse them from native memory.
+     */
+    private static int viaBytes(Pointer req) {
+        try {
+            CallMeta meta = CallMeta.parse(req, (int) req.indexOf(0, (byte) 0));
+            JsonNode json = MAPPER.readTree(meta.requestStream());
+            return json.size();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void run(boolean print, Payload payload, String name, ToIntFunction<Pointer> call) {
+        long best = Long.MAX_VALUE;
+        int sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < payload.calls; i++) {
+                sink += call.applyAsInt(payload.memory);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (print) {
+            System.out.printf("%-12s %-7s %10.1f ns/call (%d bytes, %d)%n",
+                payload.name, name, (double) best / payload.calls, payload.memory.size() - 1, sink & 1);
+        }
+    }
+
+    private static Memory request(String value, int count) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            sb.append(value).append(',');
+        }
+        sb.append("{\"__webview_meta__\":{\"cancel\":\"1a2b\",\"start\":1700000000000}}]");
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        Memory memory = new Memory(bytes.length + 1);
+        memory.write(0, bytes, 0, bytes.length);
+        memory.setByte(bytes.length, (byte) 0);
+        return memory;
+    }
+
+    private static final class Payload {
+        private final String name;
+        private final Memory memory;
+        private final int calls;
+
+        private Payload(String name, Memory memory, int calls) {
+            this.name = name;
+            this.memory = memory;
+            this.calls = calls;
+        }
+    }
+}
@@ -3,11 +3,14 @@ package net.notjustanna.webview.interop;
 import com.grack.nanojson.*;
 import net.notjustanna.webview.WebviewCore;
 import net.notjustanna.webview.interop.callback.NanoJsonWebviewInteropFunction;
+import net.notjustanna.webview.interop.callback.NanoJsonWebviewUploadFunction;
 import net.notjustanna.webview.interop.callback.WebviewInteropFunction;
+import net.notjustanna.webview.interop.callback.WebviewInteropRawFunction;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A class that provides interop functionality for handling JavaScript requests
@@ -26,20 +29,67 @@ public class NanoJsonWebviewInterop extends WebviewInterop<NanoJsonWebviewIntero
     }
 
     /**
-     * Wraps a NanoJsonWebviewInteropFunction into a WebviewInteropFunction.
+     * Runs the decoding and encoding done for bindings on synthetic payloads, so it is compiled early.
+     *
+     * @param iterations The number of synthetic calls.
+     * @see net.notjustanna.webview.WebviewPreload#warmUp(String, Runnable)
+     */
+    public static void warmUp(int iterations) {
+        try {
+            for (int i = 0; i < iterations; i++) {
+                JsonArray args = JsonParser.array().from(warmUpRequestStream(i));
+                JsonWriter.string(args.getObject(4));
+                JsonWriter.string(args);
+            }
+        } catch (JsonParserException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Wraps a NanoJsonWebviewInteropFunction into a WebviewInteropFunction, which parses requests straight
+     * from their UTF-8 bytes.
      *
      * @param callback The NanoJsonWebviewInteropFunction to wrap.
      * @return A WebviewInteropFunction that processes JSON requests and responses.
      */
     @Override
     protected @NotNull WebviewInteropFunction wrap(@NotNull NanoJsonWebviewInteropFunction callback) {
-        return req -> {
+        return (WebviewInteropRawFunction) req -> {
             JsonArray args = JsonParser.array().from(req);
+            traceStage(TraceStage.DECODE);
             Object res = callback.apply(args);
+            traceStage(TraceStage.INVOKE);
             return JsonWriter.string(res);
         };
     }
 
+    /**
+     * Evaluates a JavaScript script in the webview, and parses its result.
+     *
+     * @param script The script to be evaluated.
+     * @return A future of the result: a {@link JsonObject}, {@link JsonArray}, string, number, boolean or {@code null}.
+     * @see WebviewCore#evaluateAsync(String)
+     */
+    public CompletableFuture<Object> evaluateAsync(@NotNull String script) {
+        return evaluateAsync(script, json -> JsonParser.any().from(json));
+    }
+
+    /**
+     * Binds an upload handler to a new global JavaScript function, which uploads its argument in chunks.
+     * <p>
+     * The handler reads the uploaded JSON through a streaming reader, fed as chunks arrive, so the
+     * whole upload is never held in memory, as a string or as a tree.
+     *
+     * @param name    The name of the JavaScript function.
+     * @param handler The handler of uploads.
+     * @return The current instance of the class (for chaining).
+     * @see WebviewCore#bindUpload(String, net.notjustanna.webview.WebviewUploadHandler)
+     */
+    public NanoJsonWebviewInterop bindUpload(@NotNull String name, @NotNull NanoJsonWebviewUploadFunction handler) {
+        return bindUploadFunction(name, in -> JsonWriter.string(handler.apply(JsonReader.from(in))));
+    }
+
     /**
      * Converts a Throwable into a JSON string representation of the error.
      *
@@ -0,0 +1,322 @@
+package net.notjustanna.webview.interop;
+
+import com.sun.jna.Pointer;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Metadata of a JavaScript to Java call, added by the script installed by {@link InteropSession}.
+ * <p>
+ * The metadata is appended to the arguments as a trailing {@code {"__webview_meta__":{...}}} object,
+ * holding the cancellation token of the call, and its trace context if traced. It is stripped before
+ * the arguments are decoded. Calls without one, such as calls made before the script was installed,
+ * have no token and no trace context.
+ *
+ * @author Anna Silva
+ */
+final class CallMeta {
+    /**
+     * The JSON array of arguments, without the metadata, or {@code null} if received as bytes.
+     */
+    final String request;
+
+    /**
+     * The native memory holding the UTF-8 JSON array of arguments, if received as native bytes.
+     * Only valid during the native callback.
+     */
+    private final Pointer requestPointer;
+
+    /**
+     * The UTF-8 JSON array of arguments, if received as copied bytes.
+     */
+    private final byte[] requestArray;
+
+    /**
+     * The number of bytes of the arguments. When {@link #reclose} is set, they stop right before the
+     * metadata, and the closing bracket of the array is implied.
+     */
+    private final int requestBytes;
+
+    /**
+     * Whether the bytes of the arguments lack the closing bracket of the array.
+     */
+    private final boolean reclose;
+
+    /**
+     * The cancellation token, or {@code null} if none.
+     */
+    final String cancelToken;
+
+    /**
+     * The trace id created in JavaScript, or {@code null} if not traced.
+     */
+    final String traceId;
+
+    /**
+     * The span id of the call in JavaScript, or {@code null} if not traced.
+     */
+    final String spanId;
+
+    /**
+     * Epoch nanoseconds at which the call was made in JavaScript, or {@code 0} if unknown.
+     */
+    final long jsStart;
+
+    private CallMeta(String request, String cancelToken, String traceId, String spanId, long jsStart) {
+        this(request, null, null, 0, false, cancelToken, traceId, spanId, jsStart);
+    }
+
+    private CallMeta(String request, Pointer requestPointer, byte[] requestArray, int requestBytes, boolean reclose,
+                     String cancelToken, String traceId, String spanId, long jsStart) {
+        this.request = request;
+        this.requestPointer = requestPointer;
+        this.requestArray = requestArray;
+        this.requestBytes = requestBytes;
+        this.reclose = reclose;
+        this.cancelToken = cancelToken;
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.jsStart = jsStart;
+    }
+
+    /**
+     * Extracts the metadata from a request.
+     *
+     * @param req the JSON array of arguments, possibly ending with the metadata.
+     * @return The metadata, holding the request without it.
+     */
+    static CallMeta parse(String req) {
+        // JSON.stringify doesn't emit whitespace, so the metadata always ends the request like this.
+        if (!req.endsWith("}}]")) {
+            return new CallMeta(req, null, null, null, 0);
+        }
+        int metaStart = req.lastIndexOf(META_PREFIX);
+        if (metaStart < 1 || (req.charAt(metaStart - 1) != ',' && req.charAt(metaStart - 1) != '[')) {
+            return new CallMeta(req, null, null, null, 0);
+        }
+
+        String meta = req.substring(metaStart, req.length() - 1);
+        String stripped = req.charAt(metaStart - 1) == ','
+            ? req.substring(0, metaStart - 1) + "]"
+            : "[]";
+        String traceId = stringField(meta, "traceId");
+        String spanId = stringField(meta, "spanId");
+        if (traceId == null || spanId == null) {
+            traceId = spanId = null;
+        }
+        return new CallMeta(stripped, stringField(meta, "cancel"), traceId, spanId, timeField(meta, "start"));
+    }
+
+    /**
+     * Extracts the metadata from a request held in native memory, as UTF-8 bytes.
+     * <p>
+     * Only the end of the request is read; the arguments are read by the stream of {@link #requestStream()},
+     * which must be done before the native callback returns.
+     *
+     * @param req    the UTF-8 JSON array of arguments, possibly ending with the metadata.
+     * @param length the number of bytes of the request.
+     * @return The metadata, holding the request without it.
+     */
+    static CallMeta parse(Pointer req, int length) {
+        int window = Math.min(length, META_WINDOW);
+        return parse(req, null, length, req.getByteArray(length - window, window), length - window);
+    }
+
+    /**
+     * Extracts the metadata from a request, given as UTF-8 bytes.
+     *
+     * @param req the UTF-8 JSON array of arguments, possibly ending with the metadata.
+     * @return The metadata, holding the request without it.
+     */
+    static CallMeta parse(byte[] req) {
+        return parse(null, req, req.length, req, 0);
+    }
+
+    /**
+     * Extracts the metadata from the end of a request.
+     *
+     * @param tail   the last bytes of the request.
+     * @param offset the index in the request of the first byte of {@code tail}.
+     */
+    private static CallMeta parse(Pointer pointer, byte[] array, int length, byte[] tail, int offset) {
+        int end = length - offset;
+        if (end < 3 || tail[end - 3] != '}' || tail[end - 2] != '}' || tail[end - 1] != ']') {
+            return new CallMeta(null, pointer, array, length, false, null, null, null, 0);
+        }
+        // Metadata longer than the tail read is left in the arguments, but the script never emits one.
+        int metaStart = lastIndexOf(tail, META_PREFIX_BYTES, end - 3);
+        if (metaStart < 1 || (tail[metaStart - 1] != ',' && tail[metaStart - 1] != '[')) {
+            return new CallMeta(null, pointer, array, length, false, null, null, null, 0);
+        }
+
+        String meta = new String(tail, metaStart, end - 1 - metaStart, StandardCharsets.UTF_8);
+        String traceId = stringField(meta, "traceId");
+        String spanId = stringField(meta, "spanId");
+        if (traceId == null || spanId == null) {
+            traceId = spanId = null;
+        }
+        String cancelToken = stringField(meta, "cancel");
+        long jsStart = timeField(meta, "start");
+        if (tail[metaStart - 1] == '[') {
+            return new CallMeta("[]", cancelToken, traceId, spanId, jsStart);
+        }
+        return new CallMeta(null, pointer, array, offset + metaStart - 1, true, cancelToken, traceId, spanId, jsStart);
+    }
+
+    /**
+     * @return The JSON array of arguments, decoded to a string if received as bytes.
+     */
+    String requestString() {
+        if (request != null) {
+            return request;
+        }
+        byte[] bytes = requestArray != null ? requestArray : requestPointer.getByteArray(0, requestBytes);
+        String json = new String(bytes, 0, requestBytes, StandardCharsets.UTF_8);
+        return reclose ? json + "]" : json;
+    }
+
+    /**
+     * @return The UTF-8 JSON array of arguments, encoded if received as a string.
+     */
+    InputStream requestStream() {
+        if (request != null) {
+            return new ByteArrayInputStream(request.getBytes(StandardCharsets.UTF_8));
+        }
+        return new RequestInputStream(requestPointer, requestArray, requestBytes, reclose);
+    }
+
+    /**
+     * @return The length of the JSON array of arguments, in characters if received as a string, else in bytes.
+     */
+    int requestLength() {
+        return request != null ? request.length() : requestBytes + (reclose ? 1 : 0);
+    }
+
+    /**
+     * Finds the last occurrence of a pattern, starting at least one byte in, and before the given index.
+     */
+    private static int lastIndexOf(byte[] bytes, byte[] pattern, int before) {
+        outer:
+        for (int i = Math.min(before, bytes.length - pattern.length); i >= 1; i--) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the bytes of a request straight into the buffer of the reader, then the closing bracket of the
+     * array if it was cut off with the metadata.
+     */
+    private static final class RequestInputStream extends InputStream {
+        private final Pointer pointer;
+        private final byte[] array;
+        private final int length;
+        private boolean reclose;
+        private int position;
+
+        RequestInputStream(Pointer pointer, byte[] array, int length, boolean reclose) {
+            this.pointer = pointer;
+            this.array = array;
+            this.length = length;
+            this.reclose = reclose;
+        }
+
+        @Override
+        public int read() {
+            if (position < length) {
+                return (array != null ? array[position++] : pointer.getByte(position++)) & 0xFF;
+            }
+            if (reclose) {
+                reclose = false;
+                return ']';
+            }
+            return -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            int n = Math.min(len, length - position);
+            if (n > 0) {
+                if (array != null) {
+                    System.arraycopy(array, position, b, off, n);
+                } else {
+                    pointer.read(position, b, off, n);
+                }
+                position += n;
+                return n;
+            }
+            if (reclose) {
+                reclose = false;
+                b[off] = ']';
+                return 1;
+            }
+            return -1;
+        }
+
+        @Override
+        public int available() {
+            return length - position + (reclose ? 1 : 0);
+        }
+    }
+
+    /**
+     * Reads a string field made of hexadecimal digits and colons, as emitted by the script.
+     */
+    private static String stringField(String meta, String field) {
+        String key = "\"" + field + "\":\"";
+        int start = meta.indexOf(key);
+        if (start < 0) {
+            return null;
+        }
+        start += key.length();
+        int end = meta.indexOf('"', start);
+        if (end < 0) {
+            return null;
+        }
+        String value = meta.substring(start, end);
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch != ':' && Character.digit(ch, 16) < 0) {
+                return null;
+            }
+        }
+        return value;
+    }
+
+    private static long timeField(String meta, String field) {
+        String key = "\"" + field + "\":";
+        int start = meta.indexOf(key);
+        if (start < 0) {
+            return 0;
+        }
+        start += key.length();
+        int end = start;
+        while (end < meta.length() && "0123456789.".indexOf(meta.charAt(end)) >= 0) {
+            end++;
+        }
+        try {
+            // Milliseconds since epoch, with sub-millisecond fraction.
+            return (long) (Double.parseDouble(meta.substring(start, end)) * 1_000_000);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static final String META_PREFIX = "{\"__webview_meta__\":";
+    private static final byte[] META_PREFIX_BYTES = META_PREFIX.getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Bytes read from the end of a native request to find the metadata, well above the longest the script emits.
+     */
+    private static final int META_WINDOW = 512;
+}
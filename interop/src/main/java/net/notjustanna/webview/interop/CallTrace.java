@@ -0,0 +1,78 @@
+package net.notjustanna.webview.interop;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Trace of a single JavaScript to Java call, recorded by {@link WebviewInterop} when a {@link WebviewTracer} is set.
+ * <p>
+ * The trace context is created in JavaScript, and travels along with the arguments as {@link CallMeta}.
+ * Calls without one, such as calls made before the tracing script was installed, get a fresh context.
+ *
+ * @author Anna Silva
+ */
+final class CallTrace {
+    final String binding;
+    final String traceId;
+    final String parentSpanId;
+    final String spanId;
+
+    /**
+     * Epoch nanoseconds at which the call was made in JavaScript, or {@code 0} if unknown.
+     */
+    final long jsStart;
+
+    /**
+     * Monotonic timestamps at which each {@link TraceStage} ended, or {@code 0} if not reached.
+     */
+    final long[] marks = new long[TraceStage.values().length];
+
+    /**
+     * Monotonic timestamp at which the Java callback was entered.
+     */
+    final long start;
+
+    boolean failed;
+    String error;
+
+    private CallTrace(String binding, String traceId, String parentSpanId, long jsStart) {
+        this.binding = binding;
+        this.traceId = traceId;
+        this.parentSpanId = parentSpanId;
+        this.spanId = randomHex(8);
+        this.jsStart = jsStart;
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Marks the end of a stage.
+     *
+     * @param stage the stage which just ended.
+     */
+    void mark(TraceStage stage) {
+        marks[stage.ordinal()] = System.nanoTime();
+    }
+
+    /**
+     * Starts the trace of a call, continuing the trace context created in JavaScript if any.
+     *
+     * @param binding the name of the JavaScript function.
+     * @param meta    the metadata of the call.
+     * @return The trace.
+     */
+    static CallTrace begin(String binding, CallMeta meta) {
+        if (meta.traceId != null) {
+            return new CallTrace(binding, meta.traceId, meta.spanId, meta.jsStart);
+        }
+        return new CallTrace(binding, randomHex(16), null, 0);
+    }
+
+    static String randomHex(int bytes) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder sb = new StringBuilder(bytes * 2);
+        for (int i = 0; i < bytes; i++) {
+            int b = random.nextInt(256);
+            sb.append(Character.forDigit(b >> 4, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,163 @@
+package net.notjustanna.webview.interop;
+
+import lombok.extern.java.Log;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.logging.Level;
+
+/**
+ * Tells a bound Java function that the JavaScript side is no longer interested in its result.
+ * <p>
+ * A call is cancelled when the {@code AbortSignal} passed as its last argument aborts, when the page
+ * which made it is torn down, or when the webview navigates away. Handlers get the token of the call
+ * they are running with {@link #current()}. Asynchronous bindings are also interrupted on cancellation.
+ * <pre>{@code
+ * // JavaScript
+ * const controller = new AbortController();
+ * search("webview", controller.signal);
+ * controller.abort();
+ * }</pre>
+ *
+ * @author Anna Silva
+ * @see WebviewInterop#bindAsync(String, Object)
+ */
+@Log
+public final class CancellationToken {
+    private volatile boolean cancelled;
+
+    /**
+     * The thread running the call, interrupted on cancellation. Guarded by {@code this}.
+     */
+    private Thread runner;
+
+    /**
+     * Listeners to run on cancellation, or {@code null} once cancelled. Guarded by {@code this}.
+     */
+    private List<Runnable> listeners = new ArrayList<>(0);
+
+    CancellationToken() {
+    }
+
+    /**
+     * Returns the token of the call running on the current thread.
+     *
+     * @return The token, or a token which is never cancelled if no call is running, or the call can't be cancelled.
+     */
+    public static @NotNull CancellationToken current() {
+        CancellationToken token = CURRENT.get();
+        return token != null ? token : NONE;
+    }
+
+    /**
+     * Checks if the call was cancelled.
+     *
+     * @return {@code true} if cancelled, {@code false} otherwise.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Throws if the call was cancelled.
+     *
+     * @throws CancellationException if cancelled.
+     */
+    public void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException(ERROR_CANCELLED);
+        }
+    }
+
+    /**
+     * Registers a listener to run when the call is cancelled, or right away if it already was.
+     * <p>
+     * Listeners run on the thread cancelling the call, usually the webview thread, so they must be short.
+     *
+     * @param listener the listener.
+     */
+    public void onCancel(@NotNull Runnable listener) {
+        if (this == NONE) {
+            return;
+        }
+        synchronized (this) {
+            if (listeners != null) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        runListener(listener);
+    }
+
+    /**
+     * Cancels the call, interrupting the thread running it if asynchronous.
+     *
+     * @return {@code true} if this call cancelled it, {@code false} if it already was.
+     */
+    boolean cancel() {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (cancelled) {
+                return false;
+            }
+            cancelled = true;
+            toRun = listeners;
+            listeners = null;
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
+        for (Runnable listener : toRun) {
+            runListener(listener);
+        }
+        return true;
+    }
+
+    /**
+     * Makes this the token of the current thread, while it runs the call.
+     *
+     * @param interruptible whether the current thread may be interrupted on cancellation.
+     */
+    void enter(boolean interruptible) {
+        if (interruptible) {
+            synchronized (this) {
+                runner = Thread.currentThread();
+            }
+        }
+        CURRENT.set(this);
+    }
+
+    /**
+     * Undoes {@link #enter(boolean)}, clearing any interrupt caused by cancellation, so it doesn't leak
+     * into whatever the thread runs next.
+     */
+    void exit() {
+        CURRENT.set(null);
+        synchronized (this) {
+            if (runner != null) {
+                runner = null;
+                if (cancelled) {
+                    Thread.interrupted();
+                }
+            }
+        }
+    }
+
+    private static void runListener(Runnable listener) {
+        try {
+            listener.run();
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, WARN_LISTENER_FAILED, e);
+        }
+    }
+
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    private static final CancellationToken NONE = new CancellationToken();
+
+    private static final String ERROR_CANCELLED = "Call was cancelled by JavaScript.";
+
+    private static final String WARN_LISTENER_FAILED = "Cancellation listener threw an exception.";
+}
@@ -0,0 +1,42 @@
+package net.notjustanna.webview.interop;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for a bound function being invoked through a {@link WebviewInterop}.
+ * <p>
+ * The duration covers decoding the arguments, running the Java callback, encoding the result,
+ * and returning it to JavaScript.
+ *
+ * @author Anna Silva
+ * @implNote When the event is disabled, an invocation costs a single enablement check.
+ */
+@Name("net.notjustanna.webview.InteropInvocation")
+@Label("Webview Interop Invocation")
+@Category({"Webview", "Bindings"})
+@Description("A bound Java function invoked from JavaScript through the interop layer")
+@StackTrace(false)
+@Enabled
+@Threshold("0 ms")
+final class InteropEvent extends jdk.jfr.Event {
+    @Label("Binding")
+    String name;
+
+    @Label("Request Length")
+    @Description("Length, in UTF-8 bytes, of the JSON arguments, or in characters for string bindings")
+    int requestLength;
+
+    @Label("Response Length")
+    @Description("Length, in characters, of the JSON result or error")
+    int responseLength;
+
+    @Label("Failed")
+    @Description("Whether the invocation returned an error to JavaScript")
+    boolean failed;
+}
@@ -0,0 +1,187 @@
+package net.notjustanna.webview.interop;
+
+import net.notjustanna.webview.WebviewCore;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interop state shared by every {@link WebviewInterop} of a webview.
+ * <p>
+ * Installs the interop script, which appends {@link CallMeta} to calls of functions bound through the
+ * interop layer, and handles cancellation of calls: through the internal {@code __webview_cancel__}
+ * binding, called by the script when an {@code AbortSignal} aborts or the page is torn down, and when
+ * the webview navigates away.
+ *
+ * @author Anna Silva
+ */
+final class InteropSession {
+    /**
+     * Tokens of the calls in flight, by cancellation token id.
+     */
+    private final Map<String, CancellationToken> calls = new ConcurrentHashMap<>();
+
+    private InteropSession() {
+    }
+
+    /**
+     * Returns the session of a webview, installing it on first use.
+     *
+     * @param webview the webview.
+     * @return The session of the webview.
+     */
+    static InteropSession of(WebviewCore webview) {
+        synchronized (SESSIONS) {
+            InteropSession session = SESSIONS.get(webview);
+            if (session == null) {
+                session = new InteropSession();
+                session.install(webview);
+                SESSIONS.put(webview, session);
+            }
+            return session;
+        }
+    }
+
+    /**
+     * Makes a function bound through the interop layer send metadata along with its arguments.
+     *
+     * @param webview the webview.
+     * @param name    the name of the JavaScript function.
+     * @param traced  whether calls should carry a trace context.
+     */
+    void register(WebviewCore webview, String name, boolean traced) {
+        String script = "window.__webview_interop__ && window.__webview_interop__.bind("
+            + WebviewInterop.jsonString(name) + ", " + traced + ");";
+        webview.setInitScript(script);
+        webview.evaluate(script);
+    }
+
+    /**
+     * Creates the cancellation token of a call.
+     *
+     * @param meta the metadata of the call.
+     * @return The token, or {@code null} if the call can't be cancelled.
+     */
+    CancellationToken begin(CallMeta meta) {
+        if (meta.cancelToken == null) {
+            return null;
+        }
+        CancellationToken token = new CancellationToken();
+        calls.put(meta.cancelToken, token);
+        return token;
+    }
+
+    /**
+     * Forgets the cancellation token of a completed call.
+     *
+     * @param meta  the metadata of the call.
+     * @param token the token returned by {@link #begin(CallMeta)}.
+     */
+    void end(CallMeta meta, CancellationToken token) {
+        if (token != null) {
+            calls.remove(meta.cancelToken, token);
+        }
+    }
+
+    /**
+     * Cancels a call, or every call of a page if the id ends with {@code :*}.
+     *
+     * @param id the cancellation token id.
+     */
+    void cancel(String id) {
+        if (id.endsWith(":*")) {
+            String page = id.substring(0, id.length() - 1);
+            calls.entrySet().removeIf(e -> e.getKey().startsWith(page) && cancelEntry(e.getValue()));
+            return;
+        }
+        CancellationToken token = calls.remove(id);
+        if (token != null) {
+            token.cancel();
+        }
+    }
+
+    /**
+     * Cancels every call in flight.
+     */
+    void cancelAll() {
+        calls.entrySet().removeIf(e -> cancelEntry(e.getValue()));
+    }
+
+    private static boolean cancelEntry(CancellationToken token) {
+        token.cancel();
+        return true;
+    }
+
+    private void install(WebviewCore webview) {
+        webview.setInitScript(SCRIPT);
+        webview.evaluate(SCRIPT);
+        webview.bind(CANCEL_BINDING, (id, req, arg) -> {
+            // Called with a single token id, made of hexadecimal digits, colons and stars.
+            if (req.startsWith("[\"") && req.endsWith("\"]") && req.length() > 4) {
+                String token = req.substring(2, req.length() - 2);
+                if (token.chars().allMatch(ch -> ch == ':' || ch == '*' || Character.digit(ch, 16) >= 0)) {
+                    cancel(token);
+                }
+            }
+            webview.respond(id, 0, null);
+        });
+        webview.addNavigationListener(this::cancelAll);
+    }
+
+    /**
+     * Sessions by webview. Weak, so sessions go away along with their webview.
+     */
+    private static final Map<WebviewCore, InteropSession> SESSIONS = new WeakHashMap<>();
+
+    private static final String CANCEL_BINDING = "__webview_cancel__";
+
+    /**
+     * Hooks {@code window.__webview__.call}, which every bound function goes through.
+     * <p>
+     * For functions registered by {@link #register(WebviewCore, String, boolean)}, it pops a trailing
+     * {@code AbortSignal} off the arguments, and appends the metadata of the call instead. The returned
+     * promise rejects as soon as the signal aborts, and the Java side is told to cancel the call.
+     */
+    private static final String SCRIPT = String.join("\n",
+        "(function() {",
+        "  'use strict';",
+        "  if (window.__webview_interop__ || !window.__webview__) return;",
+        "  function hex(n) {",
+        "    var bytes = new Uint8Array(n);",
+        "    crypto.getRandomValues(bytes);",
+        "    return Array.prototype.map.call(bytes, function(b) { return (b < 16 ? '0' : '') + b.toString(16); }).join('');",
+        "  }",
+        "  var page = hex(8), seq = 0, bound = {};",
+        "  function cancel(token) { if (window." + CANCEL_BINDING + ") window." + CANCEL_BINDING + "(token); }",
+        "  var proto = Object.getPrototypeOf(window.__webview__);",
+        "  var call = proto.call;",
+        "  proto.call = function(method) {",
+        "    var options = bound[method];",
+        "    if (!options) return call.apply(this, arguments);",
+        "    var args = Array.prototype.slice.call(arguments, 1);",
+        "    var signal = null;",
+        "    if (typeof AbortSignal !== 'undefined' && args.length && args[args.length - 1] instanceof AbortSignal) signal = args.pop();",
+        "    var token = page + ':' + (++seq).toString(16);",
+        "    var meta = {cancel: token};",
+        "    if (options.trace) meta.trace = {traceId: hex(16), spanId: hex(8), start: performance.timeOrigin + performance.now()};",
+        "    args.push({__webview_meta__: meta});",
+        "    var promise = call.apply(this, [method].concat(args));",
+        "    if (!signal) return promise;",
+        "    return new Promise(function(resolve, reject) {",
+        "      function onAbort() {",
+        "        reject(signal.reason !== undefined ? signal.reason : new DOMException('The operation was aborted.', 'AbortError'));",
+        "        cancel(token);",
+        "      }",
+        "      if (signal.aborted) { onAbort(); return; }",
+        "      signal.addEventListener('abort', onAbort, {once: true});",
+        "      promise.then(",
+        "        function(value) { signal.removeEventListener('abort', onAbort); resolve(value); },",
+        "        function(error) { signal.removeEventListener('abort', onAbort); reject(error); });",
+        "    });",
+        "  };",
+        "  window.addEventListener('pagehide', function() { cancel(page + ':*'); });",
+        "  window.__webview_interop__ = { bind: function(name, trace) { bound[name] = {trace: !!trace}; } };",
+        "})();"
+    );
+}
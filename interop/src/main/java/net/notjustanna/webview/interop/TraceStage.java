@@ -0,0 +1,45 @@
+package net.notjustanna.webview.interop;
+
+import java.util.Locale;
+
+/**
+ * Stages of a JavaScript to Java call, as reported by {@link WebviewTracer}.
+ *
+ * @author Anna Silva
+ */
+public enum TraceStage {
+    /**
+     * From the call in JavaScript until the Java callback is entered. Covers the {@code webview_bind} glue.
+     */
+    GLUE,
+
+    /**
+     * Waiting for a worker thread to pick up the call. Only reported for asynchronous bindings.
+     */
+    QUEUE,
+
+    /**
+     * Decoding the JSON arguments.
+     */
+    DECODE,
+
+    /**
+     * Running the bound Java code.
+     */
+    INVOKE,
+
+    /**
+     * Encoding the result as JSON.
+     */
+    ENCODE,
+
+    /**
+     * Handing the result back to JavaScript through {@code webview_return}.
+     */
+    RETURN;
+
+    /**
+     * Name of the span reported for this stage.
+     */
+    final String spanName = name().toLowerCase(Locale.ROOT);
+}
@@ -2,9 +2,26 @@ package net.notjustanna.webview.interop;
 
 import com.sun.jna.Pointer;
 import net.notjustanna.webview.WebviewCore;
+import net.notjustanna.webview.WebviewInputStream;
+import net.notjustanna.webview.WebviewUploadHandler;
 import net.notjustanna.webview.interop.callback.WebviewInteropFunction;
+import net.notjustanna.webview.interop.callback.WebviewInteropRawFunction;
+import net.notjustanna.webview.interop.callback.WebviewInteropUploadFunction;
+import net.notjustanna.webview.interop.callback.WebviewResultDecoder;
+import net.notjustanna.webview.metrics.BindingMetrics;
+import net.notjustanna.webview.natives.JvmHelper;
 import net.notjustanna.webview.natives.WebviewNative;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 /**
  * Abstract class representing the interoperation layer between Java and a WebView.
@@ -20,13 +37,32 @@ public abstract class WebviewInterop<Self extends WebviewInterop<Self, Fn>, Fn>
      */
     protected final WebviewCore webview;
 
+    /**
+     * The tracer of calls to functions bound from now on, or {@code null} if not tracing.
+     */
+    private volatile WebviewTracer tracer;
+
+    /**
+     * The executor of asynchronous bindings, or {@code null} to use a shared virtual thread executor.
+     */
+    private volatile Executor asyncExecutor;
+
+    /**
+     * Interop state shared with other instances bound to the same webview.
+     */
+    private final InteropSession session;
+
     /**
      * Constructs a new WebviewInterop instance.
+     * <p>
+     * Functions bound through an interop accept an {@code AbortSignal} as their last argument, which
+     * cancels the call. See {@link CancellationToken}.
      *
      * @param webview The WebView core instance.
      */
     public WebviewInterop(WebviewCore webview) {
         this.webview = webview;
+        this.session = InteropSession.of(webview);
     }
 
     /**
@@ -38,8 +74,95 @@ public abstract class WebviewInterop<Self extends WebviewInterop<Self, Fn>, Fn>
      * @return The current instance of the class (for chaining).
      */
     public Self bind(@NotNull String name, @NotNull Fn callback) {
-        WebviewNative.BindCallback nativeCallback = this.wrapNative(this.wrap(callback));
-        webview.bind(name, nativeCallback);
+        WebviewNative.RawBindCallback nativeCallback = this.wrapNativeRaw(name, this.wrap(callback));
+        webview.bindRaw(name, nativeCallback);
+        return castThis();
+    }
+
+    /**
+     * Binds a Java callback function to a new global JavaScript function, which runs off the webview thread.
+     * <p>
+     * When called from JavaScript, the arguments are handed over to the {@link #setAsyncExecutor(Executor)
+     * asynchronous executor}, which decodes them, runs the callback, and returns the result. This keeps the
+     * webview responsive while the callback works, and lets many calls be in flight at once.
+     *
+     * @param name     The name of the JavaScript function.
+     * @param callback The Java callback function to bind. Must be thread-safe.
+     * @return The current instance of the class (for chaining).
+     */
+    public Self bindAsync(@NotNull String name, @NotNull Fn callback) {
+        return bindAsync(name, callback, 0);
+    }
+
+    /**
+     * Binds a Java callback function to a new global JavaScript function, which runs off the webview thread,
+     * with at most {@code maxConcurrency} calls running at once.
+     * <p>
+     * Calls over the limit wait for a running call to complete.
+     *
+     * @param name           The name of the JavaScript function.
+     * @param callback       The Java callback function to bind. Must be thread-safe.
+     * @param maxConcurrency The maximum number of calls running at once, or {@code 0} for no limit.
+     * @return The current instance of the class (for chaining).
+     * @see #bindAsync(String, Object)
+     */
+    public Self bindAsync(@NotNull String name, @NotNull Fn callback, int maxConcurrency) {
+        WebviewNative.RawBindCallback nativeCallback = this.wrapNativeRawAsync(name, this.wrap(callback), maxConcurrency);
+        webview.bindRaw(name, nativeCallback);
+        return castThis();
+    }
+
+    /**
+     * Binds an upload handler to a new global JavaScript function, which uploads its argument in chunks.
+     * <p>
+     * Errors thrown by the handler reject the JavaScript promise with {@link #errorToJson(Throwable)}.
+     *
+     * @param name    The name of the JavaScript function.
+     * @param handler The handler of uploads, which reads the uploaded JSON as it arrives.
+     * @return The current instance of the class (for chaining).
+     * @see WebviewCore#bindUpload(String, WebviewUploadHandler)
+     */
+    protected Self bindUploadFunction(@NotNull String name, @NotNull WebviewInteropUploadFunction handler) {
+        webview.bindUpload(name, new WebviewUploadHandler() {
+            @Override
+            public String handle(@NotNull WebviewInputStream in) throws Exception {
+                return handler.apply(in);
+            }
+
+            @Override
+            public @NotNull String errorToJson(@NotNull Throwable e) {
+                return WebviewInterop.this.errorToJson(e);
+            }
+        });
+        return castThis();
+    }
+
+    /**
+     * Sets the executor running asynchronous bindings bound from now on.
+     * <p>
+     * By default, each call runs on its own virtual thread (on JVM 21+), from an executor shared by all webviews.
+     *
+     * @param executor The executor, or {@code null} to restore the default.
+     * @return The current instance of the class (for chaining).
+     */
+    public Self setAsyncExecutor(@Nullable Executor executor) {
+        this.asyncExecutor = executor;
+        return castThis();
+    }
+
+    /**
+     * Traces calls to every function bound through this instance from now on.
+     * <p>
+     * The interop script creates a trace context whenever a traced function is called from JavaScript.
+     * The context travels along with the arguments, and the tracer records how long each stage of the
+     * call took on the Java side.
+     *
+     * @param tracer The tracer to report calls to.
+     * @return The current instance of the class (for chaining).
+     * @see WebviewTracer
+     */
+    public Self trace(@NotNull WebviewTracer tracer) {
+        this.tracer = tracer;
         return castThis();
     }
 
@@ -54,6 +177,28 @@ public abstract class WebviewInterop<Self extends WebviewInterop<Self, Fn>, Fn>
         return castThis();
     }
 
+    /**
+     * Evaluates a JavaScript script in the webview, and decodes its result.
+     *
+     * @param script  The script to be evaluated.
+     * @param decoder The decoder of the JSON result.
+     * @param <T>     The type of the decoded result.
+     * @return A future of the decoded result, failed with the decoding error if decoding fails.
+     * @see WebviewCore#evaluateAsync(String)
+     */
+    @NotNull
+    protected <T> CompletableFuture<T> evaluateAsync(@NotNull String script, @NotNull WebviewResultDecoder<T> decoder) {
+        return webview.evaluateAsync(script).thenApply(json -> {
+            try {
+                return decoder.decode(json);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
     /**
      * Wraps a callback function into a WebviewInteropCallback.
      *
@@ -74,26 +219,285 @@ public abstract class WebviewInterop<Self extends WebviewInterop<Self, Fn>, Fn>
 
     /**
      * Wraps a WebviewInteropCallback into a native WebView callback.
+     * <p>
+     * Its calls can't be traced nor cancelled, and are reported to Flight Recorder under the name
+     * {@value #UNNAMED}, since the name the callback is bound to isn't known.
      *
      * @param callback The WebviewInteropCallback to wrap.
      * @return A native WebView BindCallback.
+     * @deprecated Use {@link #wrapNative(String, WebviewInteropFunction)}, which knows the name of the function.
      */
     @NotNull
+    @Deprecated
     protected WebviewNative.BindCallback wrapNative(@NotNull WebviewInteropFunction callback) {
-        Pointer wv = WebviewCore.nativePointer(this.webview);
+        return (id, req, arg) -> this.call(UNNAMED, null, CallMeta.parse(req), callback, id);
+    }
+
+    /**
+     * Wraps a WebviewInteropCallback into a native WebView callback.
+     * <p>
+     * Each invocation is reported to Flight Recorder as an {@link InteropEvent}, if enabled.
+     *
+     * @param name     The name of the JavaScript function.
+     * @param callback The WebviewInteropCallback to wrap.
+     * @return A native WebView BindCallback.
+     */
+    @NotNull
+    protected WebviewNative.BindCallback wrapNative(@NotNull String name, @NotNull WebviewInteropFunction callback) {
+        WebviewTracer tracer = this.register(name);
+        return (id, req, arg) -> this.call(name, tracer, CallMeta.parse(req), callback, id);
+    }
+
+    /**
+     * Wraps a WebviewInteropCallback into a native WebView callback, which reads requests as UTF-8 bytes.
+     * <p>
+     * If the callback is a {@link WebviewInteropRawFunction}, it parses the request straight from the memory
+     * of the webview library, without decoding it to a string.
+     *
+     * @param name     The name of the JavaScript function.
+     * @param callback The WebviewInteropCallback to wrap.
+     * @return A native WebView RawBindCallback.
+     */
+    @NotNull
+    protected WebviewNative.RawBindCallback wrapNativeRaw(@NotNull String name, @NotNull WebviewInteropFunction callback) {
+        WebviewTracer tracer = this.register(name);
+        return (id, req, arg) -> this.call(name, tracer, CallMeta.parse(req, nativeLength(req)), callback, nativeId(id));
+    }
+
+    /**
+     * Handles a call on the webview thread.
+     */
+    private void call(String name, WebviewTracer tracer, CallMeta meta, WebviewInteropFunction callback, String id) {
+        CallTrace trace = tracer != null ? CallTrace.begin(name, meta) : null;
+        CancellationToken token = session.begin(meta);
+        try {
+            this.invoke(name, tracer, trace, meta, token, false, callback, id, null);
+        } finally {
+            session.end(meta, token);
+        }
+    }
+
+    /**
+     * Wraps a WebviewInteropCallback into a native WebView callback, which hands calls over to the
+     * asynchronous executor, and returns right away.
+     *
+     * @param name           The name of the JavaScript function.
+     * @param callback       The WebviewInteropCallback to wrap.
+     * @param maxConcurrency The maximum number of calls running at once, or {@code 0} for no limit.
+     * @return A native WebView BindCallback.
+     */
+    @NotNull
+    protected WebviewNative.BindCallback wrapNativeAsync(@NotNull String name, @NotNull WebviewInteropFunction callback, int maxConcurrency) {
+        WebviewTracer tracer = this.register(name);
+        Executor executor = this.asyncExecutor != null ? this.asyncExecutor : DefaultAsyncExecutor.INSTANCE;
+        Semaphore permits = maxConcurrency > 0 ? new Semaphore(maxConcurrency, true) : null;
+        BindingMetrics metrics = webview.getMetrics().binding(name);
+        return (id, req, arg) -> this.callAsync(name, tracer, executor, permits, metrics, CallMeta.parse(req), callback, id);
+    }
+
+    /**
+     * Wraps a WebviewInteropCallback into a native WebView callback, which reads requests as UTF-8 bytes,
+     * hands calls over to the asynchronous executor, and returns right away.
+     * <p>
+     * The request is copied out of the memory of the webview library before being handed over, but never
+     * decoded to a string if the callback is a {@link WebviewInteropRawFunction}.
+     *
+     * @param name           The name of the JavaScript function.
+     * @param callback       The WebviewInteropCallback to wrap.
+     * @param maxConcurrency The maximum number of calls running at once, or {@code 0} for no limit.
+     * @return A native WebView RawBindCallback.
+     */
+    @NotNull
+    protected WebviewNative.RawBindCallback wrapNativeRawAsync(@NotNull String name, @NotNull WebviewInteropFunction callback, int maxConcurrency) {
+        WebviewTracer tracer = this.register(name);
+        Executor executor = this.asyncExecutor != null ? this.asyncExecutor : DefaultAsyncExecutor.INSTANCE;
+        Semaphore permits = maxConcurrency > 0 ? new Semaphore(maxConcurrency, true) : null;
+        BindingMetrics metrics = webview.getMetrics().binding(name);
         return (id, req, arg) -> {
+            byte[] bytes = req.getByteArray(0, nativeLength(req));
+            this.callAsync(name, tracer, executor, permits, metrics, CallMeta.parse(bytes), callback, nativeId(id));
+        };
+    }
+
+    /**
+     * Hands a call over to the asynchronous executor.
+     */
+    private void callAsync(String name, WebviewTracer tracer, Executor executor, Semaphore permits, BindingMetrics metrics,
+                           CallMeta meta, WebviewInteropFunction callback, String id) {
+        CallTrace trace = tracer != null ? CallTrace.begin(name, meta) : null;
+        CancellationToken token = session.begin(meta);
+        Runnable task = () -> {
+            boolean acquired = false;
             try {
-                String str = WebviewInterop.safeString(req);
-                String res = callback.apply(str);
+                if (permits != null) {
+                    permits.acquire();
+                    acquired = true;
+                }
+                if (trace != null) {
+                    trace.mark(TraceStage.QUEUE);
+                }
+                this.invoke(name, tracer, trace, meta, token, true, callback, id, metrics);
+            } catch (InterruptedException e) {
+                // The executor is shutting down.
+                Thread.currentThread().interrupt();
+                this.respondCancelled(id, metrics);
+            } finally {
+                if (acquired) {
+                    permits.release();
+                }
+                session.end(meta, token);
+            }
+        };
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            session.end(meta, token);
+            webview.respond(id, 1, this.errorToJson(e));
+        }
+    }
+
+    /**
+     * Invokes a callback on the current thread, and returns its result to JavaScript.
+     * <p>
+     * If the call was cancelled before it started, the callback isn't invoked, and a
+     * {@link CancellationException} is returned instead.
+     *
+     * @param name          The name of the JavaScript function.
+     * @param tracer        The tracer, or {@code null} if not tracing.
+     * @param trace         The trace of the call, or {@code null} if not tracing.
+     * @param meta          The metadata of the call.
+     * @param token         The cancellation token of the call, or {@code null} if it can't be cancelled.
+     * @param interruptible Whether the current thread may be interrupted on cancellation.
+     * @param callback      The callback.
+     * @param id            The identifier of the call.
+     * @param metrics       The metrics to record the response into when running off the webview thread, may be null.
+     */
+    private void invoke(String name, WebviewTracer tracer, CallTrace trace, CallMeta meta, CancellationToken token,
+                        boolean interruptible, WebviewInteropFunction callback, String id, BindingMetrics metrics) {
+        InteropEvent event = new InteropEvent();
+        event.begin();
+        String res;
+        int status;
+        if (token != null && token.isCancelled()) {
+            res = this.errorToJson(new CancellationException(ERROR_CANCELLED));
+            status = 1;
+        } else {
+            CURRENT_TRACE.set(trace);
+            if (token != null) {
+                token.enter(interruptible);
+            }
+            try {
+                if (callback instanceof WebviewInteropRawFunction raw) {
+                    res = raw.applyRaw(meta.requestStream());
+                } else {
+                    res = callback.apply(WebviewInterop.safeString(meta.requestString()));
+                }
                 if (res == null) {
                     res = "null";
                 }
-                WebviewNative.INSTANCE.webview_return(wv, id, 0, res);
+                status = 0;
             } catch (Exception e) {
-                String res = this.errorToJson(e);
-                WebviewNative.INSTANCE.webview_return(wv, id, 1, res);
+                res = this.errorToJson(e);
+                status = 1;
+                if (trace != null) {
+                    trace.failed = true;
+                    trace.error = String.valueOf(e);
+                }
+            } finally {
+                if (token != null) {
+                    token.exit();
+                }
+                CURRENT_TRACE.set(null);
             }
-        };
+        }
+        if (trace != null) {
+            trace.mark(TraceStage.ENCODE);
+        }
+        if (metrics != null && !webview.getDispatcher().isWebviewThread()) {
+            // Off the webview thread, the core can't tell which binding a response belongs to.
+            metrics.recordResponse(res, status != 0);
+        }
+        webview.respond(id, status, res);
+        if (trace != null) {
+            trace.mark(TraceStage.RETURN);
+            tracer.submit(trace);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.name = name;
+            event.requestLength = meta.requestLength();
+            event.responseLength = res.length();
+            event.failed = status != 0;
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns a {@link CancellationException} to JavaScript, for a call which won't run.
+     *
+     * @param id      The identifier of the call.
+     * @param metrics The metrics to record the response into.
+     */
+    private void respondCancelled(String id, BindingMetrics metrics) {
+        String res = this.errorToJson(new CancellationException(ERROR_CANCELLED));
+        metrics.recordResponse(res, true);
+        webview.respond(id, 1, res);
+    }
+
+    /**
+     * Registers a function bound through this instance with the interop script.
+     *
+     * @param name The name of the JavaScript function.
+     * @return The tracer of the function, or {@code null} if not tracing.
+     */
+    private WebviewTracer register(String name) {
+        WebviewTracer tracer = this.tracer;
+        session.register(webview, name, tracer != null);
+        return tracer;
+    }
+
+    /**
+     * Marks the end of a stage of the call currently being traced on this thread, if any.
+     * <p>
+     * Implementations call this once arguments are decoded ({@link TraceStage#DECODE}) and once the
+     * bound code returned ({@link TraceStage#INVOKE}), so traces can tell those stages apart.
+     *
+     * @param stage The stage which just ended.
+     */
+    protected static void traceStage(@NotNull TraceStage stage) {
+        CallTrace trace = CURRENT_TRACE.get();
+        if (trace != null) {
+            trace.mark(stage);
+        }
+    }
+
+    /**
+     * A synthetic binding request, shaped like a typical call, for the {@code warmUp} methods of implementations.
+     * <p>
+     * The arguments are, in order: a number, a string, a boolean, {@code null}, an object and an array of numbers.
+     *
+     * @param seed Varies the values, so the payloads aren't all the same.
+     * @return A JSON array of arguments, as received by bindings.
+     */
+    protected static String warmUpRequest(int seed) {
+        return "[" + seed + ",\"text \\\"" + seed + "\\\"\\n\\u00e9\"," + (seed % 2 == 0) + ",null,"
+            + "{\"id\":" + seed + ",\"name\":\"item\",\"tags\":[\"a\",\"b\"],\"score\":" + seed + ".5},"
+            + "[1,2," + seed + "]]";
+    }
+
+    /**
+     * The request of {@link #warmUpRequest(int)} as bindings read it: UTF-8 bytes, followed by call metadata
+     * which the returned stream strips off, like the one handed to {@link WebviewInteropRawFunction}s.
+     *
+     * @param seed Varies the values, so the payloads aren't all the same.
+     * @return The UTF-8 JSON array of arguments.
+     */
+    protected static InputStream warmUpRequestStream(int seed) {
+        String request = warmUpRequest(seed);
+        String withMeta = request.substring(0, request.length() - 1)
+            + ",{\"__webview_meta__\":{\"cancel\":\"" + Integer.toHexString(seed) + "\",\"start\":" + seed + "}}]";
+        return CallMeta.parse(withMeta.getBytes(StandardCharsets.UTF_8)).requestStream();
     }
 
     /**
@@ -107,6 +511,20 @@ public abstract class WebviewInterop<Self extends WebviewInterop<Self, Fn>, Fn>
         return (Self) this;
     }
 
+    /**
+     * Measures the NUL-terminated UTF-8 request of a native callback.
+     */
+    private static int nativeLength(Pointer req) {
+        return (int) req.indexOf(0, (byte) 0);
+    }
+
+    /**
+     * Decodes the NUL-terminated id of a native callback.
+     */
+    private static String nativeId(Pointer id) {
+        return id.getString(0, "UTF-8");
+    }
+
     /**
      * Safely processes a string by escaping null characters and non-ASCII characters.
      *
@@ -114,7 +532,7 @@ public abstract class WebviewInterop<Self extends WebviewInterop<Self, Fn>, Fn>
      * @return A safe string with escaped characters.
      */
     @NotNull
-    private static String safeString(@NotNull String str) {
+    static String safeString(@NotNull String str) {
         int length = str.length();
         StringBuilder sb = new StringBuilder(length);
 
@@ -147,4 +565,41 @@ public abstract class WebviewInterop<Self extends WebviewInterop<Self, Fn>, Fn>
         return sb.toString();
     }
 
+    /**
+     * Quotes a string as a JSON string literal, which is also a valid JavaScript string literal.
+     *
+     * @param str The input string.
+     * @return The quoted string.
+     */
+    @NotNull
+    static String jsonString(@NotNull String str) {
+        StringBuilder sb = new StringBuilder(str.length() + 2).append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char ch = str.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                sb.append('\\').append(ch);
+            } else if (ch < 0x20 || ch > 126) {
+                sb.append("\\u").append(String.format("%04x", (int) ch));
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Holder of the executor shared by asynchronous bindings, created on first use.
+     */
+    private static final class DefaultAsyncExecutor {
+        private static final Executor INSTANCE = JvmHelper.newVirtualThreadExecutor("webview-binding");
+    }
+
+    /**
+     * The call being traced on the current thread, if any.
+     */
+    private static final ThreadLocal<CallTrace> CURRENT_TRACE = new ThreadLocal<>();
+
+    private static final String UNNAMED = "<unnamed>";
+
+    private static final String ERROR_CANCELLED = "Call was cancelled before it started.";
 }
\ No newline at end of file
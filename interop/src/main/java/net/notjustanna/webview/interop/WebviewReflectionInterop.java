@@ -1,11 +1,13 @@
 package net.notjustanna.webview.interop;
 
 import net.notjustanna.webview.WebviewCore;
-import net.notjustanna.webview.interop.callback.WebviewInteropFunction;
+import net.notjustanna.webview.interop.callback.WebviewInteropRawFunction;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.InputStream;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 
@@ -41,7 +43,23 @@ public abstract class WebviewReflectionInterop<Self extends WebviewReflectionInt
      * @throws IllegalArgumentException If no method or multiple methods with the given name are found.
      */
     public Self bindMethod(@NotNull String name, @NotNull Object obj, @NotNull String method) {
-        webview.bind(name, this.wrapNative(this.wrapMethod(obj, method)));
+        webview.bindRaw(name, this.wrapNativeRaw(name, this.wrapMethod(obj, method)));
+        return castThis();
+    }
+
+    /**
+     * Binds a Java method to a new global JavaScript function, which runs off the webview thread.
+     *
+     * @param name           The name of the JavaScript function.
+     * @param obj            The object or class containing the method.
+     * @param method         The name of the method to bind. Must be thread-safe.
+     * @param maxConcurrency The maximum number of calls running at once, or {@code 0} for no limit.
+     * @return The current instance of the class (for chaining).
+     * @throws IllegalArgumentException If no method or multiple methods with the given name are found.
+     * @see #bindAsync(String, Object, int)
+     */
+    public Self bindMethodAsync(@NotNull String name, @NotNull Object obj, @NotNull String method, int maxConcurrency) {
+        webview.bindRaw(name, this.wrapNativeRawAsync(name, this.wrapMethod(obj, method), maxConcurrency));
         return castThis();
     }
 
@@ -67,14 +85,31 @@ public abstract class WebviewReflectionInterop<Self extends WebviewReflectionInt
     protected abstract Object[] handleArgs(@NotNull String req, @NotNull Class<?>[] params) throws Exception;
 
     /**
-     * Wraps a Java method into a {@link WebviewInteropFunction}.
+     * Processes the request, given as UTF-8 bytes, and converts it into an array of arguments
+     * matching the parameter types of the method.
+     * <p>
+     * By default, decodes the request and calls {@link #handleArgs(String, Class[])}. Implementations whose
+     * parser reads bytes should override it, to skip decoding the request to a string.
+     *
+     * @param req    The request in UTF-8 bytes containing the arguments.
+     * @param params The parameter types of the method.
+     * @return An array of arguments matching the parameter types.
+     * @throws Exception If an error occurs during argument processing.
+     */
+    @NotNull
+    protected Object[] handleArgs(@NotNull InputStream req, @NotNull Class<?>[] params) throws Exception {
+        return handleArgs(new String(req.readAllBytes(), StandardCharsets.UTF_8), params);
+    }
+
+    /**
+     * Wraps a Java method into a {@link WebviewInteropRawFunction}.
      *
      * @param obj    The object or class containing the method.
      * @param method The name of the method to wrap.
-     * @return A wrapped {@link WebviewInteropFunction}.
+     * @return A wrapped {@link WebviewInteropRawFunction}.
      * @throws IllegalArgumentException If no method or multiple methods with the given name are found.
      */
-    private @NotNull WebviewInteropFunction wrapMethod(@NotNull Object obj, @NotNull String method) {
+    private @NotNull WebviewInteropRawFunction wrapMethod(@NotNull Object obj, @NotNull String method) {
         boolean isClass = obj instanceof Class;
         Class<?> cls = isClass ? (Class<?>) obj : obj.getClass();
         List<Method> methods = Arrays.stream(cls.getMethods()).filter(m -> m.getName().equals(method)).toList();
@@ -94,8 +129,10 @@ public abstract class WebviewReflectionInterop<Self extends WebviewReflectionInt
             if (params.length != 0) {
                 args = handleArgs(req, params);
             }
+            traceStage(TraceStage.DECODE);
 
             Object res = m.invoke(obj, args);
+            traceStage(TraceStage.INVOKE);
 
             return handleResult(res);
         };
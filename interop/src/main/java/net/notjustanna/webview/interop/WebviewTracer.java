@@ -0,0 +1,264 @@
+package net.notjustanna.webview.interop;
+
+import lombok.extern.java.Log;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Traces JavaScript to Java calls end to end, and exports them to a file as OpenTelemetry spans.
+ * <p>
+ * Each call made to a function bound through a traced {@link WebviewInterop} becomes a trace,
+ * whose context is created in JavaScript when the function is called. On the Java side, the call
+ * produces a root span named after the binding, with a child span for each {@link TraceStage}:
+ * the time spent in the binding glue, decoding arguments, invoking the Java code, encoding the
+ * result, and returning it to JavaScript.
+ * <p>
+ * Traces are written by a background thread, one OTLP/JSON {@code ExportTraceServiceRequest}
+ * per line, which is the format read by the OpenTelemetry Collector's {@code otlpjsonfile} receiver.
+ * If the writer falls behind, traces are dropped instead of slowing the webview thread down.
+ *
+ * @author Anna Silva
+ * @see WebviewInterop#trace(WebviewTracer)
+ */
+@Log
+public class WebviewTracer implements Closeable {
+    private final Writer writer;
+    private final BlockingQueue<CallTrace> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final LongAdder droppedCount = new LongAdder();
+    private final Thread thread;
+    private final String serviceName;
+    private volatile boolean closed;
+
+    /**
+     * Offset between {@link System#nanoTime()} and epoch nanoseconds.
+     */
+    private final long epochOffset;
+
+    private WebviewTracer(Writer writer, String serviceName) {
+        this.writer = writer;
+        this.serviceName = serviceName;
+        Instant now = Instant.now();
+        this.epochOffset = now.getEpochSecond() * 1_000_000_000L + now.getNano() - System.nanoTime();
+        this.thread = new Thread(this::writeLoop, "webview-trace-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Creates a tracer appending traces to the given file, reported under the {@code webview} service name.
+     *
+     * @param file the file to append to, created if needed.
+     * @return A new tracer.
+     * @throws IOException if the file can't be opened.
+     */
+    public static WebviewTracer toFile(@NotNull Path file) throws IOException {
+        return toFile(file, "webview");
+    }
+
+    /**
+     * Creates a tracer appending traces to the given file.
+     *
+     * @param file        the file to append to, created if needed.
+     * @param serviceName the {@code service.name} resource attribute of exported spans.
+     * @return A new tracer.
+     * @throws IOException if the file can't be opened.
+     */
+    public static WebviewTracer toFile(@NotNull Path file, @NotNull String serviceName) throws IOException {
+        Writer writer = Files.newBufferedWriter(
+            file, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE
+        );
+        return new WebviewTracer(writer, serviceName);
+    }
+
+    /**
+     * Returns how many traces were dropped because the writer fell behind or the tracer was closed.
+     *
+     * @return The number of dropped traces.
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Stops the writer, after writing every trace already submitted, and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+    }
+
+    /**
+     * Submits a finished call for export.
+     *
+     * @param trace the finished call.
+     */
+    void submit(CallTrace trace) {
+        if (closed || !queue.offer(trace)) {
+            droppedCount.increment();
+        }
+    }
+
+    private void writeLoop() {
+        StringBuilder sb = new StringBuilder(1024);
+        while (true) {
+            CallTrace trace = queue.poll();
+            if (trace == null) {
+                flush();
+                if (closed) {
+                    return;
+                }
+                try {
+                    // Not interrupted on close, as interrupting a thread writing to a file channel closes it.
+                    trace = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (trace == null) {
+                    continue;
+                }
+            }
+
+            try {
+                sb.setLength(0);
+                appendTrace(sb, trace);
+                writer.append(sb).append('\n');
+            } catch (IOException e) {
+                droppedCount.increment();
+                log.log(Level.WARNING, WARN_WRITE_FAILED, e);
+            }
+        }
+    }
+
+    private void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            log.log(Level.WARNING, WARN_WRITE_FAILED, e);
+        }
+    }
+
+    private void appendTrace(StringBuilder sb, CallTrace trace) {
+        sb.append("{\"resourceSpans\":[{\"resource\":{\"attributes\":[");
+        appendAttribute(sb, "service.name", serviceName);
+        sb.append("]},\"scopeSpans\":[{\"scope\":{\"name\":\"net.notjustanna.webview.interop\"},\"spans\":[");
+
+        long end = trace.start;
+        for (long mark : trace.marks) {
+            end = Math.max(end, mark);
+        }
+        long rootStart = trace.jsStart != 0 ? Math.min(trace.jsStart, epoch(trace.start)) : epoch(trace.start);
+        appendSpan(sb, trace, trace.spanId, trace.parentSpanId, trace.binding, SPAN_KIND_SERVER, rootStart, epoch(end), true);
+
+        if (trace.jsStart != 0) {
+            sb.append(',');
+            appendSpan(sb, trace, CallTrace.randomHex(8), trace.spanId, TraceStage.GLUE.spanName, SPAN_KIND_INTERNAL,
+                rootStart, epoch(trace.start), false);
+        }
+
+        long previous = trace.start;
+        for (TraceStage stage : JAVA_STAGES) {
+            long mark = trace.marks[stage.ordinal()];
+            if (mark == 0) {
+                continue;
+            }
+            String name = stage.spanName;
+            if (stage == TraceStage.ENCODE && trace.marks[TraceStage.INVOKE.ordinal()] == 0) {
+                // The interop didn't report its stages, so decode, invoke and encode are a single span.
+                name = "handle";
+            }
+            sb.append(',');
+            appendSpan(sb, trace, CallTrace.randomHex(8), trace.spanId, name, SPAN_KIND_INTERNAL,
+                epoch(previous), epoch(mark), false);
+            previous = mark;
+        }
+        sb.append("]}]}]}");
+    }
+
+    private void appendSpan(StringBuilder sb, CallTrace trace, String spanId, String parentSpanId, String name,
+                            int kind, long start, long end, boolean root) {
+        sb.append("{\"traceId\":\"").append(trace.traceId).append("\",\"spanId\":\"").append(spanId).append('"');
+        if (parentSpanId != null) {
+            sb.append(",\"parentSpanId\":\"").append(parentSpanId).append('"');
+        }
+        sb.append(",\"name\":");
+        appendString(sb, name);
+        sb.append(",\"kind\":").append(kind)
+            .append(",\"startTimeUnixNano\":\"").append(start)
+            .append("\",\"endTimeUnixNano\":\"").append(end).append("\"");
+        if (root) {
+            sb.append(",\"attributes\":[");
+            appendAttribute(sb, "webview.binding", trace.binding);
+            sb.append("],\"status\":{");
+            if (trace.failed) {
+                sb.append("\"code\":2");
+                if (trace.error != null) {
+                    sb.append(",\"message\":");
+                    appendString(sb, trace.error);
+                }
+            } else {
+                sb.append("\"code\":1");
+            }
+            sb.append('}');
+        }
+        sb.append('}');
+    }
+
+    private static void appendAttribute(StringBuilder sb, String key, String value) {
+        sb.append("{\"key\":");
+        appendString(sb, key);
+        sb.append(",\"value\":{\"stringValue\":");
+        appendString(sb, value);
+        sb.append("}}");
+    }
+
+    private static void appendString(StringBuilder sb, String str) {
+        sb.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char ch = str.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                sb.append('\\').append(ch);
+            } else if (ch < 0x20) {
+                sb.append(String.format("\\u%04x", (int) ch));
+            } else {
+                sb.append(ch);
+            }
+        }
+        sb.append('"');
+    }
+
+    private long epoch(long nanoTime) {
+        return epochOffset + nanoTime;
+    }
+
+    private static final TraceStage[] JAVA_STAGES = {TraceStage.QUEUE, TraceStage.DECODE, TraceStage.INVOKE, TraceStage.ENCODE, TraceStage.RETURN};
+
+    private static final int SPAN_KIND_INTERNAL = 1;
+
+    private static final int SPAN_KIND_SERVER = 2;
+
+    private static final int QUEUE_CAPACITY = 8192;
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private static final String WARN_WRITE_FAILED = "Failed to write webview traces.";
+}
@@ -0,0 +1,42 @@
+package net.notjustanna.webview.interop.callback;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link WebviewInteropFunction} which reads requests from JavaScript straight from their UTF-8 bytes,
+ * without decoding them to a string first.
+ * <p>
+ * Synchronous bindings read the request from the memory of the webview library straight into the buffer of
+ * the parser, which saves decoding large or non-ASCII requests, such as CJK text, to a string first.
+ */
+@FunctionalInterface
+public interface WebviewInteropRawFunction extends WebviewInteropFunction {
+    /**
+     * Processes a request from JavaScript and returns a response.
+     *
+     * @param req The request in JSON Array format passed from the JavaScript function, as UTF-8 bytes.
+     *            Only valid while this method runs.
+     * @return The response string in JSON format to be sent back to JavaScript, or {@code null} if null.
+     * @throws Exception If an error occurs during execution.
+     */
+    @Nullable
+    String applyRaw(@NotNull InputStream req) throws Exception;
+
+    /**
+     * Processes a request from JavaScript, given as a string, and returns a response.
+     *
+     * @param req The request string in JSON Array format passed from the JavaScript function.
+     * @return The response string in JSON format to be sent back to JavaScript, or {@code null} if null.
+     * @throws Exception If an error occurs during execution.
+     */
+    @Override
+    @Nullable
+    default String apply(@NotNull String req) throws Exception {
+        return applyRaw(new ByteArrayInputStream(req.getBytes(StandardCharsets.UTF_8)));
+    }
+}
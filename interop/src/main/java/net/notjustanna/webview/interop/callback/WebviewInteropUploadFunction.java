@@ -0,0 +1,24 @@
+package net.notjustanna.webview.interop.callback;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.InputStream;
+
+/**
+ * A functional interface representing a handler of uploads from JavaScript in a WebView.
+ * The handler reads the upload as a stream of UTF-8 JSON and returns a response JSON string
+ * or {@code null} if null.
+ */
+@FunctionalInterface
+public interface WebviewInteropUploadFunction {
+    /**
+     * Processes an upload from JavaScript and returns a response.
+     *
+     * @param in The uploaded bytes, read while they arrive.
+     * @return The response string in JSON format to be sent back to JavaScript, or {@code null} if null.
+     * @throws Exception If an error occurs during execution.
+     */
+    @Nullable
+    String apply(@NotNull InputStream in) throws Exception;
+}
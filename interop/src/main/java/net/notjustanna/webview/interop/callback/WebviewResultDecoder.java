@@ -0,0 +1,20 @@
+package net.notjustanna.webview.interop.callback;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A functional interface decoding the JSON result of a script evaluated in a WebView.
+ *
+ * @param <T> The type of the decoded result.
+ */
+@FunctionalInterface
+public interface WebviewResultDecoder<T> {
+    /**
+     * Decodes the result of a script.
+     *
+     * @param json The result in JSON format, {@code null} if the script returned {@code null} or {@code undefined}.
+     * @return The decoded result.
+     * @throws Exception If an error occurs during decoding.
+     */
+    T decode(@NotNull String json) throws Exception;
+}
@@ -118,10 +118,32 @@ subprojects {
             }
         }
 
+        // Task to write the SHA-256 of each packaged native library next to it, so the runtime
+        // can find its cached copy without hashing the library on every start
+        val hashNatives by creating {
+            dependsOn(pack) // Depend on the 'pack' task
+            val outputDir = project.layout.buildDirectory.dir("hash")
+            inputs.files(pack)
+            outputs.dir(outputDir)
+
+            doLast {
+                val root = outputDir.get().asFile
+                zipTree(pack.outputs.files.singleFile).visit {
+                    if (!isDirectory) {
+                        val digest = java.security.MessageDigest.getInstance("SHA-256").digest(file.readBytes())
+                        val target = root.resolve("$path.sha256")
+                        target.parentFile.mkdirs()
+                        target.writeText(digest.joinToString("") { "%02x".format(it) })
+                    }
+                }
+            }
+        }
+
         // Modify the existing 'jar' task to include the packaged native libraries
         val jar by getting(Jar::class) {
-            dependsOn(pack) // Depend on the 'pack' task
+            dependsOn(pack, hashNatives) // Depend on the 'pack' and 'hashNatives' tasks
             from(zipTree(pack.outputs.files.singleFile)) // Include the contents of the ZIP file
+            from(hashNatives) // Include the hashes of the native libraries
         }
     }
 }
@@ -0,0 +1,43 @@
+package net.notjustanna.webview;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * What {@link WebviewDispatcher} does when a task is submitted while its pending-task capacity is exhausted.
+ *
+ * @author Anna Silva
+ * @implNote Tasks submitted from the webview thread itself run immediately and are never subject to backpressure.
+ * @see WebviewDispatcher#setCapacity(int)
+ */
+public enum BackpressurePolicy {
+    /**
+     * The submitting thread blocks until the webview thread frees up room in the queue.
+     * <p>
+     * If the submitting thread is interrupted while waiting, the task is rejected with a
+     * {@link RejectedExecutionException} and the interrupt flag is restored.
+     */
+    BLOCK,
+
+    /**
+     * The task is rejected immediately. {@code execute} throws a {@link RejectedExecutionException},
+     * while {@code runAsync} and {@code supplyAsync} return a future completed exceptionally with it.
+     */
+    REJECT,
+
+    /**
+     * The oldest pending task of the lowest non-empty priority lane is dropped to make room.
+     * <p>
+     * If the dropped task was submitted through {@code runAsync} or {@code supplyAsync},
+     * its future is completed exceptionally with a {@link RejectedExecutionException}.
+     */
+    DISCARD_OLDEST,
+
+    /**
+     * The submitting thread waits for the webview thread to finish its current turn, then queues
+     * the task even if over capacity.
+     * <p>
+     * Like the caller-runs policy of thread pools, this slows producers down to the pace of the
+     * webview thread, but never drops a task nor blocks a producer for longer than a turn.
+     */
+    CALLER_RUNS_LATER
+}
@@ -0,0 +1,34 @@
+package net.notjustanna.webview;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for a bound function being called from JavaScript.
+ * <p>
+ * The duration is the time the {@link net.notjustanna.webview.natives.WebviewNative.BindCallback BindCallback}
+ * kept the webview thread busy.
+ *
+ * @author Anna Silva
+ * @see BoundCallback
+ */
+@Name("net.notjustanna.webview.Binding")
+@Label("Webview Binding Call")
+@Category({"Webview", "Bindings"})
+@Description("A bound function called from JavaScript, running on the webview thread")
+@StackTrace(false)
+@Enabled
+@Threshold("0 ms")
+final class BindingEvent extends jdk.jfr.Event {
+    @Label("Binding")
+    String name;
+
+    @Label("Request Length")
+    @Description("Length, in characters, of the JSON arguments, or in UTF-8 bytes for raw bindings")
+    int requestLength;
+}
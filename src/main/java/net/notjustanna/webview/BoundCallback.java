@@ -0,0 +1,116 @@
+package net.notjustanna.webview;
+
+import com.sun.jna.Pointer;
+import net.notjustanna.webview.metrics.BindingMetrics;
+import net.notjustanna.webview.natives.WebviewNative;
+
+/**
+ * Binding callback registered by {@link WebviewCore#bind(String, WebviewNative.BindCallback)}, which
+ * records metrics and Flight Recorder events around the user callback, and lets the {@link WebviewWatchdog}
+ * know which binding is running.
+ * <p>
+ * While the user callback runs, its metrics are reachable through {@link #current()}, so that
+ * {@link WebviewCore#respond(String, int, String)} can attribute the response to the binding.
+ *
+ * @author Anna Silva
+ */
+final class BoundCallback implements WebviewNative.BindCallback {
+    private final String name;
+    private final String origin;
+    private final WebviewDispatcher dispatcher;
+    private final BindingMetrics metrics;
+    private final WebviewNative.BindCallback callback;
+
+    BoundCallback(String name, WebviewDispatcher dispatcher, BindingMetrics metrics, WebviewNative.BindCallback callback) {
+        this.name = name;
+        this.origin = "binding:" + name;
+        this.dispatcher = dispatcher;
+        this.metrics = metrics;
+        this.callback = callback;
+    }
+
+    @Override
+    public void callback(String id, String req, Pointer arg) {
+        BindingEvent event = new BindingEvent();
+        event.begin();
+        CURRENT.set(metrics);
+        WebviewWatchdog watchdog = dispatcher.getWatchdog();
+        boolean watched = watchdog != null && watchdog.enter(origin);
+        long start = System.nanoTime();
+        try {
+            callback.callback(id, req, arg);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (watched) {
+                watchdog.exit();
+            }
+            CURRENT.set(null);
+            metrics.recordCall(elapsed, req);
+            event.end();
+            if (event.shouldCommit()) {
+                event.name = name;
+                event.requestLength = req == null ? 0 : req.length();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Returns the metrics of the binding currently running on this thread.
+     *
+     * @return The metrics, or {@code null} if no binding is running.
+     */
+    static BindingMetrics current() {
+        return CURRENT.get();
+    }
+
+    private static final ThreadLocal<BindingMetrics> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Binding callback registered by {@link WebviewCore#bindRaw(String, WebviewNative.RawBindCallback)},
+     * the counterpart of {@link BoundCallback} for callbacks reading requests from native memory.
+     */
+    static final class Raw implements WebviewNative.RawBindCallback {
+        private final String name;
+        private final String origin;
+        private final WebviewDispatcher dispatcher;
+        private final BindingMetrics metrics;
+        private final WebviewNative.RawBindCallback callback;
+
+        Raw(String name, WebviewDispatcher dispatcher, BindingMetrics metrics, WebviewNative.RawBindCallback callback) {
+            this.name = name;
+            this.origin = "binding:" + name;
+            this.dispatcher = dispatcher;
+            this.metrics = metrics;
+            this.callback = callback;
+        }
+
+        @Override
+        public void callback(Pointer id, Pointer req, Pointer arg) {
+            BindingEvent event = new BindingEvent();
+            event.begin();
+            CURRENT.set(metrics);
+            WebviewWatchdog watchdog = dispatcher.getWatchdog();
+            boolean watched = watchdog != null && watchdog.enter(origin);
+            long start = System.nanoTime();
+            try {
+                callback.callback(id, req, arg);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                if (watched) {
+                    watchdog.exit();
+                }
+                CURRENT.set(null);
+                // Pointer.indexOf scans natively, like strlen.
+                long length = req == null ? 0 : req.indexOf(0, (byte) 0);
+                metrics.recordCall(elapsed, length);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.name = name;
+                    event.requestLength = (int) length;
+                    event.commit();
+                }
+            }
+        }
+    }
+}
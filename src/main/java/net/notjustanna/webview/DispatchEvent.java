@@ -0,0 +1,103 @@
+package net.notjustanna.webview;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for a task going through the {@link WebviewDispatcher}.
+ * <p>
+ * The event starts when the task is submitted and ends when it finished running on the webview
+ * thread, so its duration is the full latency seen by the submitter. The time spent waiting in
+ * the queue and the time spent running are reported separately.
+ *
+ * @author Anna Silva
+ * @implNote Tasks are only tracked while the event is enabled in a running recording. Otherwise,
+ * submitting a task costs a single enablement check.
+ */
+@Name("net.notjustanna.webview.Dispatch")
+@Label("Webview Dispatch")
+@Category({"Webview", "Dispatcher"})
+@Description("A task submitted to the webview thread, from submission until it finished running")
+@StackTrace(false)
+@Enabled
+@Threshold("1 ms")
+final class DispatchEvent extends jdk.jfr.Event {
+    @Label("Priority")
+    String priority;
+
+    @Label("Dispatch Mode")
+    String mode;
+
+    @Label("Queue Time")
+    @Description("Time between submission and the start of the task")
+    @Timespan
+    long queueTime;
+
+    @Label("Run Time")
+    @Description("Time the task kept the webview thread busy")
+    @Timespan
+    long runTime;
+
+    /**
+     * Wraps a task so it reports a {@link DispatchEvent} once run, if the event is enabled.
+     *
+     * @param priority the lane the task is submitted to.
+     * @param mode     the current dispatch mode.
+     * @param command  the task.
+     * @return The task itself if the event is disabled, a tracking wrapper otherwise.
+     */
+    static Runnable wrap(DispatchPriority priority, DispatchMode mode, Runnable command) {
+        DispatchEvent event = new DispatchEvent();
+        if (!event.isEnabled()) {
+            return command;
+        }
+        event.priority = priority.name();
+        event.mode = mode.name();
+        event.begin();
+        return new Tracked(event, System.nanoTime(), command);
+    }
+
+    /**
+     * Returns the task submitted by the user, if the given task is a tracking wrapper.
+     *
+     * @param command the task, possibly wrapped.
+     * @return The original task.
+     */
+    static Runnable unwrap(Runnable command) {
+        return command instanceof Tracked ? ((Tracked) command).command : command;
+    }
+
+    private static final class Tracked implements Runnable {
+        private final DispatchEvent event;
+        private final long submittedAt;
+        private final Runnable command;
+
+        private Tracked(DispatchEvent event, long submittedAt, Runnable command) {
+            this.event = event;
+            this.submittedAt = submittedAt;
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            long startedAt = System.nanoTime();
+            try {
+                command.run();
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    long finishedAt = System.nanoTime();
+                    event.queueTime = startedAt - submittedAt;
+                    event.runTime = finishedAt - startedAt;
+                    event.commit();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package net.notjustanna.webview;
+
+import java.util.Locale;
+
+/**
+ * Strategies used by {@link WebviewDispatcher} to hand tasks over to the webview thread.
+ * <p>
+ * The default mode can be changed with the {@code webview.dispatcher.mode} system property,
+ * using either {@code batched} or {@code per-task} as the value.
+ *
+ * @author Anna Silva
+ */
+public enum DispatchMode {
+    /**
+     * Tasks are pushed onto a lock-free queue and drained by a single, long-lived native callback.
+     * <p>
+     * A native {@code webview_dispatch} is only issued when the queue goes from empty to non-empty,
+     * so bursts of small tasks share a single wakeup of the webview thread.
+     */
+    BATCHED,
+
+    /**
+     * Every task is dispatched on its own, with a dedicated native callback and {@code webview_dispatch} call.
+     * <p>
+     * This is the behaviour of previous releases, kept as a fallback and as a baseline for comparisons.
+     */
+    PER_TASK;
+
+    /**
+     * Resolves the default mode from the {@code webview.dispatcher.mode} system property.
+     *
+     * @return The configured mode, or {@link #BATCHED} if none (or an unknown one) was configured.
+     */
+    static DispatchMode fromSystemProperty() {
+        String value = System.getProperty("webview.dispatcher.mode");
+        if (value == null) {
+            return BATCHED;
+        }
+        switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "per-task":
+            case "per_task":
+                return PER_TASK;
+            default:
+                return BATCHED;
+        }
+    }
+}
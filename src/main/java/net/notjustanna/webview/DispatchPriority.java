@@ -0,0 +1,28 @@
+package net.notjustanna.webview;
+
+/**
+ * Priority lanes for tasks submitted to the {@link WebviewDispatcher}.
+ * <p>
+ * On every turn of the webview thread, tasks from higher priority lanes run before
+ * any task of a lower priority lane. Within a lane, tasks run in submission order.
+ *
+ * @author Anna Silva
+ * @implNote Lanes are only honoured in {@link DispatchMode#BATCHED} mode. In
+ * {@link DispatchMode#PER_TASK} mode tasks run in arrival order.
+ */
+public enum DispatchPriority {
+    /**
+     * Work the user is waiting on, such as reacting to input. Runs before everything else.
+     */
+    INTERACTIVE,
+
+    /**
+     * The default priority, used by all operations that don't specify one.
+     */
+    NORMAL,
+
+    /**
+     * Work that may be delayed without visible impact, such as background updates or telemetry.
+     */
+    BACKGROUND
+}
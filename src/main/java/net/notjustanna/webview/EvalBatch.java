@@ -0,0 +1,139 @@
+package net.notjustanna.webview;
+
+import com.sun.jna.Pointer;
+import lombok.Getter;
+import net.notjustanna.webview.metrics.Histogram;
+import net.notjustanna.webview.natives.WebviewNative;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gathers the scripts evaluated during one turn of the webview thread into a single {@code webview_eval}.
+ * <p>
+ * While the dispatcher drains its lanes, {@link Script} tasks append to the batch instead of evaluating
+ * right away. The batch is flushed before any other task runs, and at the end of the turn, so scripts
+ * still run in the order they were submitted relative to everything else.
+ * <p>
+ * Each script of a merged batch goes through a global indirect {@code eval}, so a script that fails to parse
+ * or throws is logged to the console, and the remaining scripts still run. Unlike a separate
+ * {@code webview_eval}, top-level {@code let}, {@code const} and {@code class} declarations are scoped to
+ * that {@code eval}: later scripts can't see them, so shared state must be declared with {@code var},
+ * {@code function} or as a property of {@code window}.
+ *
+ * @author Anna Silva
+ */
+final class EvalBatch {
+    private final WebviewDispatcher dispatcher;
+    private final Pointer $webview_t;
+    private final List<String> scripts = new ArrayList<>();
+
+    /**
+     * Number of scripts merged into each {@code webview_eval}.
+     */
+    @Getter
+    private final Histogram sizeHistogram = new Histogram();
+
+    /**
+     * Whether the dispatcher is draining. Only accessed from the webview thread.
+     */
+    private boolean draining;
+
+    EvalBatch(WebviewDispatcher dispatcher, Pointer $webview_t) {
+        this.dispatcher = dispatcher;
+        this.$webview_t = $webview_t;
+    }
+
+    /**
+     * Starts gathering scripts, at the beginning of a drain.
+     */
+    void begin() {
+        draining = true;
+    }
+
+    /**
+     * Evaluates the gathered scripts and stops gathering, at the end of a drain.
+     */
+    void end() {
+        flush();
+        draining = false;
+    }
+
+    /**
+     * Evaluates a script, or adds it to the batch while draining.
+     *
+     * @param script the script to evaluate.
+     */
+    void add(String script) {
+        if (draining) {
+            scripts.add(script);
+        } else {
+            eval(script);
+        }
+    }
+
+    /**
+     * Evaluates the gathered scripts, if any, as a single script.
+     */
+    void flush() {
+        int size = scripts.size();
+        if (size == 0) {
+            return;
+        }
+        if (dispatcher.isTerminated()) {
+            scripts.clear();
+            return;
+        }
+        sizeHistogram.record(size);
+        if (size == 1) {
+            eval(scripts.get(0));
+            scripts.clear();
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder(BATCH_PREFIX);
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            JsEncoder.appendString(sb, scripts.get(i));
+        }
+        scripts.clear();
+        eval(sb.append(BATCH_SUFFIX).toString());
+    }
+
+    private void eval(String script) {
+        try {
+            WebviewCore.handleError(NativeCallEvent.record("webview_eval", () -> dispatcher.stringEncoder.apply(script, js -> WebviewNative.INSTANCE.webview_eval($webview_t, js))));
+        } catch (Exception e) {
+            dispatcher.reportError(e);
+        }
+    }
+
+    /**
+     * A task evaluating a script through the batch.
+     */
+    static final class Script implements Runnable {
+        private final EvalBatch batch;
+        private final String script;
+        private final Runnable onDispatch;
+
+        Script(EvalBatch batch, String script, Runnable onDispatch) {
+            this.batch = batch;
+            this.script = script;
+            this.onDispatch = onDispatch;
+        }
+
+        @Override
+        public void run() {
+            if (onDispatch != null) {
+                onDispatch.run();
+            }
+            batch.add(script);
+        }
+    }
+
+    private static final String BATCH_PREFIX = "(function(s){for(var i=0;i<s.length;i++){try{(0,eval)(s[i]);}catch(e){console.error(e);}}})([";
+
+    private static final String BATCH_SUFFIX = "]);";
+}
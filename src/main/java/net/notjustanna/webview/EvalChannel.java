@@ -0,0 +1,181 @@
+package net.notjustanna.webview;
+
+import com.sun.jna.Pointer;
+import net.notjustanna.webview.natives.WebviewNative;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reply channel of {@link WebviewCore#evaluateAsync(String)}.
+ * <p>
+ * Every evaluation is wrapped so its result is sent back through a single internal binding,
+ * along with a correlation id. Pending evaluations are forgotten once they complete, time out,
+ * or the page they were sent to goes away.
+ *
+ * @author Anna Silva
+ */
+final class EvalChannel implements WebviewNative.BindCallback {
+    private final WebviewCore webview;
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+
+    /**
+     * Completes once the reply binding is installed, or {@code null} until the first evaluation.
+     */
+    private volatile CompletableFuture<Void> installation;
+
+    EvalChannel(WebviewCore webview) {
+        this.webview = webview;
+    }
+
+    /**
+     * Evaluates a script, completing the returned future with the JSON of its result.
+     *
+     * @param script   the script to evaluate.
+     * @param priority the lane to dispatch the evaluation on.
+     * @param timeout  how long to wait for the result.
+     * @return A future of the JSON result.
+     */
+    CompletableFuture<String> evaluate(String script, DispatchPriority priority, Duration timeout) {
+        CompletableFuture<Void> install = install();
+        long id = nextId.incrementAndGet();
+        Pending entry = new Pending();
+        CompletableFuture<String> future = entry.future;
+        pending.put(id, entry);
+        future.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS).whenComplete((r, e) -> pending.remove(id, entry));
+        if (install.isCompletedExceptionally()) {
+            install.whenComplete((r, e) -> future.completeExceptionally(e));
+        } else {
+            // Queued behind the installation, which runs first as it's on the highest lane. Waiting for it
+            // to complete instead would let the evaluation run ahead of tasks queued before it.
+            dispatch(id, script, priority, entry);
+        }
+        return future;
+    }
+
+    /**
+     * Installs the reply binding on first use, ahead of anything queued on the lanes.
+     *
+     * @return A future completed once the binding is installed. By the time it is returned, the installation
+     * is already queued.
+     */
+    private CompletableFuture<Void> install() {
+        CompletableFuture<Void> install = installation;
+        if (install == null) {
+            synchronized (this) {
+                install = installation;
+                if (install == null) {
+                    try {
+                        install = webview.getDispatcher().runInternal(DispatchPriority.INTERACTIVE, () -> webview.bind(REPLY_BINDING, this));
+                    } catch (RejectedExecutionException e) {
+                        // Not cached, as the webview accepts nothing anymore.
+                        return CompletableFuture.failedFuture(e);
+                    }
+                    installation = install;
+                }
+            }
+        }
+        return install;
+    }
+
+    /**
+     * Dispatches a wrapped evaluation, recording the page it runs on once it reaches the webview thread.
+     */
+    private void dispatch(long id, String script, DispatchPriority priority, Pending entry) {
+        try {
+            webview.getDispatcher().execEval(priority, wrap(id, script), () -> entry.navigation = webview.getNavigationCount());
+        } catch (RejectedExecutionException e) {
+            entry.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Fails every pending evaluation.
+     *
+     * @param error the error to fail them with.
+     */
+    void failAll(Throwable error) {
+        for (Pending entry : pending.values()) {
+            entry.future.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Fails the pending evaluations which ran on a page left since. Must be called on the webview thread.
+     * <p>
+     * Evaluations still queued are left alone, as they will run on the next page.
+     *
+     * @param navigation the navigation count of the current page.
+     * @param error      the error to fail them with.
+     */
+    void failBefore(long navigation, Throwable error) {
+        for (Pending entry : pending.values()) {
+            if (entry.navigation != NOT_DISPATCHED && entry.navigation < navigation) {
+                entry.future.completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * Receives {@code [id, ok, value]} from the page.
+     */
+    @Override
+    public void callback(String id, String req, Pointer arg) {
+        try {
+            int first = req.indexOf(',');
+            int second = req.indexOf(',', first + 1);
+            if (!req.startsWith("[") || !req.endsWith("]") || first < 0 || second < 0) {
+                return;
+            }
+            Pending entry = pending.remove(Long.parseLong(req.substring(1, first)));
+            if (entry == null) {
+                return;
+            }
+            CompletableFuture<String> future = entry.future;
+            String value = req.substring(second + 1, req.length() - 1);
+            if (req.startsWith("true", first + 1)) {
+                future.complete(value);
+            } else {
+                future.completeExceptionally(new WebviewScriptException(JsEncoder.unquote(value)));
+            }
+        } catch (NumberFormatException ignored) {
+            // Not sent by us, as ids are always numbers.
+        } finally {
+            webview.respond(id, 0, null);
+        }
+    }
+
+    /**
+     * Wraps a script so its completion value, or the value its promise resolves to, is sent back.
+     */
+    private static String wrap(long id, String script) {
+        return "(function(){var reply=function(ok,v){return window." + REPLY_BINDING + "(" + id + ",ok,v);};"
+            + "Promise.resolve().then(function(){return (0,eval)(" + JsEncoder.string(script) + ");})"
+            + ".then(function(v){return reply(true,v===undefined?null:v);},"
+            + "function(e){return reply(false,String(e&&e.stack||e));})"
+            + ".catch(function(e){reply(false,String(e&&e.message||e));});})();";
+    }
+
+    /**
+     * A pending evaluation.
+     */
+    private static final class Pending {
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        /**
+         * The {@link WebviewCore#getNavigationCount() navigation count} of the page the evaluation was sent to,
+         * or {@link #NOT_DISPATCHED}. Only written by the webview thread.
+         */
+        private volatile long navigation = NOT_DISPATCHED;
+    }
+
+    private static final long NOT_DISPATCHED = -1;
+
+    private static final String REPLY_BINDING = "__webview_reply__";
+}
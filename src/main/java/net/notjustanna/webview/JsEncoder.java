@@ -0,0 +1,168 @@
+package net.notjustanna.webview;
+
+import java.lang.reflect.Array;
+import java.util.Map;
+
+/**
+ * Encodes Java values as JavaScript literals, to be embedded in scripts, and decodes strings sent back by the page.
+ * <p>
+ * Strings are escaped by copying runs of safe characters in bulk, so the common case of text without
+ * quotes, backslashes or control characters costs a single copy into the output builder.
+ *
+ * @author Anna Silva
+ */
+final class JsEncoder {
+    private JsEncoder() {
+    }
+
+    /**
+     * Encodes a string as a JSON string literal.
+     *
+     * @param value the string to encode.
+     * @return The quoted and escaped string.
+     */
+    static String string(CharSequence value) {
+        return appendString(new StringBuilder(value.length() + 2), value).toString();
+    }
+
+    /**
+     * Appends a string as a JSON string literal.
+     *
+     * @param sb    the builder to append to.
+     * @param value the string to encode.
+     * @return The builder, for chaining.
+     */
+    static StringBuilder appendString(StringBuilder sb, CharSequence value) {
+        sb.append('"');
+        int length = value.length();
+        int run = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            // Line and paragraph separators are valid JSON, but not valid in older JavaScript string literals.
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            sb.append(value, run, i);
+            run = i + 1;
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    sb.append("\\u").append(HEX[c >> 12 & 0xF]).append(HEX[c >> 8 & 0xF]).append(HEX[c >> 4 & 0xF]).append(HEX[c & 0xF]);
+            }
+        }
+        return sb.append(value, run, length).append('"');
+    }
+
+    /**
+     * Appends a value as a JavaScript literal.
+     * <p>
+     * Supports {@code null}, strings, characters, numbers, booleans, arrays, {@link Iterable}s and
+     * {@link Map}s, encoded as objects with their keys converted to strings.
+     *
+     * @param sb    the builder to append to.
+     * @param value the value to encode.
+     * @return The builder, for chaining.
+     * @throws IllegalArgumentException if the value, or any value nested in it, is of an unsupported type.
+     */
+    static StringBuilder appendValue(StringBuilder sb, Object value) {
+        if (value == null) {
+            return sb.append("null");
+        } else if (value instanceof CharSequence) {
+            return appendString(sb, (CharSequence) value);
+        } else if (value instanceof Character) {
+            return appendString(sb, String.valueOf(value));
+        } else if (value instanceof Boolean || value instanceof Integer || value instanceof Long
+            || value instanceof Short || value instanceof Byte) {
+            return sb.append(value);
+        } else if (value instanceof Double || value instanceof Float) {
+            // NaN, Infinity and -Infinity are valid JavaScript, unlike JSON.
+            return sb.append(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            return sb.append(value.toString());
+        } else if (value instanceof Map) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                appendString(sb, String.valueOf(entry.getKey())).append(':');
+                appendValue(sb, entry.getValue());
+            }
+            return sb.append('}');
+        } else if (value instanceof Iterable) {
+            sb.append('[');
+            boolean first = true;
+            for (Object element : (Iterable<?>) value) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                appendValue(sb, element);
+            }
+            return sb.append(']');
+        } else if (value.getClass().isArray()) {
+            sb.append('[');
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                appendValue(sb, Array.get(value, i));
+            }
+            return sb.append(']');
+        }
+        throw new IllegalArgumentException(ERROR_UNSUPPORTED_TYPE + value.getClass().getName());
+    }
+
+    /**
+     * Decodes a JSON string literal, returning anything else as is.
+     *
+     * @param json the JSON string literal.
+     * @return The decoded string.
+     */
+    static String unquote(String json) {
+        int end = json.length() - 1;
+        if (end < 1 || json.charAt(0) != '"' || json.charAt(end) != '"') {
+            return json;
+        }
+        int escape = json.indexOf('\\', 1);
+        if (escape < 0 || escape >= end) {
+            return json.substring(1, end);
+        }
+        StringBuilder sb = new StringBuilder(end - 1);
+        int run = 1;
+        while (escape >= 0 && escape < end - 1) {
+            sb.append(json, run, escape);
+            char e = json.charAt(escape + 1);
+            run = escape + 2;
+            switch (e) {
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (run + 4 <= end) {
+                        sb.append((char) Integer.parseInt(json, run, run + 4, 16));
+                        run += 4;
+                        break;
+                    }
+                    sb.append(e);
+                    break;
+                default: sb.append(e);
+            }
+            escape = json.indexOf('\\', run);
+        }
+        return sb.append(json, run, end).toString();
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final String ERROR_UNSUPPORTED_TYPE = "Cannot encode value as JavaScript, pass it as JSON instead: ";
+}
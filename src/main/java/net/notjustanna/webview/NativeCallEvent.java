@@ -0,0 +1,56 @@
+package net.notjustanna.webview;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Flight Recorder event for a call into the native webview library made by {@link WebviewCore}.
+ *
+ * @author Anna Silva
+ * @implNote When the event is disabled, the call costs a single enablement check.
+ */
+@Name("net.notjustanna.webview.NativeCall")
+@Label("Webview Native Call")
+@Category({"Webview", "Native"})
+@Description("A call into the native webview library")
+@StackTrace(false)
+@Enabled
+@Threshold("1 ms")
+final class NativeCallEvent extends jdk.jfr.Event {
+    @Label("Function")
+    String function;
+
+    @Label("Result")
+    @Description("The webview error code returned by the call")
+    int result;
+
+    /**
+     * Performs a native call, reporting a {@link NativeCallEvent} if enabled.
+     *
+     * @param function the name of the native function, such as {@code webview_eval}.
+     * @param call     the native call.
+     * @return The webview error code returned by the call.
+     */
+    static int record(String function, IntSupplier call) {
+        NativeCallEvent event = new NativeCallEvent();
+        if (!event.isEnabled()) {
+            return call.getAsInt();
+        }
+        event.begin();
+        int result = call.getAsInt();
+        event.end();
+        if (event.shouldCommit()) {
+            event.function = function;
+            event.result = result;
+            event.commit();
+        }
+        return result;
+    }
+}
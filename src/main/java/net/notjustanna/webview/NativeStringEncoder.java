@@ -0,0 +1,134 @@
+package net.notjustanna.webview;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.function.ToIntFunction;
+
+/**
+ * Encodes strings to NUL-terminated UTF-8 in native memory, as expected by the webview library.
+ * <p>
+ * When given a {@link String}, JNA encodes it to a new byte array, then copies it to a new native buffer, on
+ * every call. This encoder instead writes straight into a native buffer it keeps and reuses, growing it as
+ * needed. Each webview uses one for {@link WebviewCore#setHtml(String)}, {@link WebviewCore#evaluate(String)}
+ * and {@link WebviewCore#setInitScript(String)}.
+ * <p>
+ * For content pushed many times without changes, use {@link #encodeOnce(CharSequence)} and the {@code Utf8}
+ * variants of those methods, so it is only encoded once.
+ *
+ * @author Anna Silva
+ * @implNote Not thread-safe. A webview only uses its encoder on the webview thread.
+ */
+public final class NativeStringEncoder {
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /**
+     * The largest buffer kept between calls. Larger strings are encoded into a buffer released after the call.
+     */
+    private final long maxRetained;
+
+    private Memory buffer;
+
+    /**
+     * Whether the pooled buffer is in use, in case a call re-enters the encoder.
+     */
+    private boolean inUse;
+
+    /**
+     * Creates an encoder keeping up to 1 MiB of native memory between calls.
+     */
+    public NativeStringEncoder() {
+        this(DEFAULT_MAX_RETAINED);
+    }
+
+    /**
+     * Creates an encoder.
+     *
+     * @param maxRetained The largest native buffer kept between calls, in bytes.
+     */
+    public NativeStringEncoder(long maxRetained) {
+        this.maxRetained = maxRetained;
+    }
+
+    /**
+     * Encodes a string into native memory and passes it to a native call.
+     *
+     * @param value The string, or {@code null} to pass a null pointer.
+     * @param call  The native call. The pointer is only valid until it returns.
+     * @return The result of the call.
+     */
+    public int apply(@Nullable CharSequence value, @NotNull ToIntFunction<Pointer> call) {
+        if (value == null) {
+            return call.applyAsInt(null);
+        }
+        long needed = maxEncodedLength(value);
+        if (inUse || needed > maxRetained) {
+            // Freed right away rather than once collected, as these can be large and the GC won't see them.
+            try (Memory memory = encodeOnce(value)) {
+                return call.applyAsInt(memory);
+            }
+        }
+        if (buffer == null || buffer.size() < needed) {
+            if (buffer != null) {
+                buffer.close();
+            }
+            buffer = new Memory(Math.min(Math.max(needed, buffer == null ? INITIAL_SIZE : buffer.size() * 2), maxRetained));
+        }
+        inUse = true;
+        try {
+            encode(value, buffer);
+            return call.applyAsInt(buffer);
+        } finally {
+            inUse = false;
+        }
+    }
+
+    /**
+     * Encodes a string into a new native buffer, to be passed to the {@code Utf8} variants of
+     * {@link WebviewCore} methods as many times as needed.
+     *
+     * @param value The string.
+     * @return The NUL-terminated UTF-8 string. Freed once garbage collected.
+     */
+    public static Memory encodeOnce(@NotNull CharSequence value) {
+        NativeStringEncoder encoder = new NativeStringEncoder(0);
+        Memory memory = new Memory(maxEncodedLength(value));
+        encoder.encode(value, memory);
+        return memory;
+    }
+
+    /**
+     * Encodes a string into a buffer large enough for {@link #maxEncodedLength(CharSequence)} bytes.
+     */
+    private void encode(CharSequence value, Memory memory) {
+        ByteBuffer out = memory.getByteBuffer(0, memory.size());
+        encoder.reset();
+        CoderResult result = encoder.encode(CharBuffer.wrap(value), out, true);
+        if (!result.isUnderflow()) {
+            throw new IllegalStateException("Native buffer too small for " + value.length() + " chars");
+        }
+        encoder.flush(out);
+        out.put((byte) 0);
+    }
+
+    /**
+     * UTF-8 takes at most three bytes per UTF-16 char, plus the NUL terminator.
+     */
+    private static long maxEncodedLength(CharSequence value) {
+        return value.length() * 3L + 1;
+    }
+
+    private static final long DEFAULT_MAX_RETAINED = 1024 * 1024;
+
+    private static final long INITIAL_SIZE = 16 * 1024;
+}
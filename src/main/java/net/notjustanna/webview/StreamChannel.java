@@ -0,0 +1,237 @@
+package net.notjustanna.webview;
+
+import com.sun.jna.Pointer;
+import net.notjustanna.webview.natives.WebviewNative;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transport of {@link WebviewOutputStream}s.
+ * <p>
+ * Chunks are sent as scripts, and the page grants credits back through a single internal binding,
+ * along with the id of the stream, once its reader consumed them. Streams fail once the page they were
+ * opened on goes away, whether the webview navigated or the page left by itself.
+ *
+ * @author Anna Silva
+ */
+final class StreamChannel implements WebviewNative.BindCallback {
+    private final WebviewCore webview;
+    private final Map<Integer, Registration> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * Queued once the script and the ack binding are being installed, or {@code null} until the first stream.
+     */
+    private volatile CompletableFuture<Void> installation;
+
+    StreamChannel(WebviewCore webview) {
+        this.webview = webview;
+    }
+
+    /**
+     * Opens a new stream.
+     *
+     * @param chunkSize the maximum size of each chunk, in bytes.
+     * @param window    the maximum number of chunks the page may hold unconsumed.
+     * @return The stream.
+     * @throws RejectedExecutionException if the webview was shut down.
+     */
+    WebviewOutputStream open(int chunkSize, int window) {
+        install();
+        int id = nextId.incrementAndGet();
+        WebviewOutputStream stream = new WebviewOutputStream(this, id, chunkSize, window);
+        Registration registration = new Registration(stream);
+        streams.put(id, registration);
+        try {
+            // Queued behind any pending navigation, so the stream belongs to the page its chunks are sent to.
+            webview.getDispatcher().executeInternal(DispatchPriority.NORMAL, () -> registration.navigation = webview.getNavigationCount());
+        } catch (RejectedExecutionException e) {
+            streams.remove(id);
+            throw e;
+        }
+        return stream;
+    }
+
+    /**
+     * Installs the script and the ack binding on first use, ahead of anything queued on the lanes, so no
+     * chunk can reach the page before them.
+     */
+    private void install() {
+        if (installation == null) {
+            synchronized (this) {
+                if (installation == null) {
+                    installation = webview.getDispatcher().runInternal(DispatchPriority.INTERACTIVE, () -> {
+                        webview.setInitScript(SCRIPT);
+                        webview.evaluate(SCRIPT);
+                        webview.bind(ACK_BINDING, this);
+                    });
+                }
+            }
+        }
+    }
+
+    void chunk(int id, String base64) {
+        evaluate("__webview_stream__.chunk(" + id + ",\"" + base64 + "\");");
+    }
+
+    void end(int id) {
+        evaluate("__webview_stream__.end(" + id + ");");
+    }
+
+    void error(int id, String message) {
+        evaluate("__webview_stream__.error(" + id + "," + JsEncoder.string(message) + ");");
+    }
+
+    /**
+     * Evaluates a script of the stream, exempt from the dispatcher capacity, since credits already bound
+     * the number of chunks in flight.
+     */
+    private void evaluate(String script) {
+        webview.getDispatcher().execEval(DispatchPriority.NORMAL, script, null);
+    }
+
+    void remove(int id) {
+        streams.remove(id);
+    }
+
+    boolean isWebviewThread() {
+        return webview.getDispatcher().isWebviewThread();
+    }
+
+    /**
+     * Fails every open stream.
+     *
+     * @param message the reason.
+     */
+    void failAll(String message) {
+        for (Registration registration : streams.values()) {
+            registration.stream.fail(new IOException(message));
+        }
+        streams.clear();
+    }
+
+    /**
+     * Fails the streams opened on a page left since. Must be called on the webview thread.
+     * <p>
+     * Streams opened after a navigation was queued are left alone, as their chunks go to the next page.
+     *
+     * @param navigation the navigation count of the current page.
+     * @param message    the reason.
+     */
+    void failBefore(long navigation, String message) {
+        Iterator<Registration> it = streams.values().iterator();
+        while (it.hasNext()) {
+            Registration registration = it.next();
+            if (registration.navigation != NOT_OPENED && registration.navigation < navigation) {
+                it.remove();
+                registration.stream.fail(new IOException(message));
+            }
+        }
+    }
+
+    /**
+     * Receives {@code [id, consumed, cancelled]} from the page, where cancelled is {@code false}, {@code true},
+     * or {@code "pagehide"} once the page goes away.
+     */
+    @Override
+    public void callback(String id, String req, Pointer arg) {
+        try {
+            String[] parts = req.substring(1, req.length() - 1).split(",");
+            if (parts.length != 3) {
+                return;
+            }
+            int streamId = Integer.parseInt(parts[0]);
+            Registration registration = streams.get(streamId);
+            if (registration == null) {
+                return;
+            }
+            if (parts[2].equals("false")) {
+                registration.stream.credit(Integer.parseInt(parts[1]));
+            } else {
+                streams.remove(streamId);
+                registration.stream.fail(new IOException(parts[2].equals("true") ? ERROR_CANCELLED : ERROR_PAGE_HIDDEN));
+            }
+        } catch (RuntimeException ignored) {
+            // Not sent by us, as the script always sends well-formed acks.
+        } finally {
+            webview.respond(id, 0, null);
+        }
+    }
+
+    /**
+     * An open stream.
+     */
+    private static final class Registration {
+        private final WebviewOutputStream stream;
+
+        /**
+         * The {@link WebviewCore#getNavigationCount() navigation count} of the page the stream was opened on,
+         * or {@link #NOT_OPENED}. Only written by the webview thread.
+         */
+        private volatile long navigation = NOT_OPENED;
+
+        private Registration(WebviewOutputStream stream) {
+            this.stream = stream;
+        }
+    }
+
+    private static final long NOT_OPENED = -1;
+
+    private static final String ACK_BINDING = "__webview_stream_ack__";
+
+    /**
+     * Reassembles chunks on the page, and acknowledges them as they're read.
+     */
+    private static final String SCRIPT = String.join("\n",
+        "(function() {",
+        "  'use strict';",
+        "  if (window.__webview_stream__) return;",
+        "  var streams = {}, cancelled = {};",
+        "  function entry(id) { return streams[id] || (streams[id] = {queue: [], done: false, error: null, waiting: null}); }",
+        "  function wake(s) { var w = s.waiting; s.waiting = null; if (w) w(); }",
+        "  function ack(id, n, cancel) { if (window." + ACK_BINDING + ") window." + ACK_BINDING + "(id, n, cancel); }",
+        "  function decode(b64) {",
+        "    var bin = atob(b64), out = new Uint8Array(bin.length);",
+        "    for (var i = 0; i < bin.length; i++) out[i] = bin.charCodeAt(i);",
+        "    return out;",
+        "  }",
+        "  function next(id, s) {",
+        "    return new Promise(function(resolve, reject) {",
+        "      (function attempt() {",
+        "        if (s.queue.length) { var v = s.queue.shift(); ack(id, 1, false); resolve({done: false, value: v}); }",
+        "        else if (s.error) { delete streams[id]; reject(s.error); }",
+        "        else if (s.done) { delete streams[id]; resolve({done: true}); }",
+        "        else s.waiting = attempt;",
+        "      })();",
+        "    });",
+        "  }",
+        "  function get(id) {",
+        "    var s = entry(id);",
+        "    return new ReadableStream({",
+        "      pull: function(c) { return next(id, s).then(function(r) { if (r.done) c.close(); else c.enqueue(r.value); }); },",
+        "      cancel: function() { cancelled[id] = true; delete streams[id]; ack(id, 0, true); }",
+        "    }, {highWaterMark: 0});",
+        "  }",
+        "  function text(id) { return new Response(get(id)).text(); }",
+        "  window.addEventListener('pagehide', function() { for (var id in streams) ack(+id, 0, 'pagehide'); });",
+        "  window.__webview_stream__ = {",
+        "    chunk: function(id, b64) { if (cancelled[id]) return; var s = entry(id); s.queue.push(decode(b64)); wake(s); },",
+        "    end: function(id) { var s = entry(id); s.done = true; wake(s); },",
+        "    error: function(id, message) { var s = entry(id); s.error = new Error(message); wake(s); },",
+        "    get: get,",
+        "    text: text,",
+        "    json: function(id) { return text(id).then(JSON.parse); }",
+        "  };",
+        "})();"
+    );
+
+    private static final String ERROR_CANCELLED = "The page cancelled the stream.";
+
+    private static final String ERROR_PAGE_HIDDEN = "The page went away before the stream was closed.";
+}
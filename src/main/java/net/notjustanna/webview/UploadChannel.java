@@ -0,0 +1,228 @@
+package net.notjustanna.webview;
+
+import com.sun.jna.Pointer;
+import lombok.extern.java.Log;
+import net.notjustanna.webview.natives.JvmHelper;
+import net.notjustanna.webview.natives.WebviewNative;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Transport of uploads to functions bound by {@link WebviewCore#bindUpload(String, WebviewUploadHandler)}.
+ * <p>
+ * The page splits each upload into chunks, sent one call at a time through a single internal binding.
+ * A call is only answered once there's room for the next chunk, which paces the page to the handler.
+ *
+ * @author Anna Silva
+ */
+@Log
+final class UploadChannel implements WebviewNative.BindCallback {
+    private final WebviewCore webview;
+    private final Map<String, WebviewUploadHandler> handlers = new ConcurrentHashMap<>();
+    private final Map<String, WebviewInputStream> uploads = new ConcurrentHashMap<>();
+    private final AtomicBoolean installed = new AtomicBoolean();
+
+    UploadChannel(WebviewCore webview) {
+        this.webview = webview;
+    }
+
+    /**
+     * Binds an upload function.
+     *
+     * @param name    the name of the JavaScript function.
+     * @param handler the handler of uploads.
+     */
+    void register(String name, WebviewUploadHandler handler) {
+        if (name.indexOf('"') >= 0 || name.indexOf('\\') >= 0) {
+            throw new IllegalArgumentException(ERROR_INVALID_NAME + name);
+        }
+        if (installed.compareAndSet(false, true)) {
+            webview.setInitScript(SCRIPT);
+            webview.evaluate(SCRIPT);
+            webview.bind(CHUNK_BINDING, this);
+        }
+        handlers.put(name, handler);
+        String script = "__webview_upload__.bind(" + JsEncoder.string(name) + ");";
+        webview.setInitScript(script);
+        webview.evaluate(script);
+    }
+
+    void respondContinue(String call) {
+        webview.respond(call, 0, null);
+    }
+
+    void respond(String call, int status, String response) {
+        webview.respond(call, status, response);
+    }
+
+    void remove(String uploadId) {
+        uploads.remove(uploadId);
+    }
+
+    /**
+     * Fails every upload in progress.
+     *
+     * @param message the reason.
+     */
+    void failAll(String message) {
+        for (WebviewInputStream upload : uploads.values()) {
+            upload.fail(new IOException(message));
+        }
+        uploads.clear();
+    }
+
+    /**
+     * Receives {@code [name, uploadId, kind, data, last]} from the page, where kind is {@code "s"} for
+     * string data, and {@code "b"} for Base64 encoded binary data.
+     */
+    @Override
+    public void callback(String id, String req, Pointer arg) {
+        String name, uploadId;
+        byte[] bytes;
+        boolean last;
+        try {
+            int nameEnd = req.indexOf('"', 2);
+            int idEnd = req.indexOf('"', nameEnd + 3);
+            int dataEnd = req.lastIndexOf(',');
+            if (!req.startsWith("[\"") || nameEnd < 0 || idEnd < 0 || dataEnd < idEnd) {
+                webview.respond(id, 1, JsEncoder.string(ERROR_MALFORMED));
+                return;
+            }
+            name = req.substring(2, nameEnd);
+            uploadId = req.substring(nameEnd + 3, idEnd);
+            char kind = req.charAt(idEnd + 3);
+            String data = req.substring(idEnd + 6, dataEnd);
+            last = req.startsWith("true", dataEnd + 1);
+            if (kind == 'b') {
+                bytes = Base64.getDecoder().decode(data.substring(1, data.length() - 1));
+            } else {
+                bytes = JsEncoder.unquote(data).getBytes(StandardCharsets.UTF_8);
+            }
+        } catch (RuntimeException e) {
+            webview.respond(id, 1, JsEncoder.string(ERROR_MALFORMED));
+            return;
+        }
+
+        WebviewInputStream upload = uploads.get(uploadId);
+        if (upload == null) {
+            WebviewUploadHandler handler = handlers.get(name);
+            if (handler == null) {
+                webview.respond(id, 1, JsEncoder.string(ERROR_UNKNOWN_FUNCTION + name));
+                return;
+            }
+            upload = start(uploadId, handler);
+        }
+        upload.offer(id, bytes, last);
+    }
+
+    /**
+     * Starts the handler of a new upload.
+     */
+    private WebviewInputStream start(String uploadId, WebviewUploadHandler handler) {
+        WebviewInputStream upload = new WebviewInputStream(this, uploadId, WINDOW);
+        uploads.put(uploadId, upload);
+        try {
+            EXECUTOR.execute(() -> {
+                String response;
+                int status;
+                try {
+                    response = handler.handle(upload);
+                    status = 0;
+                } catch (Throwable e) {
+                    try {
+                        response = handler.errorToJson(e);
+                    } catch (RuntimeException ex) {
+                        log.log(Level.WARNING, WARN_ERROR_TO_JSON, ex);
+                        response = JsEncoder.string(String.valueOf(e));
+                    }
+                    status = 1;
+                }
+                upload.finish(status, status == 0 ? "{\"value\":" + (response == null ? "null" : response) + "}" : response);
+            });
+        } catch (RejectedExecutionException e) {
+            upload.finish(1, JsEncoder.string(String.valueOf(e)));
+        }
+        return upload;
+    }
+
+    /**
+     * Runs upload handlers off the webview thread.
+     */
+    private static final Executor EXECUTOR = JvmHelper.newVirtualThreadExecutor("webview-upload");
+
+    /**
+     * Number of chunks held in memory per upload.
+     */
+    private static final int WINDOW = 4;
+
+    private static final String CHUNK_BINDING = "__webview_upload_chunk__";
+
+    /**
+     * Splits uploads into chunks on the page.
+     * <p>
+     * Strings are split on UTF-16 code unit boundaries, never within a surrogate pair. Binary data
+     * ({@code Blob}, {@code ArrayBuffer} or typed arrays) is sent as Base64. Anything else is uploaded as JSON.
+     * Chunk calls are answered with {@code null} to ask for the next chunk, or with {@code {value}}
+     * once the handler returned.
+     */
+    private static final String SCRIPT = String.join("\n",
+        "(function() {",
+        "  'use strict';",
+        "  if (window.__webview_upload__) return;",
+        "  function hex(n) {",
+        "    var bytes = new Uint8Array(n);",
+        "    crypto.getRandomValues(bytes);",
+        "    return Array.prototype.map.call(bytes, function(b) { return (b < 16 ? '0' : '') + b.toString(16); }).join('');",
+        "  }",
+        "  var page = hex(8), seq = 0;",
+        "  function base64(bytes) {",
+        "    var bin = '';",
+        "    for (var i = 0; i < bytes.length; i += 0x8000) bin += String.fromCharCode.apply(null, bytes.subarray(i, i + 0x8000));",
+        "    return btoa(bin);",
+        "  }",
+        "  function send(name, data, options) {",
+        "    var chunkSize = Math.max((options && options.chunkSize) || 65536, 2);",
+        "    var id = page + ':' + (++seq).toString(16);",
+        "    var blob = typeof Blob !== 'undefined' && data instanceof Blob;",
+        "    var binary = blob || data instanceof ArrayBuffer || ArrayBuffer.isView(data);",
+        "    if (!binary && typeof data !== 'string') data = JSON.stringify(data === undefined ? null : data);",
+        "    if (binary && !blob) data = data instanceof ArrayBuffer ? new Uint8Array(data) : new Uint8Array(data.buffer, data.byteOffset, data.byteLength);",
+        "    var total = blob ? data.size : data.length, offset = 0;",
+        "    function slice(start, end) {",
+        "      if (!binary) return Promise.resolve(data.substring(start, end));",
+        "      if (!blob) return Promise.resolve(base64(data.subarray(start, end)));",
+        "      return data.slice(start, end).arrayBuffer().then(function(b) { return base64(new Uint8Array(b)); });",
+        "    }",
+        "    function step() {",
+        "      var end = Math.min(offset + chunkSize, total);",
+        "      if (!binary && end < total) { var c = data.charCodeAt(end - 1); if (c >= 0xD800 && c <= 0xDBFF) end--; }",
+        "      return slice(offset, end).then(function(piece) {",
+        "        offset = end;",
+        "        return window." + CHUNK_BINDING + "(name, id, binary ? 'b' : 's', piece, end >= total);",
+        "      }).then(function(r) { return r !== null ? r.value : step(); });",
+        "    }",
+        "    return step();",
+        "  }",
+        "  window.__webview_upload__ = {",
+        "    send: send,",
+        "    bind: function(name) { window[name] = function(data, options) { return send(name, data, options); }; }",
+        "  };",
+        "})();"
+    );
+
+    private static final String ERROR_INVALID_NAME = "Upload function names can't contain quotes nor backslashes: ";
+
+    private static final String ERROR_MALFORMED = "Malformed upload chunk.";
+
+    private static final String ERROR_UNKNOWN_FUNCTION = "No upload function bound by the name: ";
+
+    private static final String WARN_ERROR_TO_JSON = "Failed to convert an upload error to JSON.";
+}
@@ -4,6 +4,9 @@ import com.sun.jna.Native;
 import com.sun.jna.Pointer;
 import lombok.Getter;
 import lombok.extern.java.Log;
+import net.notjustanna.webview.assets.WebviewAssetServer;
+import net.notjustanna.webview.metrics.BindingMetrics;
+import net.notjustanna.webview.metrics.WebviewMetrics;
 import net.notjustanna.webview.natives.JvmHelper;
 import net.notjustanna.webview.natives.MacHelper;
 import net.notjustanna.webview.natives.PlatformSpecific;
@@ -11,16 +14,26 @@ import net.notjustanna.webview.natives.WebviewNative;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.awt.*;
 import java.io.Closeable;
+import java.lang.management.ManagementFactory;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.logging.Level;
 
 /**
  * Core webview instance, responsible for properly interfacing with native libraries.
@@ -93,6 +106,56 @@ public class WebviewCore implements Closeable, Runnable {
      */
     private final WeakReference<Thread> threadRef;
 
+    /**
+     * Metrics of the bindings and dispatcher of this webview.
+     * <p>
+     * Also registered as a JMX MXBean, unless the {@code webview.disable-jmx} system property is {@code true}.
+     */
+    @Getter
+    private final WebviewMetrics metrics;
+
+    /**
+     * The JMX name the metrics are registered under, or {@code null} if not registered.
+     */
+    private final ObjectName metricsName;
+
+    /**
+     * Listeners notified before the webview navigates away from the current page.
+     */
+    private final List<Runnable> navigationListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Number of navigations started through {@link #setHtml(String)} or {@link #navigate(String)}, which
+     * identifies the current page. Only accessed from the webview thread.
+     */
+    private long navigationCount;
+
+    /**
+     * Reply channel of {@link #evaluateAsync(String)}.
+     */
+    private final EvalChannel evalChannel = new EvalChannel(this);
+
+    /**
+     * Sequence used to identify functions installed by {@link #defineFunction(String)}.
+     */
+    private final AtomicInteger nextFunctionId = new AtomicInteger();
+
+    /**
+     * Transport of streams opened by {@link #openStream()}.
+     */
+    private final StreamChannel streamChannel = new StreamChannel(this);
+
+    /**
+     * Transport of uploads to functions bound by {@link #bindUpload(String, WebviewUploadHandler)}.
+     */
+    private final UploadChannel uploadChannel = new UploadChannel(this);
+
+    /**
+     * Whether the webview event loop is currently running.
+     * Only accessed from the webview thread.
+     */
+    private boolean running;
+
     /**
      * Creates a new webview instance.
      *
@@ -108,6 +171,15 @@ public class WebviewCore implements Closeable, Runnable {
         threadRef = new WeakReference<>(Thread.currentThread());
         bindRefs = new ConcurrentHashMap<>();
         dispatcher = new WebviewDispatcher($webview_t, threadRef);
+        metrics = new WebviewMetrics(dispatcher);
+        metricsName = WebviewCore.registerMetrics(metrics);
+        navigationListeners.add(() -> evalChannel.failBefore(navigationCount, new CancellationException(ERROR_EVAL_NAVIGATED)));
+        navigationListeners.add(() -> streamChannel.failBefore(navigationCount, ERROR_STREAM_NAVIGATED));
+        navigationListeners.add(() -> uploadChannel.failAll(ERROR_UPLOAD_NAVIGATED));
+        Long watchdogThreshold = Long.getLong("webview.watchdog.threshold");
+        if (watchdogThreshold != null) {
+            dispatcher.startWatchdog(Duration.ofMillis(watchdogThreshold));
+        }
         WebviewCore.warnIfNotMainThread();
     }
 
@@ -116,33 +188,87 @@ public class WebviewCore implements Closeable, Runnable {
      *
      * @param html HTML content.
      * @return Itself for chaining.
+     * @implNote If another {@code setHtml} or {@link #navigate(String)} is still pending, it is dropped,
+     * since this call replaces the page anyway.
      */
     public WebviewCore setHtml(@Nullable String html) {
-        dispatcher.execNative(() -> WebviewNative.INSTANCE.webview_set_html($webview_t, html));
+        dispatcher.execCoalesced(COALESCE_PAGE, "webview_set_html", () -> {
+            fireNavigation();
+            return dispatcher.stringEncoder.apply(html, h -> WebviewNative.INSTANCE.webview_set_html($webview_t, h));
+        });
         return this;
     }
 
+    /**
+     * Load HTML content, already encoded, into the webview.
+     * <p>
+     * Use {@link NativeStringEncoder#encodeOnce(CharSequence)} to encode content set many times only once.
+     *
+     * @param html HTML content, as a NUL-terminated UTF-8 string in native memory.
+     * @return Itself for chaining.
+     * @implNote The content is read on the webview thread, later on. It must not be changed until then.
+     * @see #setHtml(String)
+     */
+    public WebviewCore setHtmlUtf8(@NotNull Pointer html) {
+        dispatcher.execCoalesced(COALESCE_PAGE, "webview_set_html", () -> {
+            fireNavigation();
+            return WebviewNative.INSTANCE.webview_set_html($webview_t, html);
+        });
+        return this;
+    }
+
+    /**
+     * Load HTML content, already encoded, into the webview.
+     *
+     * @param html HTML content, as a NUL-terminated UTF-8 string between the position and the limit of a
+     *             direct buffer.
+     * @return Itself for chaining.
+     * @implNote The content is read on the webview thread, later on. It must not be changed until then.
+     * @see #setHtml(String)
+     */
+    public WebviewCore setHtmlUtf8(@NotNull ByteBuffer html) {
+        return setHtmlUtf8(nativeString(html));
+    }
+
     /**
      * Navigates webview to the given URL. URL may be a properly encoded data URI.
      *
      * @param url URL to navigate to. If null, navigates to about:blank.
      * @return Itself for chaining.
+     * @implNote If another {@code navigate} or {@link #setHtml(String)} is still pending, it is dropped,
+     * since this call replaces the page anyway.
      */
     public WebviewCore navigate(@Nullable String url) {
         String param = url == null ? "about:blank" : url;
-        dispatcher.execNative(() -> WebviewNative.INSTANCE.webview_navigate($webview_t, param));
+        dispatcher.execCoalesced(COALESCE_PAGE, "webview_navigate", () -> {
+            fireNavigation();
+            return WebviewNative.INSTANCE.webview_navigate($webview_t, param);
+        });
         return this;
     }
 
+    /**
+     * Navigates webview to an asset of a local asset server.
+     *
+     * @param server The asset server, which must be started.
+     * @param path   The path of the asset, relative to the roots of the server, such as {@code index.html}.
+     * @return Itself for chaining.
+     * @see WebviewAssetServer
+     */
+    public WebviewCore navigate(@NotNull WebviewAssetServer server, @NotNull String path) {
+        return navigate(server.url(path));
+    }
+
     /**
      * Sets the title of the webview window.
      *
      * @param title Title to set.
      * @return Itself for chaining.
      * @implNote Safe to do on standalone webviews. Undefined behavior on component-attached webviews.
+     * If another {@code setTitle} is still pending, it is dropped.
      */
     public WebviewCore setTitle(@NotNull String title) {
-        dispatcher.execNative(() -> WebviewNative.INSTANCE.webview_set_title($webview_t, title));
+        dispatcher.execCoalesced(COALESCE_TITLE, "webview_set_title", () -> WebviewNative.INSTANCE.webview_set_title($webview_t, title));
         return this;
     }
 
@@ -152,10 +278,10 @@ public class WebviewCore implements Closeable, Runnable {
      * @param width  Width of the window.
      * @param height Height of the window.
      * @return Itself for chaining.
+     * @implNote If another {@code setMinSize} is still pending, it is dropped.
      */
     public WebviewCore setMinSize(int width, int height) {
-        dispatcher.execNative(() -> WebviewNative.INSTANCE.webview_set_size($webview_t, width, height, WebviewNative.HINT_MIN));
-        return this;
+        return setSizeWithHint(width, height, WebviewNative.HINT_MIN);
     }
 
     /**
@@ -164,10 +290,10 @@ public class WebviewCore implements Closeable, Runnable {
      * @param width  Width of the window.
      * @param height Height of the window.
      * @return Itself for chaining.
+     * @implNote If another {@code setMaxSize} is still pending, it is dropped.
      */
     public WebviewCore setMaxSize(int width, int height) {
-        dispatcher.execNative(() -> WebviewNative.INSTANCE.webview_set_size($webview_t, width, height, WebviewNative.HINT_MAX));
-        return this;
+        return setSizeWithHint(width, height, WebviewNative.HINT_MAX);
     }
 
     /**
@@ -176,10 +302,10 @@ public class WebviewCore implements Closeable, Runnable {
      * @param width  Width of the window.
      * @param height Height of the window.
      * @return Itself for chaining.
+     * @implNote If another {@code setSize} is still pending, it is dropped.
      */
     public WebviewCore setSize(int width, int height) {
-        dispatcher.execNative(() -> WebviewNative.INSTANCE.webview_set_size($webview_t, width, height, WebviewNative.HINT_NONE));
-        return this;
+        return setSizeWithHint(width, height, WebviewNative.HINT_NONE);
     }
 
     /**
@@ -188,9 +314,22 @@ public class WebviewCore implements Closeable, Runnable {
      * @param width  Width of the window.
      * @param height Height of the window.
      * @return Itself for chaining.
+     * @implNote If another {@code setFixedSize} is still pending, it is dropped.
      */
     public WebviewCore setFixedSize(int width, int height) {
-        dispatcher.execNative(() -> WebviewNative.INSTANCE.webview_set_size($webview_t, width, height, WebviewNative.HINT_FIXED));
+        return setSizeWithHint(width, height, WebviewNative.HINT_FIXED);
+    }
+
+    /**
+     * Updates the size of the webview window, coalescing pending updates with the same hint.
+     *
+     * @param width  Width of the window.
+     * @param height Height of the window.
+     * @param hint   One of the {@code WebviewNative.HINT_*} constants.
+     * @return Itself for chaining.
+     */
+    private WebviewCore setSizeWithHint(int width, int height, int hint) {
+        dispatcher.execCoalesced(COALESCE_SIZE[hint], "webview_set_size", () -> WebviewNative.INSTANCE.webview_set_size($webview_t, width, height, hint));
         return this;
     }
 
@@ -201,10 +340,36 @@ public class WebviewCore implements Closeable, Runnable {
      * @return Itself for chaining.
      */
     public WebviewCore setInitScript(@NotNull String script) {
-        dispatcher.execNative(() -> WebviewNative.INSTANCE.webview_init($webview_t, script));
+        dispatcher.execNative("webview_init", () -> dispatcher.stringEncoder.apply(script, js -> WebviewNative.INSTANCE.webview_init($webview_t, js)));
         return this;
     }
 
+    /**
+     * Sets the initial script, already encoded, to be executed when the webview is created.
+     *
+     * @param script The script, as a NUL-terminated UTF-8 string in native memory.
+     * @return Itself for chaining.
+     * @implNote The script is read on the webview thread, later on. It must not be changed until then.
+     * @see #setInitScript(String)
+     */
+    public WebviewCore setInitScriptUtf8(@NotNull Pointer script) {
+        dispatcher.execNative("webview_init", () -> WebviewNative.INSTANCE.webview_init($webview_t, script));
+        return this;
+    }
+
+    /**
+     * Sets the initial script, already encoded, to be executed when the webview is created.
+     *
+     * @param script The script, as a NUL-terminated UTF-8 string between the position and the limit of a
+     *               direct buffer.
+     * @return Itself for chaining.
+     * @implNote The script is read on the webview thread, later on. It must not be changed until then.
+     * @see #setInitScript(String)
+     */
+    public WebviewCore setInitScriptUtf8(@NotNull ByteBuffer script) {
+        return setInitScriptUtf8(nativeString(script));
+    }
+
     /**
      * Evaluates a JavaScript script in the webview.
      *
@@ -214,7 +379,225 @@ public class WebviewCore implements Closeable, Runnable {
      * Also, this means that the script is executed asynchronously.
      */
     public WebviewCore evaluate(@NotNull String script) {
-        dispatcher.execNative(() -> WebviewNative.INSTANCE.webview_eval($webview_t, script));
+        return evaluate(script, DispatchPriority.NORMAL);
+    }
+
+    /**
+     * Evaluates a JavaScript script in the webview, on the given dispatcher priority lane.
+     * <p>
+     * Use {@link DispatchPriority#BACKGROUND} for bulk updates which shouldn't delay
+     * input-critical work, and {@link DispatchPriority#INTERACTIVE} for the opposite.
+     *
+     * @param script   The script to be evaluated.
+     * @param priority The lane to dispatch the evaluation on.
+     * @return Itself for chaining.
+     * @implNote The script is dispatched to the webview thread, so it is safe to call this from any thread.
+     * Also, this means that the script is executed asynchronously. If {@link WebviewDispatcher#setEvalBatching(boolean)
+     * eval batching} is enabled, it may be merged with other scripts evaluated during the same turn.
+     */
+    public WebviewCore evaluate(@NotNull String script, @NotNull DispatchPriority priority) {
+        dispatcher.execEval(priority, script);
+        return this;
+    }
+
+    /**
+     * Evaluates a JavaScript script, already encoded, in the webview.
+     * <p>
+     * Use {@link NativeStringEncoder#encodeOnce(CharSequence)} to encode a script evaluated many times only once.
+     *
+     * @param script The script, as a NUL-terminated UTF-8 string in native memory.
+     * @return Itself for chaining.
+     * @implNote The script is read on the webview thread, later on. It must not be changed until then.
+     * It is never merged by {@link WebviewDispatcher#setEvalBatching(boolean) eval batching}, but still runs
+     * after the scripts evaluated before it.
+     */
+    public WebviewCore evaluateUtf8(@NotNull Pointer script) {
+        return evaluateUtf8(script, DispatchPriority.NORMAL);
+    }
+
+    /**
+     * Evaluates a JavaScript script, already encoded, in the webview, on the given dispatcher priority lane.
+     *
+     * @param script   The script, as a NUL-terminated UTF-8 string in native memory.
+     * @param priority The lane to dispatch the evaluation on.
+     * @return Itself for chaining.
+     * @implNote The script is read on the webview thread, later on. It must not be changed until then.
+     * @see #evaluateUtf8(Pointer)
+     */
+    public WebviewCore evaluateUtf8(@NotNull Pointer script, @NotNull DispatchPriority priority) {
+        dispatcher.execNative(priority, "webview_eval", () -> WebviewNative.INSTANCE.webview_eval($webview_t, script));
+        return this;
+    }
+
+    /**
+     * Evaluates a JavaScript script, already encoded, in the webview.
+     *
+     * @param script The script, as a NUL-terminated UTF-8 string between the position and the limit of a
+     *               direct buffer.
+     * @return Itself for chaining.
+     * @implNote The script is read on the webview thread, later on. It must not be changed until then.
+     * @see #evaluateUtf8(Pointer)
+     */
+    public WebviewCore evaluateUtf8(@NotNull ByteBuffer script) {
+        return evaluateUtf8(nativeString(script), DispatchPriority.NORMAL);
+    }
+
+    /**
+     * Points to the NUL-terminated string between the position and the limit of a direct buffer.
+     * <p>
+     * The returned pointer keeps the buffer, and thus its memory, reachable.
+     */
+    private static Pointer nativeString(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException(ERROR_NOT_DIRECT);
+        }
+        if (!buffer.hasRemaining() || buffer.get(buffer.limit() - 1) != 0) {
+            throw new IllegalArgumentException(ERROR_NOT_NUL_TERMINATED);
+        }
+        return new BufferPointer(buffer);
+    }
+
+    /**
+     * A pointer into a direct buffer, holding onto the buffer so it isn't freed while the pointer is in use.
+     */
+    private static final class BufferPointer extends Pointer {
+        @SuppressWarnings({"unused", "FieldCanBeLocal"})
+        private final ByteBuffer buffer;
+
+        BufferPointer(ByteBuffer buffer) {
+            super(Pointer.nativeValue(Native.getDirectBufferPointer(buffer)) + buffer.position());
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * Evaluates a JavaScript script in the webview, and returns its result.
+     * <p>
+     * The result is the completion value of the script, like the one shown by developer tools consoles.
+     * If it is a promise, the value it resolves to is returned instead.
+     * <p>
+     * Waits for the result for as long as the {@code webview.eval.timeout} system property says, in
+     * milliseconds, or 30 seconds if not set.
+     *
+     * @param script The script to be evaluated.
+     * @return A future of the result, as JSON. {@code undefined} is returned as {@code null}.
+     * @see #evaluateAsync(String, DispatchPriority, Duration)
+     */
+    public CompletableFuture<String> evaluateAsync(@NotNull String script) {
+        return evaluateAsync(script, DispatchPriority.NORMAL, EVAL_TIMEOUT);
+    }
+
+    /**
+     * Evaluates a JavaScript script in the webview, on the given dispatcher priority lane, and returns its result.
+     * <p>
+     * The result is the completion value of the script, like the one shown by developer tools consoles.
+     * If it is a promise, the value it resolves to is returned instead.
+     * <p>
+     * The returned future fails with:
+     * <ul>
+     *     <li>a {@link WebviewScriptException}, if the script throws or its promise rejects;</li>
+     *     <li>a {@link java.util.concurrent.TimeoutException}, if no result arrives within the timeout;</li>
+     *     <li>a {@link CancellationException}, if the webview navigates away before the result arrives;</li>
+     *     <li>an {@link IllegalStateException}, if the webview is destroyed before the result arrives.</li>
+     * </ul>
+     *
+     * @param script   The script to be evaluated.
+     * @param priority The lane to dispatch the evaluation on.
+     * @param timeout  How long to wait for the result.
+     * @return A future of the result, as JSON. {@code undefined} is returned as {@code null}.
+     * @implNote All evaluations share a single internal binding, {@code __webview_reply__}, installed on first use.
+     * Results which can't be serialized to JSON, such as DOM nodes or cyclic objects, fail the future.
+     */
+    public CompletableFuture<String> evaluateAsync(@NotNull String script, @NotNull DispatchPriority priority, @NotNull Duration timeout) {
+        return evalChannel.evaluate(script, priority, timeout);
+    }
+
+    /**
+     * Installs a JavaScript function, and returns a handle to call it with parameters.
+     * <p>
+     * The function is installed on the current page and, through {@link #setInitScript(String)}, on every
+     * page loaded afterwards. Calling it through the handle only sends a short invocation with the encoded
+     * arguments, so the function source isn't sent, parsed and compiled again on every call, and arguments
+     * don't need to be escaped by hand.
+     * <pre>{@code
+     * WebviewFunction setStatus = webview.defineFunction("(id, text) => document.getElementById(id).textContent = text");
+     * setStatus.call("status", "Connected");
+     * }</pre>
+     *
+     * @param source A JavaScript function expression.
+     * @return The handle of the function.
+     * @implNote There's no way to remove init scripts, so installed functions live as long as the webview.
+     */
+    public WebviewFunction defineFunction(@NotNull String source) {
+        int id = nextFunctionId.incrementAndGet();
+        String script = WebviewFunction.definition(id, source);
+        setInitScript(script);
+        evaluate(script);
+        return new WebviewFunction(this, id);
+    }
+
+    /**
+     * Opens a stream of bytes to the page, sent in chunks of 64 KiB with up to 4 chunks in flight.
+     *
+     * @return The stream. Its {@link WebviewOutputStream#getId() id} must be passed to the page, which reads it
+     * through {@code window.__webview_stream__}.
+     * @see #openStream(int, int)
+     */
+    public WebviewOutputStream openStream() {
+        return openStream(DEFAULT_STREAM_CHUNK_SIZE, DEFAULT_STREAM_WINDOW);
+    }
+
+    /**
+     * Opens a stream of bytes to the page, for payloads too large to send in a single script.
+     * <p>
+     * Peak memory use is bounded by {@code chunkSize * window}, as writes block while the page
+     * holds {@code window} chunks its reader hasn't consumed yet.
+     * <pre>{@code
+     * try (WebviewOutputStream out = webview.openStream()) {
+     *     webview.evaluate("__webview_stream__.json(" + out.getId() + ").then(render)");
+     *     mapper.writeValue(out, document);
+     * }
+     * }</pre>
+     *
+     * @param chunkSize The maximum size of each chunk, in bytes.
+     * @param window    The maximum number of chunks sent but not yet consumed by the page.
+     * @return The stream. Its {@link WebviewOutputStream#getId() id} must be passed to the page, which reads it
+     * through {@code window.__webview_stream__}.
+     * @implNote Write from a thread other than the webview thread: the webview thread can't wait for the page,
+     * so writes from it fail once the window is full.
+     */
+    public WebviewOutputStream openStream(int chunkSize, int window) {
+        if (chunkSize <= 0 || window <= 0) {
+            throw new IllegalArgumentException("Chunk size and window must be positive");
+        }
+        return streamChannel.open(chunkSize, window);
+    }
+
+    /**
+     * Binds a global JavaScript function which uploads its argument to Java in chunks.
+     * <p>
+     * Meant for payloads too large for a regular binding, which receives all of its arguments as a
+     * single string on the webview thread. Instead, the page sends the upload in chunks, and the handler
+     * reads them as a stream on its own thread while they arrive. At most a few chunks are held in memory
+     * at once, as the page waits for room before sending more.
+     * <pre>{@code
+     * webview.bindUpload("importRows", in -> {
+     *     long rows = countRows(in);
+     *     return Long.toString(rows);
+     * });
+     * // In the page: const rows = await importRows(hugeArray, {chunkSize: 1 << 20});
+     * }</pre>
+     * The JavaScript function takes the value to upload, and an optional options object whose {@code chunkSize}
+     * is in UTF-16 code units for strings and JSON, and in bytes for binary data. Strings and JSON values are
+     * uploaded as UTF-8. {@code Blob}, {@code ArrayBuffer} and typed arrays are uploaded as is.
+     *
+     * @param name    Name of the JS function.
+     * @param handler Handler of the uploads, called once per call of the JS function.
+     * @return Itself for chaining.
+     * @implNote The function isn't removed by {@link #unbind(String)}.
+     */
+    public WebviewCore bindUpload(@NotNull String name, @NotNull WebviewUploadHandler handler) {
+        uploadChannel.register(name, handler);
         return this;
     }
 
@@ -232,16 +615,107 @@ public class WebviewCore implements Closeable, Runnable {
      */
     public WebviewCore bind(@NotNull String name, @NotNull WebviewNative.BindCallback callback) {
         dispatcher.wrapExec(() -> {
-            int result = WebviewNative.INSTANCE.webview_bind($webview_t, name, callback, null);
+            WebviewNative.BindCallback traced = new BoundCallback(name, dispatcher, metrics.binding(name), callback);
+            int result = NativeCallEvent.record("webview_bind", () -> WebviewNative.INSTANCE.webview_bind($webview_t, name, traced, null));
             if (result == WebviewNative.ERROR_DUPLICATE) {
                 throw new IllegalArgumentException("A binding already exists with the name: " + name);
             } else if (result != WebviewNative.ERROR_OK) {
                 WebviewCore.handleError(result);
             }
-            bindRefs.put(name, callback);
+            bindRefs.put(name, traced);
         });
         return this;
     }
+
+    /**
+     * Binds a native function to a new global JavaScript function, which receives the request as is.
+     * <p>
+     * Unlike {@link #bind(String, WebviewNative.BindCallback)}, the identifier and the request aren't
+     * decoded to strings, so the callback can parse the request straight from its UTF-8 bytes, such as
+     * by reading them with {@link Pointer#read(long, byte[], int, int)}.
+     *
+     * @param name     Name of the JS function.
+     * @param callback Callback function. Both pointers are only valid until it returns.
+     * @return Itself for chaining.
+     */
+    public WebviewCore bindRaw(@NotNull String name, @NotNull WebviewNative.RawBindCallback callback) {
+        dispatcher.wrapExec(() -> {
+            WebviewNative.RawBindCallback traced = new BoundCallback.Raw(name, dispatcher, metrics.binding(name), callback);
+            int result = NativeCallEvent.record("webview_bind", () -> WebviewNative.INSTANCE.webview_bind_raw($webview_t, name, traced, null));
+            if (result == WebviewNative.ERROR_DUPLICATE) {
+                throw new IllegalArgumentException("A binding already exists with the name: " + name);
+            } else if (result != WebviewNative.ERROR_OK) {
+                WebviewCore.handleError(result);
+            }
+            bindRefs.put(name, traced);
+        });
+        return this;
+    }
+
+    /**
+     * Returns a result to a pending call of a bound function.
+     * <p>
+     * Prefer this over calling {@code webview_return} directly, so the response is accounted for
+     * in the {@link #getMetrics() metrics} of the binding.
+     *
+     * <p>
+     * May be called from any thread, so bindings can respond once asynchronous work completes.
+     * Responses from other threads are dispatched on the {@link DispatchPriority#INTERACTIVE} lane.
+     *
+     * @param id     The identifier of the call, as given to the binding callback.
+     * @param status {@code 0} to resolve the JavaScript promise, anything else to reject it.
+     * @param result The JSON result or error. If null, {@code null} is returned.
+     */
+    public void respond(@NotNull String id, int status, @Nullable String result) {
+        String json = result == null ? "null" : result;
+        BindingMetrics binding = BoundCallback.current();
+        if (binding != null) {
+            binding.recordResponse(json, status != 0);
+        }
+        if (threadRef.refersTo(Thread.currentThread())) {
+            WebviewCore.handleError(NativeCallEvent.record("webview_return", () -> WebviewNative.INSTANCE.webview_return($webview_t, id, status, json)));
+        } else {
+            dispatcher.execNativeInternal(DispatchPriority.INTERACTIVE, "webview_return", () -> WebviewNative.INSTANCE.webview_return($webview_t, id, status, json));
+        }
+    }
+
+    /**
+     * Adds a listener notified whenever the webview is about to leave the current page,
+     * through {@link #setHtml(String)} or {@link #navigate(String)}.
+     * <p>
+     * Useful to release per-page state, such as pending calls from the page being replaced.
+     *
+     * @param listener The listener to add. Runs on the webview thread, right before the page is replaced.
+     * @implNote Navigations started by the page itself, such as following links, are not reported.
+     */
+    public void addNavigationListener(@NotNull Runnable listener) {
+        navigationListeners.add(listener);
+    }
+
+    /**
+     * Returns the number of navigations started so far, which identifies the current page.
+     * Must be called on the webview thread.
+     *
+     * @return The navigation count.
+     */
+    long getNavigationCount() {
+        return navigationCount;
+    }
+
+    /**
+     * Moves on to the next page, then notifies the navigation listeners. Must be called on the webview thread.
+     */
+    private void fireNavigation() {
+        navigationCount++;
+        for (Runnable listener : navigationListeners) {
+            try {
+                listener.run();
+            } catch (Throwable e) {
+                dispatcher.reportError(e);
+            }
+        }
+    }
+
     /**
      * Retrieves a list of all currently bound JavaScript function names.
      * <p>
@@ -266,7 +740,7 @@ public class WebviewCore implements Closeable, Runnable {
      */
     public WebviewCore unbind(@NotNull String name) {
         dispatcher.wrapExec(() -> {
-            int result = WebviewNative.INSTANCE.webview_unbind($webview_t, name);
+            int result = NativeCallEvent.record("webview_unbind", () -> WebviewNative.INSTANCE.webview_unbind($webview_t, name));
             if (result == WebviewNative.ERROR_NOT_FOUND) {
                 throw new NoSuchElementException("No binding found with the name: " + name);
             } else if (result != WebviewNative.ERROR_OK) {
@@ -291,6 +765,9 @@ public class WebviewCore implements Closeable, Runnable {
 
     /**
      * Executes the webview event loop until the webview is closed.
+     * <p>
+     * Once the event loop ends, the webview is destroyed: the dispatcher terminates,
+     * and every task which didn't get to run is dropped.
      *
      * @see #close()
      */
@@ -299,24 +776,49 @@ public class WebviewCore implements Closeable, Runnable {
         if (!threadRef.refersTo(Thread.currentThread())) {
             throw new UnsupportedOperationException(ERROR_DIFFERENT_THREAD_RUN);
         }
-        WebviewCore.handleError(WebviewNative.INSTANCE.webview_run($webview_t));
-        WebviewCore.handleError(WebviewNative.INSTANCE.webview_destroy($webview_t));
+        if (dispatcher.isTerminated()) {
+            throw new IllegalStateException(ERROR_ALREADY_DESTROYED);
+        }
+        running = true;
+        try {
+            WebviewCore.handleError(NativeCallEvent.record("webview_run", () -> WebviewNative.INSTANCE.webview_run($webview_t)));
+        } finally {
+            running = false;
+            destroy();
+        }
     }
 
     /**
      * Terminates the webview instance asynchronously.
      * <p>
-     * This method dispatches a task to the webview thread to terminate the webview,
-     * clear all bindings, and release resources. It returns a `CompletableFuture`
-     * that completes when the termination process is finished.
+     * This method shuts the dispatcher down, so no new tasks are accepted, and asks the
+     * webview event loop to stop once the tasks submitted before have run. Once it does,
+     * {@link #run()} destroys the webview.
+     * <p>
+     * If called from the webview thread while the event loop isn't running, the webview is destroyed right away.
      *
-     * @return A `CompletableFuture` that completes when the webview is terminated.
+     * @return A `CompletableFuture` that completes when the webview is destroyed,
+     * or right away if called from the webview thread.
      */
     public CompletableFuture<Void> terminate() {
-        return dispatcher.runAsync(() -> {
-            WebviewCore.handleError(WebviewNative.INSTANCE.webview_terminate($webview_t));
-            bindRefs.clear();
-        });
+        if (threadRef.refersTo(Thread.currentThread())) {
+            if (running) {
+                dispatcher.shutdown();
+                WebviewCore.handleError(NativeCallEvent.record("webview_terminate", () -> WebviewNative.INSTANCE.webview_terminate($webview_t)));
+            } else {
+                destroy();
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (!dispatcher.isTerminated()) {
+            Runnable command = () -> WebviewCore.handleError(NativeCallEvent.record("webview_terminate", () -> WebviewNative.INSTANCE.webview_terminate($webview_t)));
+            // Tasks submitted before still run; if already shut down, nothing can be queued behind the command.
+            if (!dispatcher.shutdown(command)) {
+                dispatcher.signal(command);
+            }
+        }
+        return dispatcher.onTermination();
     }
 
     /**
@@ -329,6 +831,23 @@ public class WebviewCore implements Closeable, Runnable {
         terminate().join();
     }
 
+    /**
+     * Destroys the native webview, if not destroyed already.
+     * <p>
+     * The dispatcher is terminated first, so no other thread touches the native webview past this point.
+     * Binding callbacks are only released after the native side let go of them.
+     */
+    private void destroy() {
+        if (dispatcher.terminate()) {
+            WebviewCore.handleError(NativeCallEvent.record("webview_destroy", () -> WebviewNative.INSTANCE.webview_destroy($webview_t)));
+            bindRefs.clear();
+            evalChannel.failAll(new IllegalStateException(ERROR_ALREADY_DESTROYED));
+            streamChannel.failAll(ERROR_ALREADY_DESTROYED);
+            uploadChannel.failAll(ERROR_ALREADY_DESTROYED);
+            WebviewCore.unregisterMetrics(metricsName);
+        }
+    }
+
     /**
      * @deprecated <a href="https://github.com/NotJustAnna/webview_java/issues/1">Does not work</a>.
      * Use {@link #run()} instead.
@@ -390,6 +909,43 @@ public class WebviewCore implements Closeable, Runnable {
         }
     }
 
+    /**
+     * Registers the metrics of a webview as a JMX MXBean, unless disabled by the
+     * {@code webview.disable-jmx} system property.
+     *
+     * @param metrics The metrics to register.
+     * @return The name they were registered under, or {@code null} if not registered.
+     */
+    private static ObjectName registerMetrics(WebviewMetrics metrics) {
+        if (Boolean.getBoolean("webview.disable-jmx")) {
+            return null;
+        }
+        try {
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":type=Webview,id=" + NEXT_ID.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            return name;
+        } catch (JMException | SecurityException e) {
+            log.log(Level.WARNING, WARN_JMX_REGISTRATION, e);
+            return null;
+        }
+    }
+
+    /**
+     * Unregisters metrics registered by {@link #registerMetrics(WebviewMetrics)}.
+     *
+     * @param name The name the metrics were registered under, may be null.
+     */
+    private static void unregisterMetrics(ObjectName name) {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException | SecurityException e) {
+            log.log(Level.WARNING, WARN_JMX_REGISTRATION, e);
+        }
+    }
+
     /**
      * Default error handler for the webview.
      * @param result The result code from the webview.
@@ -427,6 +983,47 @@ public class WebviewCore implements Closeable, Runnable {
         throw new RuntimeException(errorMessage);
     }
 
+    /**
+     * Coalescing key for operations which replace the whole page.
+     */
+    private static final Object COALESCE_PAGE = new Object();
+
+    /**
+     * Coalescing key for title updates.
+     */
+    private static final Object COALESCE_TITLE = new Object();
+
+    /**
+     * Coalescing keys for size updates, indexed by size hint.
+     */
+    private static final Object[] COALESCE_SIZE = {new Object(), new Object(), new Object(), new Object()};
+
+    private static final String JMX_DOMAIN = "net.notjustanna.webview";
+
+    /**
+     * Sequence used to name the JMX MXBean of each webview.
+     */
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private static final int DEFAULT_STREAM_CHUNK_SIZE = 64 * 1024;
+
+    private static final int DEFAULT_STREAM_WINDOW = 4;
+
+    /**
+     * Default timeout of {@link #evaluateAsync(String)}.
+     */
+    private static final Duration EVAL_TIMEOUT = Duration.ofMillis(Long.getLong("webview.eval.timeout", 30_000));
+
+    private static final String ERROR_ALREADY_DESTROYED = "Webview was already destroyed.";
+    private static final String ERROR_NOT_DIRECT = "Pre-encoded strings must be in a direct buffer.";
+    private static final String ERROR_NOT_NUL_TERMINATED = "Pre-encoded strings must end with a NUL byte, right before the limit of the buffer.";
+
+    private static final String ERROR_EVAL_NAVIGATED = "The page navigated away before the script returned.";
+
+    private static final String ERROR_STREAM_NAVIGATED = "The page navigated away before the stream was closed.";
+
+    private static final String ERROR_UPLOAD_NAVIGATED = "The page navigated away before the upload completed.";
+
     private static final String ERROR_DIFFERENT_THREAD_RUN = "Webview has to be executed on the same thread it was created on. " +
         "This is a limitation of the underlying webview library.";
 
@@ -447,6 +1044,8 @@ public class WebviewCore implements Closeable, Runnable {
     private static final String ERROR_VIRTUAL_THREAD = "Webview cannot be created on a virtual thread. " +
         "This is a limitation of the underlying webview library. Since it blocks the thread indefinitely, it's also a misuse of virtual threads.";
 
+    private static final String WARN_JMX_REGISTRATION = "Failed to (un)register webview metrics with JMX.";
+
     private static final String WARN_NOT_MAIN_THREAD = "Webview was not created on the main thread. " +
         "Running on a non-main thread is not supported on some platfoms, such as macOS.";
 }
\ No newline at end of file
@@ -1,16 +1,38 @@
 package net.notjustanna.webview;
 
 import com.sun.jna.Pointer;
+import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.java.Log;
+import net.notjustanna.webview.metrics.Histogram;
 import net.notjustanna.webview.natives.WebviewNative;
 import org.jetbrains.annotations.NotNull;
 
+import java.lang.ref.Cleaner;
 import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 import java.util.function.IntSupplier;
 import java.util.function.Supplier;
@@ -19,15 +41,21 @@ import java.util.logging.Level;
 /**
  * A dispatcher for managing tasks on the webview thread.
  * <p>
- * This class implements the {@link Executor} interface and provides functionality
- * for dispatching tasks to the webview thread. It maintains a set of active
- * dispatch references and supports error handling through a customizable
- * {@link Consumer}.
+ * This class implements the {@link ExecutorService} interface and provides functionality
+ * for dispatching tasks to the webview thread. Depending on the configured
+ * {@link DispatchMode}, tasks are either batched into lock-free priority lanes
+ * drained by a single native callback under a per-turn time budget, or dispatched
+ * one by one. The batched lanes can be bounded, applying a {@link BackpressurePolicy}
+ * once full. It also supports error handling through a customizable {@link Consumer}.
+ * <p>
+ * The dispatcher is shut down by {@link WebviewCore#terminate()}, and terminates once the native
+ * webview is destroyed. At that point, every task which didn't get to run is dropped, and futures
+ * returned by {@link #runAsync(Runnable)} and {@link #supplyAsync(Supplier)} complete exceptionally.
  *
  * @author Anna Silva
  */
 @Log
-public class WebviewDispatcher implements Executor {
+public class WebviewDispatcher extends AbstractExecutorService {
     /**
      * A thread-safe set of active dispatch references.
      * <p>
@@ -36,6 +64,206 @@ public class WebviewDispatcher implements Executor {
      */
     private final Set<Object> dispatchRefs = ConcurrentHashMap.newKeySet();
 
+    /**
+     * Multi-producer queues of tasks waiting for the next drain on the webview thread,
+     * one per {@link DispatchPriority}, indexed by its ordinal.
+     * <p>
+     * Only used in {@link DispatchMode#BATCHED} mode.
+     */
+    private final Queue<Runnable>[] lanes = newLanes();
+
+    /**
+     * Internal commands queued by {@link #signal(Runnable)}, run ahead of the lanes on each drain.
+     * <p>
+     * Kept out of the lanes so they never count towards the capacity, and are never discarded by
+     * {@link BackpressurePolicy#DISCARD_OLDEST}: their owners wait for them to run before sending another.
+     */
+    private final Queue<Runnable> signals = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The command to run once every task queued before {@link #shutdown(Runnable)} has run, if any.
+     */
+    private final AtomicReference<Runnable> finalCommand = new AtomicReference<>();
+
+    /**
+     * Whether a drain of {@link #lanes} has already been dispatched to the webview thread.
+     * <p>
+     * Producers only issue a new {@code webview_dispatch} when flipping this from {@code false} to {@code true}.
+     */
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    /**
+     * The single, long-lived native callback which drains {@link #lanes}.
+     * <p>
+     * Kept as a field so JNA only ever allocates one native closure for it, and so it is never garbage collected.
+     */
+    private final WebviewNative.DispatchCallback drainCallback = this::drain;
+
+    /**
+     * The strategy used to hand tasks over to the webview thread.
+     * <p>
+     * Defaults to the value of the {@code webview.dispatcher.mode} system property,
+     * or {@link DispatchMode#BATCHED} if unset. Can be changed at any time; tasks
+     * already queued are still executed.
+     */
+    @Getter
+    @Setter
+    @NotNull
+    private volatile DispatchMode mode = DispatchMode.fromSystemProperty();
+
+    /**
+     * The maximum time, in nanoseconds, a single drain may keep the webview thread busy.
+     * <p>
+     * Once exceeded, the remaining tasks are left for the next turn, giving the native
+     * event loop a chance to paint and process input in between. A value of zero or
+     * less disables the budget.
+     */
+    private volatile long turnBudgetNanos = DEFAULT_TURN_BUDGET.toNanos();
+
+    /**
+     * The maximum number of tasks waiting in {@link #lanes} before the {@link #backpressurePolicy} kicks in.
+     * <p>
+     * Defaults to {@link Integer#MAX_VALUE}, meaning unbounded. Only enforced in {@link DispatchMode#BATCHED} mode.
+     */
+    @Getter
+    @Setter
+    private volatile int capacity = Integer.MAX_VALUE;
+
+    /**
+     * What to do with tasks submitted while the lanes are at {@link #capacity}.
+     */
+    @Getter
+    @Setter
+    @NotNull
+    private volatile BackpressurePolicy backpressurePolicy = BackpressurePolicy.BLOCK;
+
+    /**
+     * The number of tasks currently waiting in {@link #lanes}.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * The highest value {@link #pending} reached since the last {@link #resetPeakQueueDepth()}.
+     */
+    private final AtomicInteger peakPending = new AtomicInteger();
+
+    /**
+     * Number of tasks rejected by {@link BackpressurePolicy#BLOCK} (when interrupted) or {@link BackpressurePolicy#REJECT}.
+     */
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * Number of tasks dropped by {@link BackpressurePolicy#DISCARD_OLDEST}.
+     */
+    private final LongAdder discardedCount = new LongAdder();
+
+    /**
+     * Number of tasks queued over capacity by {@link BackpressurePolicy#CALLER_RUNS_LATER}.
+     */
+    private final LongAdder deferredCount = new LongAdder();
+
+    /**
+     * Monitor on which producers wait for room in the lanes, or for the end of a turn.
+     */
+    private final Object capacityLock = new Object();
+
+    /**
+     * Number of producers waiting on {@link #capacityLock}, so the webview thread only notifies when needed.
+     */
+    private final AtomicInteger capacityWaiters = new AtomicInteger();
+
+    /**
+     * Number of drains completed so far. Only written by the webview thread.
+     */
+    private volatile long turnCount;
+
+    /**
+     * The latest pending task for each coalescing key.
+     * <p>
+     * A newer task with the same key supersedes the one in this map, which is then dropped
+     * without ever reaching native code.
+     */
+    private final Map<Object, CoalescedTask> coalesced = new ConcurrentHashMap<>();
+
+    /**
+     * Whether keyed operations submitted through {@link #execCoalesced(Object, String, IntSupplier)} are coalesced.
+     * <p>
+     * Enabled by default. When disabled, every keyed operation is executed.
+     */
+    @Getter
+    @Setter
+    private volatile boolean coalescing = true;
+
+    /**
+     * Whether scripts submitted through {@link #execEval(DispatchPriority, String)} are merged into a single
+     * {@code webview_eval} per turn of the webview thread.
+     * <p>
+     * Defaults to the value of the {@code webview.eval.batching} system property, disabled if unset.
+     * Only effective in {@link DispatchMode#BATCHED} mode.
+     * <p>
+     * Merged scripts run through an indirect {@code eval}, which scopes their top-level {@code let},
+     * {@code const} and {@code class} declarations to themselves: {@code evaluate("let x = 1")} followed by
+     * {@code evaluate("use(x)")} throws a {@code ReferenceError} whenever the first script got merged with
+     * others. Only enable it if scripts share state through {@code var}, {@code function} declarations or
+     * properties of {@code window}.
+     */
+    @Getter
+    @Setter
+    private volatile boolean evalBatching = Boolean.getBoolean("webview.eval.batching");
+
+    /**
+     * The scripts gathered during the current turn, see {@link #evalBatching}.
+     */
+    private final EvalBatch evalBatch;
+
+    /**
+     * Encodes the strings passed to the webview library. Only used from the webview thread.
+     */
+    final NativeStringEncoder stringEncoder = new NativeStringEncoder();
+
+    /**
+     * Number of pending operations dropped because a newer operation with the same key was submitted.
+     */
+    private final LongAdder coalescedCount = new LongAdder();
+
+    /**
+     * Queue depth observed each time the webview thread picks up dispatched tasks.
+     */
+    @Getter
+    private final Histogram queueDepthHistogram = new Histogram();
+
+    /**
+     * The scheduler running delayed and periodic tasks on the webview thread.
+     * <p>
+     * It implements {@link java.util.concurrent.ScheduledExecutorService} on top of this dispatcher,
+     * without any extra thread per webview.
+     */
+    @Getter
+    private final WebviewScheduler scheduler = new WebviewScheduler(this);
+
+    /**
+     * The lifecycle state: {@link #RUNNING}, {@link #SHUTDOWN} or {@link #TERMINATED}.
+     */
+    private volatile int state = RUNNING;
+
+    /**
+     * Guards native calls on the webview pointer from other threads against its destruction.
+     * <p>
+     * Native dispatches hold the read lock; switching to {@link #TERMINATED} takes the write lock,
+     * so no thread can be inside {@code webview_dispatch} once the webview gets destroyed.
+     */
+    private final ReadWriteLock lifecycleLock = new ReentrantReadWriteLock();
+
+    /**
+     * Completed once the dispatcher terminates.
+     */
+    private final CompletableFuture<Void> termination = new CompletableFuture<>();
+
+    /**
+     * Whether the native webview was released. Shared with the {@link LeakCheck} registered on this dispatcher.
+     */
+    private final AtomicBoolean released = new AtomicBoolean();
+
     /**
      * The error handler for uncaught exceptions.
      * <p>
@@ -43,7 +271,13 @@ public class WebviewDispatcher implements Executor {
      * during task execution. By default, it logs the exception as a warning.
      */
     @Setter
-    private Consumer<Throwable> errorHandler = DEFAULT_ERROR_HANDLER;
+    private volatile Consumer<Throwable> errorHandler = DEFAULT_ERROR_HANDLER;
+
+    /**
+     * The stall watchdog, or {@code null} if not enabled.
+     */
+    @Getter
+    private volatile WebviewWatchdog watchdog;
 
     /**
      * The pointer to the webview instance.
@@ -67,6 +301,8 @@ public class WebviewDispatcher implements Executor {
     WebviewDispatcher(Pointer $webview_t, WeakReference<Thread> threadRef) {
         this.$webview_t = $webview_t;
         this.threadRef = threadRef;
+        this.evalBatch = new EvalBatch(this, $webview_t);
+        CLEANER.register(this, new LeakCheck(released, Pointer.nativeValue($webview_t)));
     }
 
     /**
@@ -77,7 +313,22 @@ public class WebviewDispatcher implements Executor {
      * @return A `CompletableFuture` that completes when the runnable has been executed.
      */
     public CompletableFuture<Void> runAsync(@NotNull Runnable runnable) {
-        return CompletableFuture.runAsync(runnable, this);
+        return this.runAsync(DispatchPriority.NORMAL, runnable);
+    }
+
+    /**
+     * Dispatches a runnable to the webview thread, on the given priority lane.
+     *
+     * @implNote Be very mindful of the fact that this will block the webview thread.
+     * @param priority the lane to run the runnable on.
+     * @param runnable callback to be executed on the webview thread.
+     * @return A `CompletableFuture` that completes when the runnable has been executed.
+     */
+    public CompletableFuture<Void> runAsync(@NotNull DispatchPriority priority, @NotNull Runnable runnable) {
+        return this.supplyAsync(priority, () -> {
+            runnable.run();
+            return null;
+        });
     }
 
     /**
@@ -88,108 +339,1209 @@ public class WebviewDispatcher implements Executor {
      * @return A `CompletableFuture` that completes with the result of the supplier.
      */
     public <U> CompletableFuture<U> supplyAsync(@NotNull Supplier<U> supplier) {
-        return CompletableFuture.supplyAsync(supplier, this);
+        return this.supplyAsync(DispatchPriority.NORMAL, supplier);
     }
 
     /**
-     * Wraps the execution of a runnable with error handling.
+     * Dispatches a supplier to the webview thread, on the given priority lane.
+     *
+     * @implNote Be very mindful of the fact that this will block the webview thread.
+     * @param priority the lane to run the supplier on.
+     * @param supplier callback to be executed on the webview thread.
+     * @return A `CompletableFuture` that completes with the result of the supplier.
+     */
+    public <U> CompletableFuture<U> supplyAsync(@NotNull DispatchPriority priority, @NotNull Supplier<U> supplier) {
+        AsyncTask<U> task = new AsyncTask<>(supplier);
+        try {
+            this.execute(priority, task);
+        } catch (RejectedExecutionException e) {
+            task.reject(e);
+        }
+        return task.future;
+    }
+
+    /**
+     * Starts watching the webview thread for stalls, replacing any running watchdog.
+     *
+     * @param threshold how long a task, a binding or the event loop may keep the webview thread busy
+     *                  before a {@link WebviewStallException} is reported to the error handler.
+     * @return The new watchdog.
+     * @see WebviewWatchdog
+     */
+    public synchronized WebviewWatchdog startWatchdog(@NotNull Duration threshold) {
+        stopWatchdog();
+        WebviewWatchdog started = new WebviewWatchdog(this, threadRef, threshold);
+        watchdog = started;
+        started.start();
+        return started;
+    }
+
+    /**
+     * Stops the stall watchdog, if running.
+     */
+    public synchronized void stopWatchdog() {
+        WebviewWatchdog current = watchdog;
+        if (current != null) {
+            watchdog = null;
+            current.stop();
+        }
+    }
+
+    /**
+     * Stops accepting new tasks. Tasks already queued still run, as long as the webview event loop does.
      * <p>
-     * This method ensures that any exceptions thrown during the execution of the
-     * provided {@link Runnable} are caught and passed to the default error handler.
+     * Also shuts down the {@link #getScheduler() scheduler}. The dispatcher terminates once the webview
+     * is destroyed, which {@link WebviewCore#terminate()} takes care of.
+     */
+    @Override
+    public void shutdown() {
+        advanceState(SHUTDOWN);
+        scheduler.shutdown();
+        signalCapacity();
+    }
+
+    /**
+     * Stops accepting new tasks, then runs a last command on the webview thread, once every task queued
+     * before has run.
      *
-     * @param runnable the {@link Runnable} to be executed.
+     * @param last the command to run last.
+     * @return {@code true} if the command was queued, {@code false} if the dispatcher was already shut down.
      */
-    void wrapExec(Runnable runnable) {
-        this.execute(() -> {
-            try {
-                runnable.run();
-            } catch (Exception e) {
-                DEFAULT_ERROR_HANDLER.accept(e);
+    boolean shutdown(Runnable last) {
+        synchronized (this) {
+            if (state != RUNNING) {
+                return false;
             }
-        });
+            finalCommand.set(last);
+        }
+        shutdown();
+        scheduleDrainIfIdle();
+        return true;
     }
 
     /**
-     * Executes a native operation on the webview thread.
+     * Stops accepting new tasks, and drops every task which didn't run yet.
      * <p>
-     * This method wraps the execution of an {@link IntSupplier} that performs
-     * a native operation, ensuring proper error handling.
+     * Futures of dropped tasks, including those returned by {@link #runAsync(Runnable)} and
+     * {@link #supplyAsync(Supplier)}, are completed exceptionally.
      *
-     * @param supplier the {@link IntSupplier} representing the native operation to execute.
+     * @return The tasks which never ran.
      */
-    void execNative(IntSupplier supplier) {
-        this.wrapExec(() -> WebviewCore.handleError(supplier.getAsInt()));
+    @Override
+    public @NotNull List<Runnable> shutdownNow() {
+        shutdown();
+        scheduler.shutdownNow();
+        return dropPending(new RejectedExecutionException(ERROR_SHUTDOWN));
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return state != RUNNING;
     }
 
     /**
-     * Executes a command on the webview thread.
-     * <p>
-     * This method creates a {@link WebviewNative.DispatchCallback} for the provided
-     * {@link Runnable} command, adds it to the set of active dispatch references,
-     * and dispatches it to the webview thread.
+     * Checks if the dispatcher terminated, which happens once the native webview is destroyed.
      *
-     * @param command the {@link Runnable} to be executed on the webview thread.
+     * @return {@code true} if terminated, {@code false} otherwise.
      */
     @Override
-    public void execute(@NotNull Runnable command) {
-        if (threadRef.refersTo(Thread.currentThread())) {
-            try {
-                command.run();
-            } catch (Exception e) {
-                log.log(Level.SEVERE, ERROR_DISPATCH_RUNNABLE, e);
-            }
-            return;
+    public boolean isTerminated() {
+        return state == TERMINATED;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        try {
+            termination.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return true;
         }
+    }
 
-        WebviewNative.DispatchCallback d = new DispatchRunnable(command);
-        dispatchRefs.add(d);
-        WebviewCore.handleError(WebviewNative.INSTANCE.webview_dispatch($webview_t, d, null));
+    /**
+     * Returns a future which completes once the dispatcher terminates.
+     *
+     * @return A future completed on termination.
+     */
+    public CompletableFuture<Void> onTermination() {
+        return termination.copy();
     }
 
     /**
-     * A callback implementation for dispatching tasks to the webview thread.
+     * Checks if the current thread is the webview thread.
+     *
+     * @return {@code true} if called from the webview thread, {@code false} otherwise.
+     */
+    public boolean isWebviewThread() {
+        return threadRef.refersTo(Thread.currentThread());
+    }
+
+    /**
+     * Terminates the dispatcher, right before the native webview is destroyed.
      * <p>
-     * This class implements the {@link WebviewNative.DispatchCallback} interface
-     * and is responsible for executing a given {@link Runnable} command on the
-     * webview thread. It ensures proper error handling and cleanup after execution.
+     * After this method returns, no other thread will touch the native webview through this dispatcher,
+     * every pending task has been dropped, and their futures completed exceptionally.
+     *
+     * @return {@code true} if this call terminated the dispatcher, {@code false} if it already was.
      */
-    private class DispatchRunnable implements WebviewNative.DispatchCallback {
-        /**
-         * The command to be executed on the webview thread.
-         */
-        private final Runnable command;
+    boolean terminate() {
+        lifecycleLock.writeLock().lock();
+        try {
+            if (state == TERMINATED) {
+                return false;
+            }
+            state = TERMINATED;
+        } finally {
+            lifecycleLock.writeLock().unlock();
+        }
 
-        /**
-         * Constructs a new {@code DispatchRunnable} with the specified command.
-         *
-         * @param command the {@link Runnable} to be executed on the webview thread.
-         */
-        public DispatchRunnable(Runnable command) {
-            this.command = command;
+        scheduler.shutdownNow();
+        stopWatchdog();
+        signals.clear();
+        dropPending(new RejectedExecutionException(ERROR_TERMINATED));
+        coalesced.clear();
+        released.set(true);
+        signalCapacity();
+        termination.complete(null);
+        return true;
+    }
+
+    /**
+     * Moves the lifecycle state forward, never backwards.
+     *
+     * @param target the state to move to.
+     */
+    private void advanceState(int target) {
+        lifecycleLock.readLock().lock();
+        try {
+            synchronized (this) {
+                if (state < target) {
+                    state = target;
+                }
+            }
+        } finally {
+            lifecycleLock.readLock().unlock();
         }
+    }
 
-        /**
-         * Executes the command on the webview thread.
-         * <p>
-         * This method is called by the webview native layer. It runs the command
-         * and logs any exceptions that occur during execution. After execution,
-         * the callback is removed from the set of active dispatch references.
-         *
-         * @param w   a pointer to the webview instance (unused in this implementation).
-         * @param arg a pointer to additional arguments (unused in this implementation).
-         */
-        @Override
-        public void callback(Pointer w, Pointer arg) {
-            try {
-                command.run();
-            } catch (Exception e) {
-                log.log(Level.SEVERE, ERROR_DISPATCH_RUNNABLE, e);
+    /**
+     * Removes every pending task, completing their futures exceptionally.
+     *
+     * @param reason the exception used to complete futures.
+     * @return The commands which were removed.
+     */
+    private List<Runnable> dropPending(RejectedExecutionException reason) {
+        List<Runnable> dropped = new ArrayList<>();
+        Runnable command;
+        while ((command = pollLowest()) != null) {
+            dropped.add(command);
+        }
+        for (Object ref : dispatchRefs) {
+            if (ref instanceof DispatchRunnable && dispatchRefs.remove(ref)) {
+                dropped.add(((DispatchRunnable) ref).command);
             }
-            dispatchRefs.remove(this);
         }
+        dropped.replaceAll(DispatchEvent::unwrap);
+        for (Runnable task : dropped) {
+            rejectTask(task, reason);
+        }
+        signalCapacity();
+        return dropped;
     }
 
-    private static final String ERROR_DISPATCH_RUNNABLE = "Error happened while executing dispatch runnable.";
+    /**
+     * Completes the future behind a task exceptionally, if it has one.
+     *
+     * @param task   the task which won't run.
+     * @param reason the exception used to complete the future.
+     */
+    private void rejectTask(Runnable task, RejectedExecutionException reason) {
+        if (task instanceof InternalTask) {
+            task = ((InternalTask) task).command;
+        }
+        if (task instanceof AsyncTask) {
+            ((AsyncTask<?>) task).reject(reason);
+        } else if (task instanceof CoalescedTask) {
+            ((CoalescedTask) task).supersede();
+        } else if (task instanceof Future) {
+            ((Future<?>) task).cancel(false);
+        }
+    }
+
+    /**
+     * Returns the maximum time a single turn of the webview thread may spend running dispatched tasks.
+     *
+     * @return The turn budget, or {@link Duration#ZERO} if disabled.
+     */
+    public Duration getTurnBudget() {
+        return Duration.ofNanos(Math.max(0, turnBudgetNanos));
+    }
+
+    /**
+     * Sets the maximum time a single turn of the webview thread may spend running dispatched tasks.
+     * <p>
+     * Tasks left over once the budget is exhausted are run on the next turn, so the native event
+     * loop keeps painting and processing input under heavy load. At least one task always runs per turn.
+     *
+     * @param turnBudget The turn budget. {@link Duration#ZERO} or negative durations disable the budget.
+     */
+    public void setTurnBudget(@NotNull Duration turnBudget) {
+        this.turnBudgetNanos = turnBudget.toNanos();
+    }
+
+    /**
+     * Returns the number of tasks currently waiting to run on the webview thread.
+     *
+     * @return The current queue depth.
+     */
+    public int getQueueDepth() {
+        return pending.get() + dispatchRefs.size();
+    }
+
+    /**
+     * Returns the highest queue depth observed in {@link DispatchMode#BATCHED} mode, useful to size {@link #setCapacity(int)}.
+     *
+     * @return The peak queue depth since creation or the last reset.
+     */
+    public int getPeakQueueDepth() {
+        return peakPending.get();
+    }
+
+    /**
+     * Resets the peak queue depth to the current queue depth.
+     */
+    public void resetPeakQueueDepth() {
+        peakPending.set(pending.get());
+    }
+
+    /**
+     * Returns the number of tasks rejected because the queue was full.
+     *
+     * @return The number of rejected tasks.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * Returns the number of queued tasks dropped by {@link BackpressurePolicy#DISCARD_OLDEST}.
+     *
+     * @return The number of discarded tasks.
+     */
+    public long getDiscardedCount() {
+        return discardedCount.sum();
+    }
+
+    /**
+     * Returns the number of tasks queued over capacity by {@link BackpressurePolicy#CALLER_RUNS_LATER}.
+     *
+     * @return The number of deferred tasks.
+     */
+    public long getDeferredCount() {
+        return deferredCount.sum();
+    }
+
+    /**
+     * Returns the number of pending operations dropped in favour of a newer operation with the same key.
+     *
+     * @return The number of coalesced operations.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * Wraps the execution of a runnable with error handling.
+     * <p>
+     * This method ensures that any exceptions thrown during the execution of the
+     * provided {@link Runnable} are caught and passed to the error handler.
+     *
+     * @param runnable the {@link Runnable} to be executed.
+     */
+    void wrapExec(Runnable runnable) {
+        this.wrapExec(DispatchPriority.NORMAL, runnable);
+    }
+
+    /**
+     * Wraps the execution of a runnable with error handling, on the given priority lane.
+     *
+     * @param priority the lane to run the runnable on.
+     * @param runnable the {@link Runnable} to be executed.
+     */
+    void wrapExec(DispatchPriority priority, Runnable runnable) {
+        this.execute(priority, () -> {
+            try {
+                runnable.run();
+            } catch (Exception e) {
+                reportError(e);
+            }
+        });
+    }
+
+    /**
+     * Executes a native operation on the webview thread.
+     * <p>
+     * This method wraps the execution of an {@link IntSupplier} that performs
+     * a native operation, ensuring proper error handling.
+     *
+     * @param function the name of the native function, reported to Flight Recorder.
+     * @param supplier the {@link IntSupplier} representing the native operation to execute.
+     */
+    void execNative(String function, IntSupplier supplier) {
+        this.execNative(DispatchPriority.NORMAL, function, supplier);
+    }
+
+    /**
+     * Executes a native operation on the webview thread, on the given priority lane.
+     *
+     * @param priority the lane to run the operation on.
+     * @param function the name of the native function, reported to Flight Recorder.
+     * @param supplier the {@link IntSupplier} representing the native operation to execute.
+     */
+    void execNative(DispatchPriority priority, String function, IntSupplier supplier) {
+        this.wrapExec(priority, () -> WebviewCore.handleError(NativeCallEvent.record(function, supplier)));
+    }
+
+    /**
+     * Executes a native operation completing internal work on the webview thread, on the given priority lane,
+     * exempt from the capacity limit.
+     *
+     * @param priority the lane to run the operation on.
+     * @param function the name of the native function, reported to Flight Recorder.
+     * @param supplier the {@link IntSupplier} representing the native operation to execute.
+     * @see #executeInternal(DispatchPriority, Runnable)
+     */
+    void execNativeInternal(DispatchPriority priority, String function, IntSupplier supplier) {
+        this.executeInternal(priority, () -> {
+            try {
+                WebviewCore.handleError(NativeCallEvent.record(function, supplier));
+            } catch (Exception e) {
+                reportError(e);
+            }
+        });
+    }
+
+    /**
+     * Evaluates a script on the webview thread, on the given priority lane.
+     * <p>
+     * If {@link #isEvalBatching() eval batching} is enabled, the script is merged with the other scripts
+     * evaluated during the same turn.
+     *
+     * @param priority the lane to evaluate the script on.
+     * @param script   the script to evaluate.
+     */
+    void execEval(DispatchPriority priority, String script) {
+        this.execEval(priority, script, null);
+    }
+
+    /**
+     * Evaluates a script of an internal channel on the webview thread, on the given priority lane, running a
+     * callback once it gets there. Like {@link #executeInternal(DispatchPriority, Runnable)}, it is exempt from
+     * the capacity limit.
+     * <p>
+     * The callback runs right before the script is evaluated or, with {@link #isEvalBatching() eval batching},
+     * added to the batch, which is evaluated before any other task runs.
+     *
+     * @param priority   the lane to evaluate the script on.
+     * @param script     the script to evaluate.
+     * @param onDispatch the callback, or {@code null}.
+     */
+    void execEval(DispatchPriority priority, String script, Runnable onDispatch) {
+        if (!evalBatching || threadRef.refersTo(Thread.currentThread())) {
+            this.execNativeInternal(priority, "webview_eval", () -> {
+                if (onDispatch != null) {
+                    onDispatch.run();
+                }
+                return stringEncoder.apply(script, js -> WebviewNative.INSTANCE.webview_eval($webview_t, js));
+            });
+            return;
+        }
+        this.executeInternal(priority, new EvalBatch.Script(evalBatch, script, onDispatch));
+    }
+
+    /**
+     * Number of scripts merged into each {@code webview_eval} while {@link #isEvalBatching() eval batching} is enabled.
+     *
+     * @return The histogram of batch sizes.
+     */
+    public Histogram getEvalBatchSizeHistogram() {
+        return evalBatch.getSizeHistogram();
+    }
+
+    /**
+     * Executes an idempotent native operation on the webview thread, with last-write-wins semantics.
+     * <p>
+     * If an operation with the same key is still pending, it is dropped and only this one will run.
+     * Dropped operations release their captured arguments right away, so large stale values (such
+     * as HTML content) don't pile up in memory.
+     *
+     * @param key      the coalescing key. Operations with equal keys supersede each other.
+     * @param function the name of the native function, reported to Flight Recorder.
+     * @param supplier the {@link IntSupplier} representing the native operation to execute.
+     */
+    void execCoalesced(Object key, String function, IntSupplier supplier) {
+        Runnable command = () -> {
+            try {
+                WebviewCore.handleError(NativeCallEvent.record(function, supplier));
+            } catch (Exception e) {
+                reportError(e);
+            }
+        };
+
+        if (!coalescing || threadRef.refersTo(Thread.currentThread())) {
+            this.execute(command);
+            return;
+        }
+
+        CoalescedTask task = new CoalescedTask(key, command);
+        CoalescedTask previous = coalesced.put(key, task);
+        if (previous != null && previous.supersede()) {
+            coalescedCount.increment();
+            // The superseded task stays queued as a no-op, so it no longer takes room in the lanes.
+            previous.releaseSlot();
+        }
+
+        try {
+            this.execute(task);
+        } catch (RejectedExecutionException e) {
+            coalesced.remove(key, task);
+            throw e;
+        }
+    }
+
+    /**
+     * Executes a command on the webview thread, on the {@link DispatchPriority#NORMAL} lane.
+     *
+     * @param command the {@link Runnable} to be executed on the webview thread.
+     * @see #execute(DispatchPriority, Runnable)
+     */
+    @Override
+    public void execute(@NotNull Runnable command) {
+        this.execute(DispatchPriority.NORMAL, command);
+    }
+
+    /**
+     * Executes a command on the webview thread, on the given priority lane.
+     * <p>
+     * If called from the webview thread, the command is executed immediately. Otherwise,
+     * in {@link DispatchMode#BATCHED} mode the command is pushed onto its lane, and a drain
+     * is dispatched only if none is pending. If the lanes are at capacity, the configured
+     * {@link BackpressurePolicy} applies first. In {@link DispatchMode#PER_TASK} mode, the
+     * priority is ignored, and this method creates a {@link WebviewNative.DispatchCallback}
+     * for the provided command, adds it to the set of active dispatch references, and
+     * dispatches it to the webview thread.
+     *
+     * @param priority the lane to run the command on.
+     * @param command  the {@link Runnable} to be executed on the webview thread.
+     * @throws RejectedExecutionException if the task was rejected by the backpressure policy,
+     *                                    or if the dispatcher was shut down.
+     */
+    public void execute(@NotNull DispatchPriority priority, @NotNull Runnable command) {
+        if (state != RUNNING) {
+            throw new RejectedExecutionException(state == TERMINATED ? ERROR_TERMINATED : ERROR_SHUTDOWN);
+        }
+
+        if (threadRef.refersTo(Thread.currentThread())) {
+            runCommand(command);
+            return;
+        }
+
+        DispatchMode mode = this.mode;
+        Runnable task = DispatchEvent.wrap(priority, mode, command);
+        if (mode == DispatchMode.PER_TASK) {
+            dispatchPerTask(task);
+            return;
+        }
+
+        reserveSlot();
+        if (command instanceof CoalescedTask) {
+            ((CoalescedTask) command).holdSlot();
+        }
+        offer(priority, task);
+    }
+
+    /**
+     * Executes a command completing internal work on the webview thread, on the given priority lane, exempt
+     * from the capacity limit.
+     * <p>
+     * Used for work some other party waits on, such as responses to bound calls from other threads, or
+     * the scripts of evaluation and stream channels. Rejecting or blocking those under load would leave
+     * JavaScript promises pending, or block threads holding locks, rather than shed load. They still count
+     * towards the queue depth, run in order with the other tasks of their lane, and are never discarded by
+     * {@link BackpressurePolicy#DISCARD_OLDEST}.
+     *
+     * @param priority the lane to run the command on.
+     * @param command  the {@link Runnable} to be executed on the webview thread.
+     * @throws RejectedExecutionException if the dispatcher was shut down.
+     */
+    void executeInternal(DispatchPriority priority, Runnable command) {
+        if (state != RUNNING) {
+            throw new RejectedExecutionException(state == TERMINATED ? ERROR_TERMINATED : ERROR_SHUTDOWN);
+        }
+
+        if (threadRef.refersTo(Thread.currentThread())) {
+            runCommand(command);
+            return;
+        }
+
+        DispatchMode mode = this.mode;
+        Runnable task = DispatchEvent.wrap(priority, mode, new InternalTask(command));
+        if (mode == DispatchMode.PER_TASK) {
+            dispatchPerTask(task);
+            return;
+        }
+
+        peakPending.accumulateAndGet(pending.incrementAndGet(), Math::max);
+        offer(priority, task);
+    }
+
+    /**
+     * Runs internal work on the webview thread, exempt from the capacity limit like
+     * {@link #executeInternal(DispatchPriority, Runnable)}.
+     *
+     * @param priority the lane to run the runnable on.
+     * @param runnable callback to be executed on the webview thread.
+     * @return A future completed once the runnable ran.
+     * @throws RejectedExecutionException if the dispatcher was shut down.
+     */
+    CompletableFuture<Void> runInternal(DispatchPriority priority, Runnable runnable) {
+        AsyncTask<Void> task = new AsyncTask<>(() -> {
+            runnable.run();
+            return null;
+        });
+        this.executeInternal(priority, task);
+        return task.future;
+    }
+
+    /**
+     * Queues an internal command, run ahead of every lane on the next drain, bypassing the capacity limit.
+     * <p>
+     * Used for housekeeping work, such as {@link WebviewScheduler} ticks, which must never be rejected
+     * nor block the thread submitting it. Unlike {@link #execute(Runnable)}, the command is always
+     * queued, even when called from the webview thread, still accepted after {@link #shutdown()}, and
+     * never discarded by the backpressure policy. Once terminated, the command is silently dropped.
+     *
+     * @param command the {@link Runnable} to be executed on the webview thread.
+     */
+    void signal(Runnable command) {
+        if (state == TERMINATED) {
+            return;
+        }
+
+        if (mode == DispatchMode.PER_TASK) {
+            dispatchPerTask(command);
+            return;
+        }
+
+        signals.offer(command);
+        scheduleDrainIfIdle();
+    }
+
+    /**
+     * Pushes a command onto its lane, dispatching a drain if none is pending.
+     * <p>
+     * The caller must have accounted for the command in {@link #pending}.
+     *
+     * @param priority the lane to run the command on.
+     * @param command  the {@link Runnable} to be executed on the webview thread.
+     */
+    private void offer(DispatchPriority priority, Runnable command) {
+        lanes[priority.ordinal()].offer(command);
+        scheduleDrainIfIdle();
+    }
+
+    /**
+     * Dispatches a drain if none is pending, after a command was queued.
+     */
+    private void scheduleDrainIfIdle() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            scheduleDrain();
+        }
+
+        // Raced with termination: nothing will ever drain the lanes again.
+        if (state == TERMINATED) {
+            signals.clear();
+            dropPending(new RejectedExecutionException(ERROR_TERMINATED));
+        }
+    }
+
+    /**
+     * Dispatches a command with its own native callback, as done in {@link DispatchMode#PER_TASK} mode.
+     *
+     * @param command the {@link Runnable} to be executed on the webview thread.
+     */
+    private void dispatchPerTask(Runnable command) {
+        WebviewNative.DispatchCallback d = new DispatchRunnable(command);
+        dispatchRefs.add(d);
+
+        int result;
+        lifecycleLock.readLock().lock();
+        try {
+            if (state == TERMINATED) {
+                dropPending(new RejectedExecutionException(ERROR_TERMINATED));
+                return;
+            }
+            result = WebviewNative.INSTANCE.webview_dispatch($webview_t, d, null);
+        } finally {
+            lifecycleLock.readLock().unlock();
+        }
+
+        if (result != WebviewNative.ERROR_OK) {
+            dispatchRefs.remove(d);
+            WebviewCore.handleError(result);
+        }
+    }
+
+    /**
+     * Reserves room in the lanes for one task, applying the backpressure policy if at capacity.
+     *
+     * @throws RejectedExecutionException if the task was rejected by the backpressure policy.
+     */
+    private void reserveSlot() {
+        while (true) {
+            if (state != RUNNING) {
+                rejectedCount.increment();
+                throw new RejectedExecutionException(state == TERMINATED ? ERROR_TERMINATED : ERROR_SHUTDOWN);
+            }
+
+            int depth = pending.incrementAndGet();
+            if (depth <= capacity) {
+                peakPending.accumulateAndGet(depth, Math::max);
+                return;
+            }
+            pending.decrementAndGet();
+
+            switch (backpressurePolicy) {
+                case BLOCK:
+                    awaitCapacity(Long.MIN_VALUE);
+                    break;
+                case REJECT:
+                    rejectedCount.increment();
+                    throw new RejectedExecutionException(ERROR_QUEUE_FULL);
+                case DISCARD_OLDEST:
+                    Runnable oldest = pollDiscardable();
+                    if (oldest != null) {
+                        discardedCount.increment();
+                        rejectTask(DispatchEvent.unwrap(oldest), new RejectedExecutionException(ERROR_DISCARDED));
+                    } else {
+                        Thread.onSpinWait();
+                    }
+                    break;
+                case CALLER_RUNS_LATER:
+                    awaitCapacity(turnCount);
+                    deferredCount.increment();
+                    peakPending.accumulateAndGet(pending.incrementAndGet(), Math::max);
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Blocks until the lanes have room for another task.
+     *
+     * @param turn If not {@link Long#MIN_VALUE}, also stops waiting once {@link #turnCount} moves past this value.
+     * @throws RejectedExecutionException if the thread was interrupted while waiting.
+     */
+    private void awaitCapacity(long turn) {
+        capacityWaiters.incrementAndGet();
+        try {
+            synchronized (capacityLock) {
+                while (state == RUNNING && pending.get() >= capacity && (turn == Long.MIN_VALUE || turnCount == turn)) {
+                    capacityLock.wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejectedCount.increment();
+            throw new RejectedExecutionException(ERROR_INTERRUPTED, e);
+        } finally {
+            capacityWaiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Wakes up producers waiting on {@link #capacityLock}, if any.
+     */
+    private void signalCapacity() {
+        if (capacityWaiters.get() > 0) {
+            synchronized (capacityLock) {
+                capacityLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Dispatches {@link #drainCallback} to the webview thread.
+     * <p>
+     * Must only be called by whoever flipped {@link #drainScheduled} to {@code true}.
+     */
+    private void scheduleDrain() {
+        int result;
+        lifecycleLock.readLock().lock();
+        try {
+            if (state == TERMINATED) {
+                return;
+            }
+            result = WebviewNative.INSTANCE.webview_dispatch($webview_t, drainCallback, null);
+        } finally {
+            lifecycleLock.readLock().unlock();
+        }
+
+        if (result != WebviewNative.ERROR_OK) {
+            drainScheduled.set(false);
+            WebviewCore.handleError(result);
+        }
+    }
+
+    /**
+     * Drains the lanes on the webview thread.
+     * <p>
+     * Runs queued commands, highest priority first, until the lanes are empty or the turn
+     * budget is exhausted, then clears {@link #drainScheduled}. Leftover commands, as well as
+     * commands queued after the lanes were seen empty but before the flag was cleared, are
+     * picked up by dispatching a new drain.
+     *
+     * @param w   a pointer to the webview instance (unused in this implementation).
+     * @param arg a pointer to additional arguments (unused in this implementation).
+     */
+    private void drain(Pointer w, Pointer arg) {
+        long budget = turnBudgetNanos;
+        long start = System.nanoTime();
+        queueDepthHistogram.record(pending.get());
+
+        WebviewWatchdog watchdog = this.watchdog;
+        Runnable command;
+        evalBatch.begin();
+        try {
+            while ((command = poll()) != null) {
+                if (!(DispatchEvent.unwrap(command) instanceof EvalBatch.Script)) {
+                    evalBatch.flush();
+                }
+                runTracked(watchdog, command);
+                if (budget > 0 && System.nanoTime() - start >= budget) {
+                    break;
+                }
+            }
+        } finally {
+            evalBatch.end();
+        }
+
+        // Tasks reserve their slot before being queued, so nothing is in flight once pending drops to zero.
+        if (state != RUNNING && pending.get() == 0 && !hasPending()) {
+            Runnable last = finalCommand.getAndSet(null);
+            if (last != null) {
+                runTracked(watchdog, last);
+            }
+        }
+
+        turnCount++;
+        signalCapacity();
+
+        drainScheduled.set(false);
+        if ((hasPending() || finalCommand.get() != null) && drainScheduled.compareAndSet(false, true)) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Retrieves the next command to run: signalled commands first, then from the highest priority non-empty lane.
+     *
+     * @return The next command, or {@code null} if all lanes are empty.
+     */
+    private Runnable poll() {
+        Runnable signal = signals.poll();
+        if (signal != null) {
+            return signal;
+        }
+        for (Queue<Runnable> lane : lanes) {
+            Runnable command = lane.poll();
+            if (command != null) {
+                releaseSlot(command);
+                signalCapacity();
+                return command;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the oldest command from the lowest priority non-empty lane.
+     *
+     * @return The removed command, or {@code null} if all lanes are empty.
+     */
+    private Runnable pollLowest() {
+        for (int i = lanes.length - 1; i >= 0; i--) {
+            Runnable command = lanes[i].poll();
+            if (command != null) {
+                releaseSlot(command);
+                return command;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the oldest command which isn't an {@link InternalTask} from the lowest priority lane having one.
+     *
+     * @return The removed command, or {@code null} if the lanes only hold internal tasks.
+     */
+    private Runnable pollDiscardable() {
+        for (int i = lanes.length - 1; i >= 0; i--) {
+            for (Runnable command : lanes[i]) {
+                if (!(DispatchEvent.unwrap(command) instanceof InternalTask) && lanes[i].remove(command)) {
+                    releaseSlot(command);
+                    return command;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gives back the room a command removed from the lanes took in {@link #pending}, unless a superseded
+     * {@link CoalescedTask} already did.
+     *
+     * @param command the command removed from its lane.
+     */
+    private void releaseSlot(Runnable command) {
+        Runnable task = DispatchEvent.unwrap(command);
+        if (task instanceof CoalescedTask) {
+            ((CoalescedTask) task).releaseSlot();
+        } else {
+            pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * Checks if any lane still has commands waiting.
+     *
+     * @return {@code true} if there are pending commands, {@code false} otherwise.
+     */
+    private boolean hasPending() {
+        if (!signals.isEmpty()) {
+            return true;
+        }
+        for (Queue<Runnable> lane : lanes) {
+            if (!lane.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates one queue per {@link DispatchPriority}.
+     *
+     * @return The lanes, indexed by priority ordinal.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Queue<Runnable>[] newLanes() {
+        DispatchPriority[] priorities = DispatchPriority.values();
+        Queue<Runnable>[] lanes = new Queue[priorities.length];
+        for (int i = 0; i < priorities.length; i++) {
+            lanes[i] = new ConcurrentLinkedQueue<>();
+        }
+        return lanes;
+    }
+
+    /**
+     * Passes an error to the error handler.
+     *
+     * @param error the error.
+     */
+    void reportError(Throwable error) {
+        errorHandler.accept(error);
+    }
+
+    /**
+     * Describes a dispatched task for stall reports, by the class of the code it runs.
+     *
+     * @param task the task.
+     * @return The class name of the task, or of the supplier it wraps.
+     */
+    static String describeTask(Runnable task) {
+        Object inner = DispatchEvent.unwrap(task);
+        if (inner instanceof InternalTask) {
+            inner = ((InternalTask) inner).command;
+        }
+        if (inner instanceof AsyncTask) {
+            inner = ((AsyncTask<?>) inner).supplier;
+        }
+        return inner.getClass().getName();
+    }
+
+    /**
+     * Runs a dispatched command on the webview thread, letting the watchdog track it if enabled.
+     *
+     * @param watchdog the watchdog, or {@code null}.
+     * @param command  the {@link Runnable} to be executed.
+     */
+    private static void runTracked(WebviewWatchdog watchdog, Runnable command) {
+        if (watchdog == null) {
+            runCommand(command);
+            return;
+        }
+        boolean entered = watchdog.enter(command);
+        try {
+            runCommand(command);
+        } finally {
+            if (entered) {
+                watchdog.exit();
+            }
+        }
+    }
+
+    /**
+     * Runs a command on the current thread, logging any exception it throws.
+     *
+     * @param command the {@link Runnable} to be executed.
+     */
+    private static void runCommand(Runnable command) {
+        try {
+            command.run();
+        } catch (Exception e) {
+            log.log(Level.SEVERE, ERROR_DISPATCH_RUNNABLE, e);
+        }
+    }
+
+    /**
+     * A callback implementation for dispatching tasks to the webview thread.
+     * <p>
+     * This class implements the {@link WebviewNative.DispatchCallback} interface
+     * and is responsible for executing a given {@link Runnable} command on the
+     * webview thread. It ensures proper error handling and cleanup after execution.
+     */
+    private class DispatchRunnable implements WebviewNative.DispatchCallback {
+        /**
+         * The command to be executed on the webview thread.
+         */
+        private final Runnable command;
+
+        /**
+         * Constructs a new {@code DispatchRunnable} with the specified command.
+         *
+         * @param command the {@link Runnable} to be executed on the webview thread.
+         */
+        public DispatchRunnable(Runnable command) {
+            this.command = command;
+        }
+
+        /**
+         * Executes the command on the webview thread.
+         * <p>
+         * This method is called by the webview native layer. It removes the callback
+         * from the set of active dispatch references, then runs the command and logs
+         * any exceptions that occur during execution. If the callback was already
+         * removed, the command was dropped, and it isn't run.
+         *
+         * @param w   a pointer to the webview instance (unused in this implementation).
+         * @param arg a pointer to additional arguments (unused in this implementation).
+         */
+        @Override
+        public void callback(Pointer w, Pointer arg) {
+            if (dispatchRefs.remove(this)) {
+                queueDepthHistogram.record(dispatchRefs.size());
+                runTracked(watchdog, command);
+            }
+        }
+    }
+
+    /**
+     * A task backed by a {@link CompletableFuture}, as created by {@link #supplyAsync(DispatchPriority, Supplier)}.
+     * <p>
+     * Unlike {@link CompletableFuture#supplyAsync(Supplier, Executor)}, the future is reachable from the
+     * task, so it can be completed exceptionally if the task is dropped before it gets to run.
+     *
+     * @param <U> The type of the result.
+     */
+    private static final class AsyncTask<U> implements Runnable {
+        /**
+         * The future completed with the result of {@link #supplier}.
+         */
+        private final CompletableFuture<U> future = new CompletableFuture<>();
+
+        /**
+         * The supplier to run on the webview thread.
+         */
+        private final Supplier<U> supplier;
+
+        /**
+         * Constructs a new {@code AsyncTask} for the specified supplier.
+         *
+         * @param supplier the supplier to run on the webview thread.
+         */
+        private AsyncTask(Supplier<U> supplier) {
+            this.supplier = supplier;
+        }
+
+        /**
+         * Runs the supplier, completing the future with its result or exception.
+         */
+        @Override
+        public void run() {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+
+        /**
+         * Completes the future exceptionally, without running the supplier.
+         *
+         * @param e the reason the task won't run.
+         */
+        void reject(RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * A task queued by {@link #executeInternal(DispatchPriority, Runnable)}, which the backpressure policy leaves alone.
+     */
+    private static final class InternalTask implements Runnable {
+        /**
+         * The command to run on the webview thread.
+         */
+        private final Runnable command;
+
+        private InternalTask(Runnable command) {
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            command.run();
+        }
+    }
+
+    /**
+     * A keyed task which can be superseded by a newer task with the same key before it runs.
+     */
+    private final class CoalescedTask implements Runnable {
+        /**
+         * The coalescing key.
+         */
+        private final Object key;
+
+        /**
+         * The command to run, or {@code null} once run or superseded.
+         */
+        private final AtomicReference<Runnable> command;
+
+        /**
+         * Whether this task takes room in {@link #pending}, given back either when it leaves its lane, or
+         * as soon as it is superseded.
+         */
+        private final AtomicBoolean holdsSlot = new AtomicBoolean();
+
+        /**
+         * Constructs a new {@code CoalescedTask} with the specified key and command.
+         *
+         * @param key     the coalescing key.
+         * @param command the command to run on the webview thread.
+         */
+        private CoalescedTask(Object key, Runnable command) {
+            this.key = key;
+            this.command = new AtomicReference<>(command);
+        }
+
+        /**
+         * Runs the command, unless it was superseded.
+         */
+        @Override
+        public void run() {
+            coalesced.remove(key, this);
+            Runnable c = command.getAndSet(null);
+            if (c != null) {
+                c.run();
+            }
+        }
+
+        /**
+         * Drops the command, so it never runs.
+         *
+         * @return {@code true} if the command was dropped, {@code false} if it already ran.
+         */
+        boolean supersede() {
+            return command.getAndSet(null) != null;
+        }
+
+        /**
+         * Records that this task took room in the lanes, right before queuing it.
+         */
+        void holdSlot() {
+            holdsSlot.set(true);
+            // Superseded while reserving: it's a no-op already.
+            if (command.get() == null) {
+                releaseSlot();
+            }
+        }
+
+        /**
+         * Gives back the room this task took in the lanes, if it still holds it.
+         */
+        void releaseSlot() {
+            if (holdsSlot.getAndSet(false)) {
+                pending.decrementAndGet();
+                signalCapacity();
+            }
+        }
+    }
+
+    /**
+     * Cleaning action which reports webviews garbage collected without being destroyed.
+     * <p>
+     * Such webviews still own native resources, and the native side may call back into
+     * callbacks which no longer exist.
+     */
+    private static final class LeakCheck implements Runnable {
+        private final AtomicBoolean released;
+        private final long peer;
+
+        private LeakCheck(AtomicBoolean released, long peer) {
+            this.released = released;
+            this.peer = peer;
+        }
+
+        @Override
+        public void run() {
+            if (!released.get()) {
+                log.severe(String.format(WARN_LEAKED, peer));
+            }
+        }
+    }
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private static final int RUNNING = 0;
+
+    private static final int SHUTDOWN = 1;
+
+    private static final int TERMINATED = 2;
+
+    private static final Duration DEFAULT_TURN_BUDGET = Duration.ofMillis(8);
+
+    private static final String ERROR_DISPATCH_RUNNABLE = "Error happened while executing dispatch runnable.";
+
+    private static final String ERROR_QUEUE_FULL = "Webview dispatcher queue is full.";
+
+    private static final String ERROR_DISCARDED = "Task was discarded to make room in the webview dispatcher queue.";
+
+    private static final String ERROR_SHUTDOWN = "Webview dispatcher has been shut down.";
+
+    private static final String ERROR_TERMINATED = "Webview was destroyed before the task could run.";
+
+    private static final String WARN_LEAKED = "Webview 0x%x was garbage collected without being destroyed. " +
+        "Always run() it until the window closes, or close() it, to release its native resources.";
+
+    private static final String ERROR_INTERRUPTED = "Interrupted while waiting for room in the webview dispatcher queue.";
 
     private static final String WARN_UNCAUGHT_EXCEPTION = "Uncaught exception in webview thread. " +
         "Use webview.setErrorHandler() to set a custom error handler.";
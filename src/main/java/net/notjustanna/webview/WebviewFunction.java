@@ -0,0 +1,126 @@
+package net.notjustanna.webview;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Handle to a JavaScript function installed by {@link WebviewCore#defineFunction(String)}.
+ * <p>
+ * The function is compiled once per page. Calls only send a short invocation, such as
+ * {@code __webview_fn__[3]("a",1)}, instead of the whole function source.
+ *
+ * @author Anna Silva
+ */
+public final class WebviewFunction {
+    private final WebviewCore webview;
+
+    /**
+     * The start of every invocation, up to the opening parenthesis.
+     */
+    private final String prefix;
+
+    WebviewFunction(WebviewCore webview, int id) {
+        this.webview = webview;
+        this.prefix = REGISTRY + "[" + id + "](";
+    }
+
+    /**
+     * Calls the function, ignoring its result.
+     *
+     * @param args The arguments. Supports {@code null}, strings, characters, numbers, booleans, arrays,
+     *             {@link Iterable}s and {@link java.util.Map}s.
+     * @throws IllegalArgumentException if an argument is of an unsupported type.
+     * @see WebviewCore#evaluate(String)
+     */
+    public void call(Object... args) {
+        webview.evaluate(invocation(args));
+    }
+
+    /**
+     * Calls the function, ignoring its result, on the given dispatcher priority lane.
+     *
+     * @param priority The lane to dispatch the call on.
+     * @param args     The arguments, as in {@link #call(Object...)}.
+     * @throws IllegalArgumentException if an argument is of an unsupported type.
+     * @see WebviewCore#evaluate(String, DispatchPriority)
+     */
+    public void call(@NotNull DispatchPriority priority, Object... args) {
+        webview.evaluate(invocation(args), priority);
+    }
+
+    /**
+     * Calls the function and returns its result.
+     *
+     * @param args The arguments, as in {@link #call(Object...)}.
+     * @return A future of the result, as JSON. If the function returns a promise, the value it resolves to.
+     * @throws IllegalArgumentException if an argument is of an unsupported type.
+     * @see WebviewCore#evaluateAsync(String)
+     */
+    public CompletableFuture<String> callAsync(Object... args) {
+        return webview.evaluateAsync(invocation(args));
+    }
+
+    /**
+     * Calls the function with arguments already encoded as JSON, ignoring its result.
+     * <p>
+     * Use this to pass values encoded by a JSON library, such as the ones of the interop modules.
+     *
+     * @param jsonArgs The arguments, each a JSON value. They are not validated.
+     */
+    public void callJson(String... jsonArgs) {
+        webview.evaluate(invocationJson(jsonArgs));
+    }
+
+    /**
+     * Calls the function with arguments already encoded as JSON, and returns its result.
+     *
+     * @param jsonArgs The arguments, each a JSON value. They are not validated.
+     * @return A future of the result, as JSON. If the function returns a promise, the value it resolves to.
+     */
+    public CompletableFuture<String> callJsonAsync(String... jsonArgs) {
+        return webview.evaluateAsync(invocationJson(jsonArgs));
+    }
+
+    private String invocation(Object[] args) {
+        StringBuilder sb = new StringBuilder(prefix.length() + 2 + args.length * 16).append(prefix);
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            JsEncoder.appendValue(sb, args[i]);
+        }
+        return sb.append(");").toString();
+    }
+
+    private String invocationJson(String[] jsonArgs) {
+        int length = prefix.length() + 2 + jsonArgs.length;
+        for (String arg : jsonArgs) {
+            length += arg.length();
+        }
+        StringBuilder sb = new StringBuilder(length).append(prefix);
+        for (int i = 0; i < jsonArgs.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(jsonArgs[i]);
+        }
+        return sb.append(");").toString();
+    }
+
+    /**
+     * Builds the script installing a function.
+     *
+     * @param id     the id of the function.
+     * @param source the function expression.
+     * @return The script.
+     */
+    static String definition(int id, String source) {
+        return "(window." + REGISTRY + "=window." + REGISTRY + "||{})[" + id + "]=(" + source + "\n);";
+    }
+
+    /**
+     * Global object holding the installed functions, by id.
+     */
+    private static final String REGISTRY = "__webview_fn__";
+}
@@ -0,0 +1,248 @@
+package net.notjustanna.webview;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * The bytes of an upload from the page, as received by a {@link WebviewUploadHandler}.
+ * <p>
+ * Chunks are handed over from the webview thread as the page sends them. At most {@code window}
+ * chunks are held at a time: the page only sends the next chunk once there's room for it, so the
+ * whole upload is never in memory at once.
+ *
+ * @author Anna Silva
+ */
+public final class WebviewInputStream extends InputStream implements ReadableByteChannel {
+    private final UploadChannel channel;
+    private final String uploadId;
+    private final int window;
+    private final Deque<byte[]> chunks = new ArrayDeque<>();
+    private byte[] current;
+    private int position;
+
+    /**
+     * Whether the last chunk was received.
+     */
+    private boolean eof;
+    private boolean closed;
+    private IOException failure;
+
+    /**
+     * Call of the page waiting for room, or for the result if it sent the last chunk.
+     */
+    private String waitingCall;
+    private boolean waitingLast;
+
+    /**
+     * Whether the handler completed, and with which response.
+     */
+    private boolean finished;
+    private int finalStatus;
+    private String finalResponse;
+
+    WebviewInputStream(UploadChannel channel, String uploadId, int window) {
+        this.channel = channel;
+        this.uploadId = uploadId;
+        this.window = window;
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+        if (!nextChunk()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public synchronized int read(byte @NotNull [] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextChunk()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        if (!nextChunk()) {
+            return -1;
+        }
+        int n = Math.min(dst.remaining(), current.length - position);
+        dst.put(current, position, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public synchronized int available() {
+        return current == null ? 0 : current.length - position;
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Drops the rest of the upload. Chunks the page still sends are acknowledged and discarded.
+     */
+    @Override
+    public void close() {
+        String call;
+        synchronized (this) {
+            closed = true;
+            chunks.clear();
+            current = null;
+            call = releaseWaiting();
+            notifyAll();
+        }
+        if (call != null) {
+            channel.respondContinue(call);
+        }
+    }
+
+    /**
+     * Makes the next chunk current, if the current one was fully read, waiting for the page if needed.
+     *
+     * @return {@code false} once the upload ended.
+     */
+    private boolean nextChunk() throws IOException {
+        if (current != null && position < current.length) {
+            return true;
+        }
+        current = null;
+        while (chunks.isEmpty()) {
+            if (failure != null) {
+                throw new IOException(failure.getMessage(), failure);
+            }
+            if (closed) {
+                throw new IOException(ERROR_CLOSED);
+            }
+            if (eof) {
+                return false;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(ERROR_INTERRUPTED);
+            }
+        }
+        current = chunks.poll();
+        position = 0;
+        String call = releaseWaiting();
+        if (call != null) {
+            channel.respondContinue(call);
+        }
+        return true;
+    }
+
+    /**
+     * Releases the call of the page waiting for room, unless it sent the last chunk.
+     * Must hold the lock.
+     */
+    private String releaseWaiting() {
+        if (waitingCall == null || waitingLast || chunks.size() >= window) {
+            return null;
+        }
+        String call = waitingCall;
+        waitingCall = null;
+        return call;
+    }
+
+    /**
+     * Receives a chunk from the page, on the webview thread.
+     *
+     * @param call  the id of the call which sent it.
+     * @param bytes the chunk.
+     * @param last  whether it is the last chunk.
+     */
+    void offer(String call, byte[] bytes, boolean last) {
+        int status;
+        String response;
+        synchronized (this) {
+            if (!finished) {
+                if (!closed) {
+                    chunks.add(bytes);
+                }
+                eof |= last;
+                notifyAll();
+                if (last || chunks.size() >= window) {
+                    waitingCall = call;
+                    waitingLast = last;
+                    return;
+                }
+                response = null;
+                status = -1;
+            } else {
+                status = finalStatus;
+                response = finalResponse;
+            }
+        }
+        if (status < 0) {
+            channel.respondContinue(call);
+        } else {
+            channel.remove(uploadId);
+            channel.respond(call, status, response);
+        }
+    }
+
+    /**
+     * Completes the upload with the result of the handler, on the handler thread.
+     *
+     * @param status   {@code 0} on success, {@code 1} on failure.
+     * @param response the JSON response for the page.
+     */
+    void finish(int status, String response) {
+        String call;
+        synchronized (this) {
+            finished = true;
+            finalStatus = status;
+            finalResponse = response;
+            closed = true;
+            chunks.clear();
+            current = null;
+            call = waitingCall;
+            waitingCall = null;
+            if (call == null && !eof) {
+                // The page is still sending, it gets the result on its next chunk.
+                return;
+            }
+        }
+        channel.remove(uploadId);
+        if (call != null) {
+            channel.respond(call, status, response);
+        }
+    }
+
+    /**
+     * Fails the upload, as the page went away.
+     *
+     * @param e the reason.
+     */
+    synchronized void fail(IOException e) {
+        failure = e;
+        waitingCall = null;
+        notifyAll();
+    }
+
+    private static final String ERROR_CLOSED = "Upload stream was closed.";
+
+    private static final String ERROR_INTERRUPTED = "Interrupted while waiting for the page to send the upload.";
+}
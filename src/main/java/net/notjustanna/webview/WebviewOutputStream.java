@@ -0,0 +1,214 @@
+package net.notjustanna.webview;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A stream of bytes sent to the page in bounded chunks, opened by {@link WebviewCore#openStream()}.
+ * <p>
+ * Bytes are buffered until a chunk is full, then sent to the page on the webview thread. At most
+ * {@code window} chunks may be in flight: once the page holds that many chunks its reader hasn't
+ * consumed yet, writes block until it catches up. So memory use stays bounded by the chunk window
+ * on both sides, whatever the size of the payload.
+ * <p>
+ * On the page, the stream is read with {@code window.__webview_stream__}:
+ * <ul>
+ *     <li>{@code get(id)} returns a {@code ReadableStream} of {@code Uint8Array} chunks;</li>
+ *     <li>{@code text(id)} and {@code json(id)} return a promise of the whole payload, decoded as UTF-8.</li>
+ * </ul>
+ * Cancelling the {@code ReadableStream} fails further writes with an {@link IOException}, as does
+ * navigating away or destroying the webview.
+ *
+ * @author Anna Silva
+ * @implNote Chunks are sent as Base64, so each chunk takes about 4/3 of its size in script text.
+ */
+public final class WebviewOutputStream extends OutputStream implements WritableByteChannel {
+    /**
+     * The id of this stream, to be passed to the page.
+     */
+    @Getter
+    private final int id;
+
+    private final StreamChannel channel;
+    private final Semaphore credits;
+    private final byte[] buffer;
+    private int count;
+    private boolean closed;
+
+    /**
+     * Why the stream can no longer be written to, if it failed.
+     */
+    private volatile IOException failure;
+
+    WebviewOutputStream(StreamChannel channel, int id, int chunkSize, int window) {
+        this.channel = channel;
+        this.id = id;
+        this.buffer = new byte[chunkSize];
+        this.credits = new Semaphore(window);
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        ensureOpen();
+        buffer[count++] = (byte) b;
+        if (count == buffer.length) {
+            sendChunk();
+        }
+    }
+
+    @Override
+    public synchronized void write(byte @NotNull [] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == buffer.length) {
+                sendChunk();
+            }
+        }
+    }
+
+    @Override
+    public synchronized int write(ByteBuffer src) throws IOException {
+        ensureOpen();
+        int written = src.remaining();
+        while (src.hasRemaining()) {
+            int n = Math.min(src.remaining(), buffer.length - count);
+            src.get(buffer, count, n);
+            count += n;
+            if (count == buffer.length) {
+                sendChunk();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Sends the buffered bytes to the page as a partial chunk.
+     *
+     * @throws IOException if the stream failed or was closed.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        if (count > 0) {
+            sendChunk();
+        }
+    }
+
+    /**
+     * Sends the buffered bytes and ends the stream on the page. Does nothing if the stream failed.
+     *
+     * @throws IOException if the remaining bytes couldn't be sent.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (failure != null) {
+            closed = true;
+            channel.remove(id);
+            return;
+        }
+        try {
+            flush();
+            channel.end(id);
+        } finally {
+            closed = true;
+            channel.remove(id);
+        }
+    }
+
+    /**
+     * Ends the stream with an error, which rejects the reader on the page.
+     * Buffered bytes are dropped.
+     *
+     * @param message The error message shown to the page.
+     */
+    public synchronized void abort(@NotNull String message) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        count = 0;
+        channel.remove(id);
+        if (failure == null) {
+            channel.error(id, message);
+        }
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return !closed && failure == null;
+    }
+
+    /**
+     * Grants credits, as the page consumed chunks.
+     *
+     * @param n the number of chunks consumed.
+     */
+    void credit(int n) {
+        credits.release(n);
+    }
+
+    /**
+     * Fails the stream, waking any writer blocked on credits.
+     *
+     * @param e the reason.
+     */
+    void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+        credits.release(Integer.MAX_VALUE / 2);
+    }
+
+    private void ensureOpen() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            throw new IOException(e.getMessage(), e);
+        }
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private void sendChunk() throws IOException {
+        if (channel.isWebviewThread()) {
+            // Credits are granted on the webview thread, so waiting here would never end.
+            if (!credits.tryAcquire()) {
+                throw new IOException(ERROR_NO_CREDIT_ON_WEBVIEW_THREAD);
+            }
+        } else {
+            try {
+                credits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(ERROR_INTERRUPTED);
+            }
+        }
+        ensureOpen();
+        String data = Base64.getEncoder().encodeToString(count == buffer.length ? buffer : Arrays.copyOf(buffer, count));
+        count = 0;
+        channel.chunk(id, data);
+    }
+
+    private static final String ERROR_NO_CREDIT_ON_WEBVIEW_THREAD = "The page has not consumed enough of the stream, " +
+        "and writing from the webview thread can't wait for it. Write from another thread instead.";
+
+    private static final String ERROR_INTERRUPTED = "Interrupted while waiting for the page to consume the stream.";
+}
@@ -0,0 +1,204 @@
+package net.notjustanna.webview;
+
+import com.sun.jna.Pointer;
+import lombok.extern.java.Log;
+import net.notjustanna.webview.natives.WebviewNative;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+
+/**
+ * Starts the work the first webview pays for on background threads, while the application initializes.
+ * <p>
+ * Without it, the first {@code new WebviewStandalone(...)} loads the native library, initializes JNA, reads
+ * {@link WebviewInfo#INSTANCE} and loads the classes of the library, all on the thread creating the webview.
+ * Once started, a preload runs each of these phases on its own daemon thread, and a webview created meanwhile
+ * simply waits for the phases it needs.
+ * <p>
+ * More phases can be added with {@link #warmUp(String, Runnable)}, such as the {@code warmUp} methods of the
+ * interop modules, which run their encode and decode paths on synthetic payloads so they are compiled early:
+ * <pre>{@code
+ * WebviewPreload preload = new WebviewPreload()
+ *     .warmUp("jackson", () -> JacksonWebviewInterop.warmUp(1_000))
+ *     .start();
+ * // initialize the rest of the application...
+ * preload.getTimings().thenAccept(System.out::println);
+ * }</pre>
+ *
+ * @author Anna Silva
+ * @implNote A phase that fails only logs a warning, since whatever it was preparing fails again, with its
+ * usual exception, when the webview needs it.
+ */
+@Log
+public final class WebviewPreload {
+    private final List<Phase> phases = new ArrayList<>();
+    private final Map<String, Duration> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final CompletableFuture<Map<String, Duration>> completion = new CompletableFuture<>();
+    private volatile boolean started;
+
+    /**
+     * Creates a preload of the native library, the webview version and the classes of the library.
+     * Nothing runs until {@link #start()}.
+     */
+    public WebviewPreload() {
+        phases.add(new Phase(PHASE_NATIVES, null, () -> WebviewNative.INSTANCE.hashCode()));
+        phases.add(new Phase(PHASE_INFO, PHASE_NATIVES, () -> WebviewInfo.INSTANCE.hashCode()));
+        phases.add(new Phase(PHASE_CLASSES, null, WebviewPreload::loadClasses));
+        phases.add(new Phase(PHASE_ENCODERS, null, () -> warmUpEncoders(WARM_UP_ITERATIONS)));
+    }
+
+    /**
+     * Starts a preload with the default phases.
+     *
+     * @return The started preload.
+     */
+    public static WebviewPreload preload() {
+        return new WebviewPreload().start();
+    }
+
+    /**
+     * Adds a phase, run in parallel with the others once started.
+     *
+     * @param name The name of the phase, as reported by {@link #getTimings()}.
+     * @param task The work of the phase.
+     * @return Itself for chaining.
+     * @throws IllegalStateException If the preload was already started.
+     */
+    public WebviewPreload warmUp(@NotNull String name, @NotNull Runnable task) {
+        if (started) {
+            throw new IllegalStateException(ERROR_ALREADY_STARTED);
+        }
+        phases.add(new Phase(name, null, task));
+        return this;
+    }
+
+    /**
+     * Starts every phase on its own daemon thread.
+     *
+     * @return Itself for chaining.
+     * @throws IllegalStateException If the preload was already started.
+     */
+    public WebviewPreload start() {
+        if (started) {
+            throw new IllegalStateException(ERROR_ALREADY_STARTED);
+        }
+        started = true;
+
+        Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+        for (Phase phase : phases) {
+            CompletableFuture<Void> after = phase.after == null ? CompletableFuture.completedFuture(null) : futures.get(phase.after);
+            futures.put(phase.name, after.thenRunAsync(() -> run(phase), WebviewPreload::startThread));
+        }
+        CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new))
+            .whenComplete((ignored, e) -> {
+                synchronized (timings) {
+                    completion.complete(Collections.unmodifiableMap(new LinkedHashMap<>(timings)));
+                }
+            });
+        return this;
+    }
+
+    /**
+     * Time taken by each phase, once all of them are done.
+     *
+     * @return A future of the duration of each phase, by name, in the order they finished.
+     * Phases that failed are missing.
+     */
+    public CompletableFuture<Map<String, Duration>> getTimings() {
+        return completion;
+    }
+
+    private void run(Phase phase) {
+        long start = System.nanoTime();
+        try {
+            phase.task.run();
+        } catch (Throwable e) {
+            log.log(Level.WARNING, WARN_PHASE_FAILED.formatted(phase.name), e);
+            return;
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        timings.put(phase.name, elapsed);
+        log.fine(() -> "Preloaded " + phase.name + " in " + elapsed.toMillis() + " ms");
+    }
+
+    private static void startThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "webview-preload");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Initializes the classes a webview needs on creation and on its first calls.
+     */
+    private static void loadClasses() {
+        ClassLoader loader = WebviewPreload.class.getClassLoader();
+        for (String name : PRELOADED_CLASSES) {
+            try {
+                Class.forName(name, true, loader);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Runs the encoders of scripts and native strings on synthetic payloads.
+     */
+    private static void warmUpEncoders(int iterations) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("id", 1);
+        payload.put("name", "item \"quoted\"\n\u00e9");
+        payload.put("tags", List.of("a", "b", "c"));
+        payload.put("score", 1.5);
+        payload.put("active", true);
+        payload.put("parent", null);
+
+        NativeStringEncoder encoder = new NativeStringEncoder();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < iterations; i++) {
+            sb.setLength(0);
+            String script = JsEncoder.appendValue(sb.append("render("), payload).append(");").toString();
+            JsEncoder.unquote(JsEncoder.string(script));
+            encoder.apply(script, Pointer::hashCode);
+        }
+    }
+
+    private static final class Phase {
+        private final String name;
+        private final String after;
+        private final Runnable task;
+
+        private Phase(String name, String after, Runnable task) {
+            this.name = name;
+            this.after = after;
+            this.task = task;
+        }
+    }
+
+    private static final String PHASE_NATIVES = "natives";
+    private static final String PHASE_INFO = "info";
+    private static final String PHASE_CLASSES = "classes";
+    private static final String PHASE_ENCODERS = "encoders";
+
+    private static final int WARM_UP_ITERATIONS = 2_000;
+
+    private static final String[] PRELOADED_CLASSES = {
+        "net.notjustanna.webview.WebviewCore",
+        "net.notjustanna.webview.WebviewDispatcher",
+        "net.notjustanna.webview.WebviewScheduler",
+        "net.notjustanna.webview.EvalBatch",
+        "net.notjustanna.webview.EvalChannel",
+        "net.notjustanna.webview.StreamChannel",
+        "net.notjustanna.webview.UploadChannel",
+    };
+
+    private static final String ERROR_ALREADY_STARTED = "Preload was already started.";
+    private static final String WARN_PHASE_FAILED = "Failed to preload %s.";
+}
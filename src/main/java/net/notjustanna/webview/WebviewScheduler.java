@@ -0,0 +1,618 @@
+package net.notjustanna.webview;
+
+import lombok.extern.java.Log;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * A {@link ScheduledExecutorService} which runs its tasks on the webview thread.
+ * <p>
+ * Delayed and periodic tasks are kept in a hashed timer wheel, which is only ever touched by the
+ * webview thread. A single daemon thread, shared by all webviews in the process, sleeps until the
+ * earliest deadline and then wakes the webview thread through {@link WebviewDispatcher}, reusing
+ * its persistent native callback. Scheduling hundreds of periodic tasks costs no extra threads, and
+ * ticks don't allocate native closures.
+ * <p>
+ * Instances are obtained through {@link WebviewDispatcher#getScheduler()}.
+ *
+ * @author Anna Silva
+ * @implNote Timers have a resolution of one millisecond. Like every task on the webview thread,
+ * scheduled tasks should be short, or they will delay every other task and the window itself.
+ */
+@Log
+public class WebviewScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+    /**
+     * The dispatcher used to reach the webview thread.
+     */
+    private final WebviewDispatcher dispatcher;
+
+    /**
+     * All scheduled tasks which didn't finish nor got cancelled yet.
+     */
+    private final Set<ScheduledTask<?>> tasks = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Tasks scheduled (or rescheduled) by any thread, waiting to be placed into the wheel by the webview thread.
+     */
+    private final Queue<ScheduledTask<?>> incoming = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The timer wheel. Each slot is the head of an intrusive doubly linked list of tasks.
+     * <p>
+     * Only accessed by the webview thread.
+     */
+    private final ScheduledTask<?>[] wheel = new ScheduledTask<?>[WHEEL_SIZE];
+
+    /**
+     * The origin of the tick count, in {@link System#nanoTime()} units.
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * The next tick to be processed by the wheel. Only accessed by the webview thread.
+     */
+    private long currentTick;
+
+    /**
+     * A lower bound of the earliest deadline of all tasks, or {@link Long#MAX_VALUE} if none.
+     */
+    private final AtomicLong nextDeadline = new AtomicLong(Long.MAX_VALUE);
+
+    /**
+     * Whether a tick is queued on the dispatcher and didn't finish yet.
+     */
+    private final AtomicBoolean tickQueued = new AtomicBoolean();
+
+    /**
+     * The preallocated tick command, so ticking doesn't allocate.
+     */
+    private final Runnable tickCommand = this::tick;
+
+    /**
+     * Whether {@link #shutdown()} was called.
+     */
+    private volatile boolean shutdown;
+
+    /**
+     * Constructs a new {@code WebviewScheduler} on top of the specified dispatcher.
+     *
+     * @param dispatcher the dispatcher used to reach the webview thread.
+     */
+    WebviewScheduler(WebviewDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    @Override
+    public @NotNull ScheduledFuture<?> schedule(@NotNull Runnable command, long delay, @NotNull TimeUnit unit) {
+        return schedule(Executors.callable(command), delay, unit);
+    }
+
+    @Override
+    public <V> @NotNull ScheduledFuture<V> schedule(@NotNull Callable<V> callable, long delay, @NotNull TimeUnit unit) {
+        return enqueue(new ScheduledTask<>(callable, triggerTime(delay, unit), 0));
+    }
+
+    /**
+     * Schedules a periodic task, running first after {@code initialDelay}, then every {@code period},
+     * measured from the start of the previous run. Runs that are late don't accumulate: at most one run
+     * happens per tick.
+     */
+    @Override
+    public @NotNull ScheduledFuture<?> scheduleAtFixedRate(@NotNull Runnable command, long initialDelay, long period, @NotNull TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive");
+        }
+        return enqueue(new ScheduledTask<>(Executors.callable(command), triggerTime(initialDelay, unit), unit.toNanos(period)));
+    }
+
+    /**
+     * Schedules a periodic task, running first after {@code initialDelay}, then {@code delay} after the
+     * end of the previous run.
+     */
+    @Override
+    public @NotNull ScheduledFuture<?> scheduleWithFixedDelay(@NotNull Runnable command, long initialDelay, long delay, @NotNull TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("delay must be positive");
+        }
+        return enqueue(new ScheduledTask<>(Executors.callable(command), triggerTime(initialDelay, unit), -unit.toNanos(delay)));
+    }
+
+    /**
+     * Executes a command on the webview thread, as soon as possible.
+     *
+     * @param command the {@link Runnable} to be executed on the webview thread.
+     * @see WebviewDispatcher#execute(Runnable)
+     */
+    @Override
+    public void execute(@NotNull Runnable command) {
+        if (shutdown) {
+            throw new RejectedExecutionException(ERROR_SHUTDOWN);
+        }
+        dispatcher.execute(command);
+    }
+
+    /**
+     * Stops accepting new tasks, and cancels periodic tasks. Already scheduled one-shot tasks still run.
+     */
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        for (ScheduledTask<?> task : tasks) {
+            if (task.isPeriodic()) {
+                task.cancel(false);
+            }
+        }
+        checkTerminated();
+    }
+
+    /**
+     * Stops accepting new tasks, and cancels every scheduled task.
+     *
+     * @return The tasks which never ran.
+     */
+    @Override
+    public @NotNull List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> cancelled = new ArrayList<>();
+        for (ScheduledTask<?> task : tasks) {
+            if (task.cancel(false)) {
+                cancelled.add(task);
+            }
+        }
+        checkTerminated();
+        return cancelled;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && tasks.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this) {
+            while (!isTerminated()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of tasks scheduled which didn't finish nor got cancelled yet.
+     *
+     * @return The number of scheduled tasks.
+     */
+    public int getScheduledCount() {
+        return tasks.size();
+    }
+
+    /**
+     * Registers a new task and hands it over to the webview thread.
+     *
+     * @param task the task to schedule.
+     * @return The task.
+     */
+    private <V> ScheduledTask<V> enqueue(ScheduledTask<V> task) {
+        if (shutdown) {
+            throw new RejectedExecutionException(ERROR_SHUTDOWN);
+        }
+        tasks.add(task);
+        reschedule(task);
+        return task;
+    }
+
+    /**
+     * Hands a new or periodic task over to the webview thread, waking the ticker if needed.
+     *
+     * @param task the task to place into the wheel.
+     */
+    private void reschedule(ScheduledTask<?> task) {
+        incoming.offer(task);
+        long deadline = task.deadline;
+        if (nextDeadline.accumulateAndGet(deadline, Math::min) == deadline) {
+            Ticker.wake(this);
+        }
+    }
+
+    /**
+     * Processes the wheel up to the current time, running every expired task.
+     * <p>
+     * Always runs on the webview thread.
+     */
+    private void tick() {
+        long now = System.nanoTime();
+        long targetTick = (now - startNanos) / TICK_NANOS;
+
+        ScheduledTask<?> task;
+        while ((task = incoming.poll()) != null) {
+            place(task);
+        }
+
+        for (; currentTick <= targetTick; currentTick++) {
+            int slot = (int) (currentTick & WHEEL_MASK);
+            ScheduledTask<?> next;
+            for (task = wheel[slot]; task != null; task = next) {
+                next = task.next;
+                if (task.isDone()) {
+                    unlink(task);
+                } else if (task.remainingRounds > 0) {
+                    task.remainingRounds--;
+                } else {
+                    unlink(task);
+                    runTask(task);
+                }
+            }
+        }
+
+        // Tasks rescheduled while running (periodic ones) or by other threads in the meantime
+        while ((task = incoming.poll()) != null) {
+            place(task);
+        }
+
+        nextDeadline.set(earliestSlotDeadline());
+        tickQueued.set(false);
+        if (!incoming.isEmpty()) {
+            nextDeadline.set(now);
+        }
+        Ticker.wake(this);
+        checkTerminated();
+    }
+
+    /**
+     * Runs a task, then reschedules it if periodic.
+     *
+     * @param task the task to run.
+     */
+    private void runTask(ScheduledTask<?> task) {
+        boolean again = task.runOnce();
+        if (again && !shutdown) {
+            long period = task.period;
+            task.deadline = period > 0 ? Math.max(task.deadline + period, System.nanoTime()) : System.nanoTime() - period;
+            reschedule(task);
+        } else if (again) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Places a task into the wheel slot matching its deadline. Tasks already due go into the current slot.
+     *
+     * @param task the task to place.
+     */
+    private void place(ScheduledTask<?> task) {
+        if (task.isDone()) {
+            return;
+        }
+        long ticks = Math.max(currentTick, ceilDiv(task.deadline - startNanos, TICK_NANOS));
+        task.remainingRounds = (ticks - currentTick) / WHEEL_SIZE;
+
+        int slot = (int) (ticks & WHEEL_MASK);
+        ScheduledTask<?> head = wheel[slot];
+        task.slot = slot;
+        task.prev = null;
+        task.next = head;
+        if (head != null) {
+            head.prev = task;
+        }
+        wheel[slot] = task;
+    }
+
+    /**
+     * Removes a task from its wheel slot.
+     *
+     * @param task the task to remove.
+     */
+    private void unlink(ScheduledTask<?> task) {
+        if (task.prev != null) {
+            task.prev.next = task.next;
+        } else {
+            wheel[task.slot] = task.next;
+        }
+        if (task.next != null) {
+            task.next.prev = task.prev;
+        }
+        task.prev = null;
+        task.next = null;
+    }
+
+    /**
+     * Finds the time of the first non-empty slot from the current tick, which is a lower bound of the next deadline.
+     *
+     * @return The deadline, or {@link Long#MAX_VALUE} if the wheel is empty.
+     */
+    private long earliestSlotDeadline() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            long tick = currentTick + i;
+            if (wheel[(int) (tick & WHEEL_MASK)] != null) {
+                return startNanos + tick * TICK_NANOS;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Queues a tick on the webview thread, unless one is already queued.
+     * <p>
+     * Called by the ticker thread once {@link #nextDeadline} is reached.
+     */
+    private void requestTick() {
+        if (tickQueued.compareAndSet(false, true)) {
+            try {
+                dispatcher.signal(tickCommand);
+            } catch (RuntimeException e) {
+                tickQueued.set(false);
+                log.log(Level.WARNING, ERROR_TICK, e);
+            }
+        }
+    }
+
+    /**
+     * Wakes up threads in {@link #awaitTermination(long, TimeUnit)} if the scheduler terminated.
+     * <p>
+     * A terminated scheduler is also dropped by the ticker, since a tick queued on a terminated dispatcher
+     * never runs to clear {@link #tickQueued}, and the ticker would otherwise keep the scheduler, and its
+     * webview, reachable forever.
+     */
+    private void checkTerminated() {
+        if (isTerminated()) {
+            nextDeadline.set(Long.MAX_VALUE);
+            tickQueued.set(false);
+            Ticker.forget(this);
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private static long triggerTime(long delay, TimeUnit unit) {
+        return System.nanoTime() + unit.toNanos(Math.max(0, delay));
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    /**
+     * A scheduled task, also acting as a node of the timer wheel.
+     *
+     * @param <V> The type of the result.
+     */
+    private final class ScheduledTask<V> implements ScheduledFuture<V>, Runnable {
+        /**
+         * The future holding the result of the task.
+         */
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+
+        /**
+         * The task body. Cleared once the task finishes or is cancelled.
+         */
+        private volatile Callable<V> callable;
+
+        /**
+         * Period in nanoseconds: positive for fixed-rate, negative for fixed-delay, zero for one-shot tasks.
+         */
+        private final long period;
+
+        /**
+         * The next time the task should run, in {@link System#nanoTime()} units.
+         */
+        private volatile long deadline;
+
+        /**
+         * Wheel bookkeeping, only accessed by the webview thread.
+         */
+        private ScheduledTask<?> prev, next;
+        private int slot;
+        private long remainingRounds;
+
+        private ScheduledTask(Callable<V> callable, long deadline, long period) {
+            this.callable = callable;
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        /**
+         * Runs the task once, completing its future unless it is periodic and succeeded.
+         *
+         * @return {@code true} if the task should be rescheduled.
+         */
+        private boolean runOnce() {
+            Callable<V> c = callable;
+            if (c == null || future.isDone()) {
+                return false;
+            }
+            try {
+                V result = c.call();
+                if (period != 0) {
+                    return true;
+                }
+                future.complete(result);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+            finish();
+            return false;
+        }
+
+        /**
+         * Releases the task body and unregisters the task.
+         */
+        private void finish() {
+            callable = null;
+            tasks.remove(this);
+        }
+
+        /**
+         * Runs the task once on the current thread, as required by {@link Runnable}.
+         */
+        @Override
+        public void run() {
+            runOnce();
+        }
+
+        boolean isPeriodic() {
+            return period != 0;
+        }
+
+        @Override
+        public long getDelay(@NotNull TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(@NotNull Delayed o) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = future.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                finish();
+                checkTerminated();
+            }
+            return cancelled;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return future.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return future.isDone();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            return future.get();
+        }
+
+        @Override
+        public V get(long timeout, @NotNull TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return future.get(timeout, unit);
+        }
+    }
+
+    /**
+     * The process-wide thread which sleeps until the earliest deadline of all schedulers, then requests a tick.
+     * <p>
+     * It is started lazily, and parks indefinitely while no scheduler has pending tasks.
+     */
+    private static final class Ticker implements Runnable {
+        private static final Set<WebviewScheduler> schedulers = ConcurrentHashMap.newKeySet();
+        private static volatile Thread thread;
+
+        /**
+         * Registers a scheduler with pending tasks, and wakes the ticker so it accounts for its deadline.
+         *
+         * @param scheduler the scheduler to watch.
+         */
+        static void wake(WebviewScheduler scheduler) {
+            if (scheduler.nextDeadline.get() == Long.MAX_VALUE) {
+                return;
+            }
+            schedulers.add(scheduler);
+            Thread t = thread;
+            if (t == null) {
+                t = start();
+            }
+            LockSupport.unpark(t);
+        }
+
+        /**
+         * Stops watching a scheduler.
+         *
+         * @param scheduler the scheduler to forget.
+         */
+        static void forget(WebviewScheduler scheduler) {
+            schedulers.remove(scheduler);
+        }
+
+        private static synchronized Thread start() {
+            if (thread == null) {
+                Thread t = new Thread(new Ticker(), "webview-scheduler-ticker");
+                t.setDaemon(true);
+                t.start();
+                thread = t;
+            }
+            return thread;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                long now = System.nanoTime();
+                long earliest = Long.MAX_VALUE;
+                for (WebviewScheduler scheduler : schedulers) {
+                    long deadline = scheduler.nextDeadline.get();
+                    if (deadline == Long.MAX_VALUE) {
+                        schedulers.remove(scheduler);
+                        // Re-check, in case a task was scheduled in the meantime.
+                        if (scheduler.nextDeadline.get() != Long.MAX_VALUE) {
+                            schedulers.add(scheduler);
+                        }
+                        continue;
+                    }
+                    if (scheduler.tickQueued.get()) {
+                        continue;
+                    }
+                    if (deadline - now <= 0) {
+                        scheduler.requestTick();
+                    } else if (earliest == Long.MAX_VALUE || deadline - earliest < 0) {
+                        earliest = deadline;
+                    }
+                }
+
+                if (earliest == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, earliest - now);
+                }
+            }
+        }
+    }
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final int WHEEL_SIZE = 512;
+
+    private static final long WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private static final String ERROR_SHUTDOWN = "Webview scheduler has been shut down.";
+
+    private static final String ERROR_TICK = "Failed to dispatch webview scheduler tick.";
+}
@@ -0,0 +1,22 @@
+package net.notjustanna.webview;
+
+/**
+ * Completes the future returned by {@link WebviewCore#evaluateAsync(String)} when the script throws,
+ * or when its promise rejects.
+ * <p>
+ * The message is the JavaScript error stack if available, or its string conversion otherwise.
+ *
+ * @author Anna Silva
+ */
+public class WebviewScriptException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new script exception.
+     *
+     * @param message the JavaScript error, as a string.
+     */
+    public WebviewScriptException(String message) {
+        super(message);
+    }
+}
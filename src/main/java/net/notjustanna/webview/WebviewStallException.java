@@ -0,0 +1,44 @@
+package net.notjustanna.webview;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Reported by the {@link WebviewWatchdog} when the webview thread has been busy for longer than its threshold.
+ * <p>
+ * The stack trace of this exception is the stack of the webview thread at the time the stall was detected,
+ * so it points at the code holding the thread, not at the watchdog.
+ *
+ * @author Anna Silva
+ */
+@Getter
+public class WebviewStallException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * What was running on the webview thread: {@code binding:<name>} for bound functions,
+     * {@code task:<class>} for dispatched tasks, or {@code event-loop} if the thread was busy
+     * outside any known task, such as inside native code.
+     */
+    private final String origin;
+
+    /**
+     * How long the webview thread had been busy when the stall was detected.
+     */
+    private final Duration duration;
+
+    /**
+     * Creates a new stall report.
+     *
+     * @param origin   what was running on the webview thread.
+     * @param duration how long it had been running.
+     * @param stack    the stack of the webview thread.
+     */
+    public WebviewStallException(String origin, Duration duration, StackTraceElement[] stack) {
+        super("Webview thread stalled for " + duration.toMillis() + " ms in " + origin, null, false, true);
+        this.origin = origin;
+        this.duration = duration;
+        setStackTrace(stack);
+    }
+}
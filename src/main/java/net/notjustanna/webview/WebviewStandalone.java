@@ -165,6 +165,20 @@ public class WebviewStandalone implements Closeable, Runnable {
         return this;
     }
 
+    /**
+     * Evaluates a JavaScript script in the webview, on the given dispatcher priority lane.
+     *
+     * @param script   The script to be evaluated.
+     * @param priority The lane to dispatch the evaluation on.
+     * @return Itself for chaining.
+     * @implNote The script is dispatched to the webview thread, so it is safe to call this from any thread.
+     * Also, this means that the script is executed asynchronously.
+     */
+    public WebviewStandalone evaluate(@NotNull String script, @NotNull DispatchPriority priority) {
+        webview.evaluate(script, priority);
+        return this;
+    }
+
     /**
      * Sets the initial script to be executed when the webview is created.
      *
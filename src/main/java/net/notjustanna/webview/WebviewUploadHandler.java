@@ -0,0 +1,36 @@
+package net.notjustanna.webview;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Handler of uploads to a function bound by {@link WebviewCore#bindUpload(String, WebviewUploadHandler)}.
+ * <p>
+ * Runs on its own thread, as soon as the first chunk arrives, while the rest of the upload is still
+ * being sent. The webview thread is never blocked by the handler.
+ *
+ * @author Anna Silva
+ */
+@FunctionalInterface
+public interface WebviewUploadHandler {
+    /**
+     * Handles an upload.
+     *
+     * @param in The uploaded bytes. Strings and JSON values are uploaded as UTF-8.
+     * @return The JSON result the JavaScript promise resolves to, or {@code null} for {@code null}.
+     * @throws Exception If the upload failed. The JavaScript promise is rejected with {@link #errorToJson(Throwable)}.
+     */
+    @Nullable
+    String handle(@NotNull WebviewInputStream in) throws Exception;
+
+    /**
+     * Converts an error thrown by {@link #handle(WebviewInputStream)} into the JSON the JavaScript promise is rejected with.
+     *
+     * @param e The error.
+     * @return The JSON error. By default, the string representation of the error.
+     */
+    @NotNull
+    default String errorToJson(@NotNull Throwable e) {
+        return JsEncoder.string(String.valueOf(e));
+    }
+}
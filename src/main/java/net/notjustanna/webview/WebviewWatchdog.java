@@ -0,0 +1,248 @@
+package net.notjustanna.webview;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+import net.notjustanna.webview.metrics.Histogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+/**
+ * Detects stalls of the webview thread, and measures the lag of its event loop.
+ * <p>
+ * The watchdog runs on its own daemon thread. Periodically, it sends a heartbeat through the
+ * {@link WebviewDispatcher}, and records how long it took to run: that is the event loop lag.
+ * It also watches the task or binding currently running on the webview thread. Whenever one runs
+ * for longer than the threshold, or a heartbeat stays pending for longer than the threshold,
+ * the stack of the webview thread is captured and reported to the dispatcher's error handler as
+ * a {@link WebviewStallException}. Each stall is reported once.
+ * <p>
+ * Enable it with {@link WebviewDispatcher#startWatchdog(Duration)}, or for every webview by setting
+ * the {@code webview.watchdog.threshold} system property to a threshold in milliseconds.
+ *
+ * @author Anna Silva
+ * @implNote Stalls are reported on the watchdog thread, not on the webview thread.
+ */
+@Log
+public class WebviewWatchdog {
+    private final WeakReference<WebviewDispatcher> dispatcherRef;
+    private final WeakReference<Thread> threadRef;
+    private final Runnable heartbeat = this::onHeartbeat;
+    private final Thread watcher;
+
+    /**
+     * The stall threshold, in nanoseconds.
+     */
+    private final long thresholdNanos;
+
+    /**
+     * Event loop lag, in nanoseconds, measured by heartbeats.
+     */
+    @Getter
+    private final Histogram lagHistogram = new Histogram();
+
+    private final LongAdder stallCount = new LongAdder();
+
+    private volatile boolean stopped;
+
+    /**
+     * Start time of the task running on the webview thread, or {@code 0} if idle.
+     */
+    private volatile long taskStart;
+
+    /**
+     * What the running task is, as given to {@link #enter(Object)}.
+     */
+    private volatile Object taskOrigin;
+
+    /**
+     * Incremented each time a task starts, so stalls are only reported once per task.
+     */
+    private volatile long taskSequence;
+
+    /**
+     * When the pending heartbeat was sent, or {@code 0} if none is pending.
+     */
+    private volatile long heartbeatSent;
+
+    /**
+     * Whether a heartbeat ever ran, meaning the event loop is running. Until then, pending heartbeats aren't stalls.
+     */
+    private volatile boolean alive;
+
+    // Only accessed by the watcher thread.
+    private long reportedTask = -1;
+    private long reportedHeartbeat;
+
+    WebviewWatchdog(WebviewDispatcher dispatcher, WeakReference<Thread> threadRef, Duration threshold) {
+        this.dispatcherRef = new WeakReference<>(dispatcher);
+        this.threadRef = threadRef;
+        this.thresholdNanos = Math.max(1, threshold.toNanos());
+        this.watcher = new Thread(this::watch, "webview-watchdog");
+        this.watcher.setDaemon(true);
+    }
+
+    /**
+     * Returns the stall threshold.
+     *
+     * @return The threshold.
+     */
+    public @NotNull Duration getThreshold() {
+        return Duration.ofNanos(thresholdNanos);
+    }
+
+    /**
+     * Returns how many stalls were reported.
+     *
+     * @return The number of stalls.
+     */
+    public long getStallCount() {
+        return stallCount.sum();
+    }
+
+    /**
+     * Checks whether the watchdog was stopped.
+     *
+     * @return {@code true} if stopped, {@code false} otherwise.
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    void start() {
+        watcher.start();
+    }
+
+    /**
+     * Stops the watchdog. Its thread exits shortly after.
+     */
+    void stop() {
+        stopped = true;
+        LockSupport.unpark(watcher);
+    }
+
+    /**
+     * Marks the start of a task on the webview thread.
+     * <p>
+     * Nested tasks, such as tasks run inline by a task, are part of the outer task.
+     *
+     * @param origin the task, or a {@code String} describing it.
+     * @return {@code true} if this is an outer task, which must be matched by {@link #exit()}.
+     */
+    boolean enter(Object origin) {
+        if (taskStart != 0) {
+            return false;
+        }
+        taskOrigin = origin;
+        taskSequence++;
+        taskStart = System.nanoTime();
+        return true;
+    }
+
+    /**
+     * Marks the end of the task started by {@link #enter(Object)}.
+     */
+    void exit() {
+        taskStart = 0;
+        taskOrigin = null;
+    }
+
+    private void onHeartbeat() {
+        long sent = heartbeatSent;
+        if (sent != 0) {
+            lagHistogram.record(System.nanoTime() - sent);
+            heartbeatSent = 0;
+            alive = true;
+        }
+    }
+
+    private void watch() {
+        long interval = Math.max(CHECK_INTERVAL_MIN, thresholdNanos / 4);
+        while (!stopped) {
+            WebviewDispatcher dispatcher = dispatcherRef.get();
+            if (dispatcher == null || dispatcher.isTerminated()) {
+                return;
+            }
+
+            long now = System.nanoTime();
+            if (heartbeatSent == 0) {
+                heartbeatSent = now;
+                try {
+                    dispatcher.signal(heartbeat);
+                } catch (RuntimeException e) {
+                    // The webview no longer takes dispatches, so there's nothing left to watch.
+                    if (!dispatcher.isTerminated()) {
+                        log.log(Level.WARNING, WARN_HEARTBEAT_FAILED, e);
+                    }
+                    stopped = true;
+                    return;
+                }
+            }
+
+            checkTask(dispatcher, now);
+            checkHeartbeat(dispatcher, now);
+
+            dispatcher = null;
+            LockSupport.parkNanos(this, interval);
+        }
+    }
+
+    private void checkTask(WebviewDispatcher dispatcher, long now) {
+        long sequence = taskSequence;
+        long start = taskStart;
+        Object origin = taskOrigin;
+        if (start == 0 || sequence == reportedTask || sequence != taskSequence || now - start < thresholdNanos) {
+            return;
+        }
+        reportedTask = sequence;
+        // A heartbeat stuck behind this task is the same stall.
+        reportedHeartbeat = heartbeatSent;
+        report(dispatcher, describe(origin), now - start);
+    }
+
+    private void checkHeartbeat(WebviewDispatcher dispatcher, long now) {
+        long sent = heartbeatSent;
+        if (!alive || sent == 0 || sent == reportedHeartbeat || now - sent < thresholdNanos || taskStart != 0) {
+            return;
+        }
+        reportedHeartbeat = sent;
+        report(dispatcher, "event-loop", now - sent);
+    }
+
+    private void report(WebviewDispatcher dispatcher, String origin, long nanos) {
+        Thread thread = threadRef.get();
+        if (thread == null) {
+            return;
+        }
+        stallCount.increment();
+        WebviewStallException stall = new WebviewStallException(origin, Duration.ofNanos(nanos), thread.getStackTrace());
+        try {
+            dispatcher.reportError(stall);
+        } catch (Exception e) {
+            log.log(Level.WARNING, WARN_HANDLER_FAILED, e);
+        }
+    }
+
+    private static String describe(Object origin) {
+        if (origin instanceof String) {
+            return (String) origin;
+        }
+        if (origin instanceof Runnable) {
+            return "task:" + WebviewDispatcher.describeTask((Runnable) origin);
+        }
+        return "event-loop";
+    }
+
+    /**
+     * Shortest interval between two checks, in nanoseconds.
+     */
+    private static final long CHECK_INTERVAL_MIN = 1_000_000;
+
+    private static final String WARN_HANDLER_FAILED = "Error handler failed to handle a webview stall.";
+
+    private static final String WARN_HEARTBEAT_FAILED = "Failed to send a heartbeat to the webview thread, stopping the watchdog.";
+}
@@ -0,0 +1,129 @@
+package net.notjustanna.webview.assets;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A resolved asset: a file, served with {@link FileChannel#transferTo}, a slice of an {@link AssetBundle},
+ * or a classpath resource.
+ *
+ * @author Anna Silva
+ */
+final class Asset {
+    /**
+     * The file of the asset, or {@code null} if it is a classpath resource.
+     */
+    final Path file;
+
+    /**
+     * The contents of the asset, if it comes from a bundle.
+     */
+    final ByteBuffer buffer;
+
+    /**
+     * The classpath resource of the asset, if it is one.
+     */
+    final URL resource;
+
+    final long length;
+    final long lastModified;
+
+    private Asset(Path file, ByteBuffer buffer, URL resource, long length, long lastModified) {
+        this.file = file;
+        this.buffer = buffer;
+        this.resource = resource;
+        this.length = length;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Resolves a regular file.
+     *
+     * @param file the file.
+     * @return The asset, or {@code null} if the file doesn't exist or isn't a regular file.
+     */
+    static Asset ofFile(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            return new Asset(file, null, null, attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Wraps the contents of a bundled asset.
+     *
+     * @param buffer       the contents.
+     * @param lastModified the modification time of the asset.
+     * @return The asset.
+     */
+    static Asset ofBuffer(ByteBuffer buffer, long lastModified) {
+        return new Asset(null, buffer, null, buffer.remaining(), lastModified);
+    }
+
+    /**
+     * Resolves a classpath resource. Resources backed by files are resolved as files.
+     *
+     * @param resource the resource, may be null.
+     * @return The asset, or {@code null} if the resource doesn't exist or its size is unknown.
+     */
+    static Asset ofResource(URL resource) {
+        if (resource == null) {
+            return null;
+        }
+        if ("file".equals(resource.getProtocol())) {
+            try {
+                return ofFile(Path.of(resource.toURI()));
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        try {
+            URLConnection connection = resource.openConnection();
+            connection.setUseCaches(false);
+            long length = connection.getContentLengthLong();
+            long lastModified = connection.getLastModified();
+            // Opened to read the metadata, which opened the stream on some protocols.
+            connection.getInputStream().close();
+            return length < 0 ? null : new Asset(null, null, resource, length, lastModified);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Opens the file of the asset. Only valid for files.
+     */
+    FileChannel openChannel() throws IOException {
+        return FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    /**
+     * Opens the classpath resource of the asset. Only valid for resources.
+     */
+    InputStream openStream() throws IOException {
+        URLConnection connection = resource.openConnection();
+        connection.setUseCaches(false);
+        return connection.getInputStream();
+    }
+
+    /**
+     * A weak entity tag, derived from the size and modification time of the asset.
+     */
+    String etag(String encoding) {
+        String suffix = encoding == null ? "" : "-" + encoding;
+        return "W/\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + suffix + "\"";
+    }
+}
@@ -0,0 +1,217 @@
+package net.notjustanna.webview.assets;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only bundle of assets, stored in a single memory-mapped file.
+ * <p>
+ * Bundles are written by {@link AssetBundleWriter}. They start with a fixed-size index of the assets,
+ * sorted by path, followed by the paths and the contents of the assets, stored back to back. Looking up
+ * an asset is a binary search over the mapped index, and its contents are a slice of the mapping, so
+ * serving it never copies it into the heap. The mapping is released once the bundle is garbage collected.
+ * <p>
+ * Format, all integers big-endian:
+ * <pre>
+ * header:  magic "WVAB" | version (int) | entry count (int) | reserved (int)
+ * index:   entry count times: path offset (int) | path length (int) | data offset (long) | data length (long) | last modified (long)
+ * paths:   UTF-8 paths, back to back, sorted as unsigned bytes
+ * data:    contents, back to back, each starting on an 8-byte boundary
+ * </pre>
+ * Every entry is checked to lie within the file when the bundle is opened, so a corrupt or truncated
+ * bundle fails to open rather than failing lookups later.
+ * Precompressed variants are stored as separate assets, named after the asset with a {@code .gz} or
+ * {@code .br} suffix, and served in its place by {@link WebviewAssetServer#addBundle(AssetBundle)}.
+ *
+ * @author Anna Silva
+ */
+public final class AssetBundle {
+    private final MappedByteBuffer mapping;
+    private final int count;
+
+    private AssetBundle(MappedByteBuffer mapping) throws IOException {
+        this.mapping = mapping;
+        if (mapping.limit() < HEADER_SIZE || mapping.getInt(0) != MAGIC) {
+            throw new IOException(ERROR_NOT_A_BUNDLE);
+        }
+        if (mapping.getInt(4) != VERSION) {
+            throw new IOException(ERROR_UNSUPPORTED_VERSION + mapping.getInt(4));
+        }
+        this.count = mapping.getInt(8);
+        if (count < 0 || HEADER_SIZE + (long) count * ENTRY_SIZE > mapping.limit()) {
+            throw new IOException(ERROR_NOT_A_BUNDLE);
+        }
+        long indexEnd = HEADER_SIZE + (long) count * ENTRY_SIZE;
+        long limit = mapping.limit();
+        for (int i = 0; i < count; i++) {
+            int entry = entry(i);
+            long pathOffset = mapping.getInt(entry);
+            long pathLength = mapping.getInt(entry + 4);
+            long dataOffset = mapping.getLong(entry + 8);
+            long dataLength = mapping.getLong(entry + 16);
+            if (pathOffset < indexEnd || pathLength < 0 || pathOffset + pathLength > limit
+                || dataOffset < indexEnd || dataLength < 0 || dataOffset > limit || dataLength > limit - dataOffset) {
+                throw new IOException(ERROR_CORRUPT_ENTRY + i);
+            }
+        }
+    }
+
+    /**
+     * Opens a bundle file.
+     *
+     * @param file The bundle file.
+     * @return The bundle.
+     * @throws IOException if the file couldn't be mapped, or isn't a bundle.
+     */
+    public static AssetBundle open(@NotNull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(ERROR_TOO_LARGE);
+            }
+            // The mapping stays valid after the channel is closed.
+            return new AssetBundle(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Opens a bundle shipped as a classpath resource.
+     * <p>
+     * Resources inside jars can't be mapped, so the bundle is copied once to a temporary file, deleted on exit.
+     *
+     * @param name   The resource name.
+     * @param loader The class loader to load the resource from.
+     * @return The bundle.
+     * @throws IOException if the resource doesn't exist, couldn't be copied, or isn't a bundle.
+     */
+    public static AssetBundle openResource(@NotNull String name, @NotNull ClassLoader loader) throws IOException {
+        try (InputStream in = loader.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException(ERROR_RESOURCE_NOT_FOUND + name);
+            }
+            Path file = Files.createTempFile("webview-assets", ".wvab");
+            file.toFile().deleteOnExit();
+            Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+            return open(file);
+        }
+    }
+
+    /**
+     * @return The number of assets in the bundle, including precompressed variants.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the contents of an asset.
+     *
+     * @param path The path of the asset, relative to the root of the bundle, such as {@code index.html}.
+     * @return A read-only slice of the mapping, or {@code null} if there's no such asset.
+     */
+    public @Nullable ByteBuffer get(@NotNull String path) {
+        int index = indexOf(path);
+        return index < 0 ? null : slice(index);
+    }
+
+    /**
+     * Returns the contents of an asset, decoded as UTF-8.
+     *
+     * @param path The path of the asset.
+     * @return The contents, or {@code null} if there's no such asset.
+     */
+    public @Nullable String getString(@NotNull String path) {
+        ByteBuffer buffer = get(path);
+        return buffer == null ? null : StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+
+    /**
+     * Resolves an asset for the asset server.
+     */
+    Asset resolve(String path) {
+        int index = indexOf(path);
+        if (index < 0) {
+            return null;
+        }
+        return Asset.ofBuffer(slice(index), mapping.getLong(entry(index) + 24));
+    }
+
+    private ByteBuffer slice(int index) {
+        int entry = entry(index);
+        long offset = mapping.getLong(entry + 8);
+        long length = mapping.getLong(entry + 16);
+        return mapping.duplicate().position((int) offset).limit((int) (offset + length)).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Binary search of the index.
+     *
+     * @return The index of the asset, or {@code -1} if there's no such asset.
+     */
+    private int indexOf(String path) {
+        byte[] key = path.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the path of an entry to a key, as unsigned bytes.
+     */
+    private int compare(int index, byte[] key) {
+        int entry = entry(index);
+        int offset = mapping.getInt(entry);
+        int length = mapping.getInt(entry + 4);
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Integer.compare(mapping.get(offset + i) & 0xFF, key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private static int entry(int index) {
+        return HEADER_SIZE + index * ENTRY_SIZE;
+    }
+
+    static final int MAGIC = 0x57564142; // "WVAB"
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 16;
+
+    static final int ENTRY_SIZE = 32;
+
+    private static final String ERROR_NOT_A_BUNDLE = "Not an asset bundle.";
+
+    private static final String ERROR_CORRUPT_ENTRY = "Corrupt or truncated asset bundle, at entry ";
+
+    private static final String ERROR_UNSUPPORTED_VERSION = "Unsupported asset bundle version: ";
+
+    private static final String ERROR_TOO_LARGE = "Asset bundles are limited to 2 GiB.";
+
+    private static final String ERROR_RESOURCE_NOT_FOUND = "Asset bundle resource not found: ";
+}
@@ -0,0 +1,196 @@
+package net.notjustanna.webview.assets;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes {@link AssetBundle}s from a directory of assets.
+ * <p>
+ * Can be run from the command line, as done by the {@code assetBundle} Gradle task of this build:
+ * <pre>
+ * java net.notjustanna.webview.assets.AssetBundleWriter &lt;input directory&gt; &lt;output file&gt; [--gzip]
+ * </pre>
+ * With {@code --gzip}, a {@code .gz} variant is added for text assets which compress well, unless the
+ * directory already has one. Precompressed {@code .br} files found in the directory are bundled as is.
+ *
+ * @author Anna Silva
+ */
+public final class AssetBundleWriter {
+    private AssetBundleWriter() {
+    }
+
+    /**
+     * Command line entry point.
+     *
+     * @param args the input directory, the output file, and optionally {@code --gzip}.
+     * @throws IOException if the bundle couldn't be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3 || (args.length == 3 && !args[2].equals("--gzip"))) {
+            System.err.println("Usage: AssetBundleWriter <input directory> <output file> [--gzip]");
+            System.exit(2);
+            return;
+        }
+        Path input = Path.of(args[0]);
+        Path output = Path.of(args[1]);
+        int count = write(input, output, args.length == 3);
+        System.out.println("Bundled " + count + " assets from " + input + " into " + output + " (" + Files.size(output) + " bytes)");
+    }
+
+    /**
+     * Writes a bundle of every regular file in a directory, recursively.
+     *
+     * @param input      The directory of assets.
+     * @param output     The bundle file to write, replaced if it exists.
+     * @param precompress Whether to add {@code .gz} variants of compressible assets.
+     * @return The number of assets written, including precompressed variants.
+     * @throws IOException if a file couldn't be read, or the bundle couldn't be written.
+     */
+    public static int write(@NotNull Path input, @NotNull Path output, boolean precompress) throws IOException {
+        Path root = input.toAbsolutePath().normalize();
+        List<Entry> entries = new ArrayList<>();
+        Set<String> paths = new HashSet<>();
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                String path = root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                entries.add(new Entry(path, file, null, Files.size(file), Files.getLastModifiedTime(file).toMillis()));
+                paths.add(path);
+            }
+        }
+
+        if (precompress) {
+            List<Entry> variants = new ArrayList<>();
+            for (Entry entry : entries) {
+                if (!isCompressible(entry.path) || paths.contains(entry.path + ".gz")) {
+                    continue;
+                }
+                byte[] compressed = gzip(Files.readAllBytes(entry.file));
+                // Not worth a variant unless it saves at least a tenth.
+                if (compressed.length < entry.length * 9 / 10) {
+                    variants.add(new Entry(entry.path + ".gz", null, compressed, compressed.length, entry.lastModified));
+                }
+            }
+            entries.addAll(variants);
+        }
+
+        entries.sort((a, b) -> Arrays.compareUnsigned(a.pathBytes, b.pathBytes));
+
+        long pathsOffset = AssetBundle.HEADER_SIZE + (long) entries.size() * AssetBundle.ENTRY_SIZE;
+        long dataOffset = pathsOffset;
+        for (Entry entry : entries) {
+            dataOffset += entry.pathBytes.length;
+        }
+        // Aligns each content, so slices of the mapping start on a word boundary.
+        dataOffset = align(dataOffset);
+
+        ByteBuffer head = ByteBuffer.allocate((int) dataOffset);
+        head.putInt(AssetBundle.MAGIC).putInt(AssetBundle.VERSION).putInt(entries.size()).putInt(0);
+        long pathOffset = pathsOffset;
+        long contentOffset = dataOffset;
+        for (Entry entry : entries) {
+            head.putInt((int) pathOffset).putInt(entry.pathBytes.length)
+                .putLong(contentOffset).putLong(entry.length).putLong(entry.lastModified);
+            pathOffset += entry.pathBytes.length;
+            contentOffset = align(contentOffset + entry.length);
+        }
+        if (contentOffset > Integer.MAX_VALUE) {
+            throw new IOException("Asset bundles are limited to 2 GiB.");
+        }
+        for (Entry entry : entries) {
+            head.put(entry.pathBytes);
+        }
+        head.position(head.capacity()).flip();
+
+        Path parent = output.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, head);
+            for (Entry entry : entries) {
+                writeFully(out, ByteBuffer.allocate((int) (align(out.position()) - out.position())));
+                if (entry.content != null) {
+                    writeFully(out, ByteBuffer.wrap(entry.content));
+                    continue;
+                }
+                try (FileChannel in = FileChannel.open(entry.file, StandardOpenOption.READ)) {
+                    long position = 0;
+                    while (position < entry.length) {
+                        long n = in.transferTo(position, entry.length - position, out);
+                        if (n <= 0) {
+                            throw new IOException("File changed while bundling: " + entry.file);
+                        }
+                        position += n;
+                    }
+                }
+            }
+        }
+        return entries.size();
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static boolean isCompressible(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot >= 0 && COMPRESSIBLE.contains(path.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 2);
+        try (OutputStream out = new GZIPOutputStream(bytes) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * An asset to bundle, read from a file or held in memory.
+     */
+    private static final class Entry {
+        private final String path;
+        private final byte[] pathBytes;
+        private final Path file;
+        private final byte[] content;
+        private final long length;
+        private final long lastModified;
+
+        private Entry(String path, Path file, byte[] content, long length, long lastModified) {
+            this.path = path;
+            this.pathBytes = path.getBytes(StandardCharsets.UTF_8);
+            this.file = file;
+            this.content = content;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static final Set<String> COMPRESSIBLE = Set.of(
+        "html", "htm", "js", "mjs", "css", "json", "map", "txt", "xml", "svg", "wasm", "ttf", "otf", "ico"
+    );
+}
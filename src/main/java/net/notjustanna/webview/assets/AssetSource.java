@@ -0,0 +1,53 @@
+package net.notjustanna.webview.assets;
+
+import java.nio.file.Path;
+
+/**
+ * Where a {@link WebviewAssetServer} looks for assets.
+ *
+ * @author Anna Silva
+ */
+interface AssetSource {
+    /**
+     * Resolves an asset.
+     *
+     * @param path the normalized path of the asset, relative and without {@code ..} segments.
+     * @return The asset, or {@code null} if this source doesn't have it.
+     */
+    Asset resolve(String path);
+
+    /**
+     * Assets served from a directory.
+     *
+     * @param root the directory.
+     * @return The source.
+     */
+    static AssetSource directory(Path root) {
+        Path base = root.toAbsolutePath().normalize();
+        return path -> {
+            Path file = base.resolve(path).normalize();
+            return file.startsWith(base) ? Asset.ofFile(file) : null;
+        };
+    }
+
+    /**
+     * Assets served from a bundle.
+     *
+     * @param bundle the bundle.
+     * @return The source.
+     */
+    static AssetSource bundle(AssetBundle bundle) {
+        return bundle::resolve;
+    }
+
+    /**
+     * Assets served from classpath resources.
+     *
+     * @param prefix the resource prefix, such as {@code web/}.
+     * @param loader the class loader to load resources from.
+     * @return The source.
+     */
+    static AssetSource classpath(String prefix, ClassLoader loader) {
+        return path -> Asset.ofResource(loader.getResource(prefix + path));
+    }
+}
@@ -0,0 +1,559 @@
+package net.notjustanna.webview.assets;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+import net.notjustanna.webview.natives.JvmHelper;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+
+/**
+ * A local HTTP server serving the assets of a page, such as a single-page app, to the webview.
+ * <p>
+ * Binds to {@code 127.0.0.1} on a random port, and only serves requests under an unguessable token,
+ * so other local processes and other pages can't read the assets. Assets are looked up, in order, in
+ * the directories and classpath prefixes added to the server.
+ * <ul>
+ *     <li>Files are sent with {@link FileChannel#transferTo}, and {@link AssetBundle bundled} assets straight
+ *     from their mapping, without copying them through the heap.</li>
+ *     <li>If the page accepts it, a precompressed {@code .br} or {@code .gz} variant next to an asset is
+ *     served in its place.</li>
+ *     <li>Responses carry an {@code ETag} and a configurable {@code Cache-Control}, and conditional
+ *     requests are answered with {@code 304 Not Modified}.</li>
+ * </ul>
+ * <pre>{@code
+ * WebviewAssetServer assets = new WebviewAssetServer()
+ *     .addDirectory(Path.of("dist"))
+ *     .addClasspath("web/")
+ *     .start();
+ * webview.navigate(assets, "index.html");
+ * }</pre>
+ *
+ * @author Anna Silva
+ */
+@Log
+public class WebviewAssetServer implements Closeable {
+    private final List<AssetSource> sources = new CopyOnWriteArrayList<>();
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The secret path prefix every request must start with.
+     */
+    private final String token = newToken();
+
+    /**
+     * The {@code Cache-Control} header of responses. Defaults to {@code no-cache}, so pages always
+     * revalidate their assets, which is cheap thanks to {@code ETag}s.
+     */
+    @Getter
+    private volatile String cacheControl = "no-cache";
+
+    private ServerSocketChannel server;
+    private ExecutorService executor;
+
+    /**
+     * The base URL of the server, ending with a slash, or {@code null} if not started.
+     */
+    @Getter
+    private volatile String baseUrl;
+
+    /**
+     * Serves assets from a directory.
+     *
+     * @param root The directory.
+     * @return Itself for chaining.
+     */
+    public WebviewAssetServer addDirectory(@NotNull Path root) {
+        sources.add(AssetSource.directory(root));
+        return this;
+    }
+
+    /**
+     * Serves assets from a memory-mapped bundle, written by {@link AssetBundleWriter}.
+     *
+     * @param bundle The bundle.
+     * @return Itself for chaining.
+     */
+    public WebviewAssetServer addBundle(@NotNull AssetBundle bundle) {
+        sources.add(AssetSource.bundle(bundle));
+        return this;
+    }
+
+    /**
+     * Serves assets from classpath resources, loaded by the context class loader of the current thread.
+     *
+     * @param prefix The resource prefix, such as {@code web/}.
+     * @return Itself for chaining.
+     */
+    public WebviewAssetServer addClasspath(@NotNull String prefix) {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        return addClasspath(prefix, loader == null ? WebviewAssetServer.class.getClassLoader() : loader);
+    }
+
+    /**
+     * Serves assets from classpath resources.
+     *
+     * @param prefix The resource prefix, such as {@code web/}.
+     * @param loader The class loader to load resources from.
+     * @return Itself for chaining.
+     */
+    public WebviewAssetServer addClasspath(@NotNull String prefix, @NotNull ClassLoader loader) {
+        String normalized = prefix.startsWith("/") ? prefix.substring(1) : prefix;
+        if (!normalized.isEmpty() && !normalized.endsWith("/")) {
+            normalized += "/";
+        }
+        sources.add(AssetSource.classpath(normalized, loader));
+        return this;
+    }
+
+    /**
+     * Sets the {@code Cache-Control} header of responses.
+     *
+     * @param cacheControl The header value, such as {@code max-age=3600}.
+     * @return Itself for chaining.
+     */
+    public WebviewAssetServer setCacheControl(@NotNull String cacheControl) {
+        this.cacheControl = cacheControl;
+        return this;
+    }
+
+    /**
+     * Starts the server, if not started yet.
+     *
+     * @return Itself for chaining.
+     * @throws IOException if the server couldn't bind.
+     */
+    public synchronized WebviewAssetServer start() throws IOException {
+        if (server != null) {
+            return this;
+        }
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        // Not InetAddress.getLoopbackAddress(), which is ::1 when IPv6 addresses are preferred.
+        channel.bind(new InetSocketAddress(LOOPBACK, 0));
+        int port = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+        server = channel;
+        executor = JvmHelper.newVirtualThreadExecutor("webview-assets");
+        baseUrl = "http://" + LOOPBACK + ":" + port + "/" + token + "/";
+
+        Thread acceptor = new Thread(this::acceptLoop, "webview-assets-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return this;
+    }
+
+    /**
+     * Returns the URL of an asset.
+     *
+     * @param path The path of the asset, relative to the roots of the server.
+     * @return The URL, to be passed to {@link net.notjustanna.webview.WebviewCore#navigate(String)}.
+     * @throws IllegalStateException if the server wasn't started.
+     */
+    public String url(@NotNull String path) {
+        String base = baseUrl;
+        if (base == null) {
+            throw new IllegalStateException(ERROR_NOT_STARTED);
+        }
+        return base + (path.startsWith("/") ? path.substring(1) : path);
+    }
+
+    /**
+     * Stops the server, closing every open connection.
+     */
+    @Override
+    public synchronized void close() {
+        if (server == null) {
+            return;
+        }
+        try {
+            server.close();
+        } catch (IOException e) {
+            log.log(Level.FINE, "Failed to close the asset server socket.", e);
+        }
+        for (SocketChannel connection : connections) {
+            closeQuietly(connection);
+        }
+        executor.shutdown();
+        server = null;
+        baseUrl = null;
+    }
+
+    private void acceptLoop() {
+        ServerSocketChannel channel = server;
+        while (channel.isOpen()) {
+            SocketChannel connection;
+            try {
+                connection = channel.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (Exception e) {
+                log.log(Level.WARNING, WARN_ACCEPT, e);
+                continue;
+            }
+            connections.add(connection);
+            try {
+                executor.execute(() -> serve(connection));
+            } catch (RejectedExecutionException e) {
+                // The server is closing, and its executor no longer takes connections.
+                connections.remove(connection);
+                closeQuietly(connection);
+            }
+        }
+    }
+
+    /**
+     * Serves requests on a connection until it is closed.
+     */
+    private void serve(SocketChannel connection) {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_HEADER_SIZE);
+        try {
+            while (true) {
+                Request request = Request.read(connection, buffer);
+                if (request == null) {
+                    return;
+                }
+                if (!respond(connection, request) || request.close) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            log.log(Level.FINE, "Asset server connection failed.", e);
+        } finally {
+            connections.remove(connection);
+            closeQuietly(connection);
+        }
+    }
+
+    /**
+     * Answers a request.
+     *
+     * @return {@code false} if the connection must be closed.
+     */
+    private boolean respond(SocketChannel connection, Request request) throws IOException {
+        boolean head = "HEAD".equals(request.method);
+        if (!"GET".equals(request.method) && !head) {
+            return sendStatus(connection, 405, "Method Not Allowed", true);
+        }
+        // Rejects DNS rebinding: only requests addressed to the loopback server itself are served.
+        String host = request.headers.get("host");
+        int port = ((InetSocketAddress) connection.getLocalAddress()).getPort();
+        if (host == null || !(host.equals("127.0.0.1:" + port) || host.equals("localhost:" + port))) {
+            return sendStatus(connection, 403, "Forbidden", true);
+        }
+
+        String path = normalize(request.target);
+        if (path == null) {
+            return sendStatus(connection, 404, "Not Found", false);
+        }
+        if (path.isEmpty() || path.endsWith("/")) {
+            path += "index.html";
+        }
+
+        Asset asset = resolve(path);
+        if (asset == null) {
+            return sendStatus(connection, 404, "Not Found", false);
+        }
+
+        String accept = request.headers.getOrDefault("accept-encoding", "");
+        String encoding = null;
+        Asset body = asset;
+        for (String candidate : PRECOMPRESSED) {
+            Asset variant = accepts(accept, candidate) ? resolve(path + PRECOMPRESSED_SUFFIXES.get(candidate)) : null;
+            if (variant != null) {
+                encoding = candidate;
+                body = variant;
+                break;
+            }
+        }
+
+        String etag = body.etag(encoding);
+        boolean notModified = etag.equals(request.headers.get("if-none-match"));
+
+        StringBuilder headers = new StringBuilder(256)
+            .append(notModified ? "HTTP/1.1 304 Not Modified\r\n" : "HTTP/1.1 200 OK\r\n")
+            .append("Content-Type: ").append(contentType(path)).append("\r\n")
+            .append("ETag: ").append(etag).append("\r\n")
+            .append("Cache-Control: ").append(cacheControl).append("\r\n")
+            .append("Vary: Accept-Encoding\r\n")
+            .append("X-Content-Type-Options: nosniff\r\n");
+        if (body.lastModified > 0) {
+            headers.append("Last-Modified: ").append(HTTP_DATE.format(Instant.ofEpochMilli(body.lastModified))).append("\r\n");
+        }
+        if (encoding != null) {
+            headers.append("Content-Encoding: ").append(encoding).append("\r\n");
+        }
+        headers.append("Content-Length: ").append(notModified ? 0 : body.length).append("\r\n\r\n");
+        writeFully(connection, ByteBuffer.wrap(headers.toString().getBytes(StandardCharsets.ISO_8859_1)));
+
+        if (notModified || head) {
+            return true;
+        }
+        if (body.buffer != null) {
+            writeFully(connection, body.buffer.duplicate());
+        } else if (body.file != null) {
+            try (FileChannel file = body.openChannel()) {
+                long position = 0;
+                while (position < body.length) {
+                    long sent = file.transferTo(position, body.length - position, connection);
+                    if (sent <= 0 && file.size() <= position) {
+                        // Truncated while being sent: the response can't be completed.
+                        return false;
+                    }
+                    position += sent;
+                }
+            }
+        } else {
+            try (InputStream in = body.openStream()) {
+                byte[] chunk = new byte[COPY_BUFFER_SIZE];
+                ByteBuffer wrapper = ByteBuffer.wrap(chunk);
+                long remaining = body.length;
+                int n;
+                while (remaining > 0 && (n = in.read(chunk, 0, (int) Math.min(chunk.length, remaining))) > 0) {
+                    wrapper.clear().limit(n);
+                    writeFully(connection, wrapper);
+                    remaining -= n;
+                }
+                return remaining == 0;
+            }
+        }
+        return true;
+    }
+
+    private Asset resolve(String path) {
+        for (AssetSource source : sources) {
+            Asset asset = source.resolve(path);
+            if (asset != null) {
+                return asset;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Strips the token, the query and the fragment, and decodes the path of a request target.
+     *
+     * @return The relative path, or {@code null} if the token doesn't match or the path is invalid.
+     */
+    private String normalize(String target) {
+        String prefix = "/" + token + "/";
+        if (!target.startsWith(prefix)) {
+            return null;
+        }
+        int end = target.length();
+        int query = target.indexOf('?');
+        if (query >= 0) {
+            end = query;
+        }
+        int fragment = target.indexOf('#');
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+        String path;
+        try {
+            path = URLDecoder.decode(target.substring(prefix.length(), end).replace("+", "%2B"), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (path.indexOf('\\') >= 0 || path.indexOf('\0') >= 0 || path.startsWith("/")) {
+            return null;
+        }
+        for (String segment : path.split("/", -1)) {
+            if (segment.equals("..") || segment.equals(".")) {
+                return null;
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Sends an empty response with the given status.
+     *
+     * @return {@code false} if the connection must be closed.
+     */
+    private static boolean sendStatus(SocketChannel connection, int status, String reason, boolean close) throws IOException {
+        String response = "HTTP/1.1 " + status + " " + reason + "\r\nContent-Length: 0\r\n"
+            + (close ? "Connection: close\r\n\r\n" : "\r\n");
+        writeFully(connection, ByteBuffer.wrap(response.getBytes(StandardCharsets.ISO_8859_1)));
+        return !close;
+    }
+
+    private static boolean accepts(String acceptEncoding, String encoding) {
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (tokens[0].trim().equalsIgnoreCase(encoding)) {
+                return !(tokens.length > 1 && tokens[1].trim().replace(" ", "").matches("q=0(\\.0*)?"));
+            }
+        }
+        return false;
+    }
+
+    private static String contentType(String path) {
+        int dot = path.lastIndexOf('.');
+        String extension = dot < 0 ? "" : path.substring(dot + 1).toLowerCase(Locale.ROOT);
+        String type = CONTENT_TYPES.get(extension);
+        if (type == null) {
+            type = URLConnection.guessContentTypeFromName(path);
+        }
+        return type == null ? "application/octet-stream" : type;
+    }
+
+    private static void writeFully(SocketChannel connection, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            connection.write(buffer);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel connection) {
+        try {
+            connection.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder sb = new StringBuilder(32);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A parsed HTTP request head.
+     */
+    private static final class Request {
+        private String method;
+        private String target;
+        private boolean close;
+        private final Map<String, String> headers = new HashMap<>();
+
+        /**
+         * Reads the next request head from a connection. Request bodies aren't supported, as only
+         * {@code GET} and {@code HEAD} are served.
+         *
+         * @return The request, or {@code null} if the connection was closed or the request is malformed.
+         */
+        static Request read(SocketChannel connection, ByteBuffer buffer) throws IOException {
+            int end;
+            while ((end = headerEnd(buffer)) < 0) {
+                if (!buffer.hasRemaining() || connection.read(buffer) < 0) {
+                    return null;
+                }
+            }
+            String head = new String(buffer.array(), 0, end, StandardCharsets.ISO_8859_1);
+            // Keeps any pipelined bytes following this request.
+            int consumed = end + 4;
+            int leftover = buffer.position() - consumed;
+            System.arraycopy(buffer.array(), consumed, buffer.array(), 0, leftover);
+            buffer.position(leftover);
+
+            String[] lines = head.split("\r\n");
+            String[] requestLine = lines[0].split(" ");
+            if (requestLine.length != 3) {
+                return null;
+            }
+            Request request = new Request();
+            request.method = requestLine[0];
+            request.target = requestLine[1];
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon > 0) {
+                    request.headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT), lines[i].substring(colon + 1).trim());
+                }
+            }
+            String connectionHeader = request.headers.getOrDefault("connection", "");
+            request.close = requestLine[2].equals("HTTP/1.0")
+                ? !connectionHeader.equalsIgnoreCase("keep-alive")
+                : connectionHeader.equalsIgnoreCase("close");
+            return request;
+        }
+
+        private static int headerEnd(ByteBuffer buffer) {
+            byte[] bytes = buffer.array();
+            for (int i = 0; i + 3 < buffer.position(); i++) {
+                if (bytes[i] == '\r' && bytes[i + 1] == '\n' && bytes[i + 2] == '\r' && bytes[i + 3] == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static final Map<String, String> CONTENT_TYPES = Map.ofEntries(
+        Map.entry("html", "text/html; charset=utf-8"),
+        Map.entry("htm", "text/html; charset=utf-8"),
+        Map.entry("js", "text/javascript; charset=utf-8"),
+        Map.entry("mjs", "text/javascript; charset=utf-8"),
+        Map.entry("css", "text/css; charset=utf-8"),
+        Map.entry("json", "application/json"),
+        Map.entry("map", "application/json"),
+        Map.entry("txt", "text/plain; charset=utf-8"),
+        Map.entry("xml", "application/xml"),
+        Map.entry("svg", "image/svg+xml"),
+        Map.entry("png", "image/png"),
+        Map.entry("jpg", "image/jpeg"),
+        Map.entry("jpeg", "image/jpeg"),
+        Map.entry("gif", "image/gif"),
+        Map.entry("webp", "image/webp"),
+        Map.entry("avif", "image/avif"),
+        Map.entry("ico", "image/x-icon"),
+        Map.entry("woff", "font/woff"),
+        Map.entry("woff2", "font/woff2"),
+        Map.entry("ttf", "font/ttf"),
+        Map.entry("otf", "font/otf"),
+        Map.entry("wasm", "application/wasm"),
+        Map.entry("mp4", "video/mp4"),
+        Map.entry("webm", "video/webm"),
+        Map.entry("mp3", "audio/mpeg"),
+        Map.entry("wav", "audio/wav")
+    );
+
+    /**
+     * Content encodings of precompressed variants, by order of preference.
+     */
+    private static final List<String> PRECOMPRESSED = List.of("br", "gzip");
+
+    private static final Map<String, String> PRECOMPRESSED_SUFFIXES = Map.of("br", ".br", "gzip", ".gz");
+
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
+    /**
+     * The address the server binds to, and that its URLs point to.
+     */
+    private static final String LOOPBACK = "127.0.0.1";
+
+    private static final int MAX_HEADER_SIZE = 16 * 1024;
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final String ERROR_NOT_STARTED = "Asset server was not started.";
+
+    private static final String WARN_ACCEPT = "Asset server failed to accept a connection.";
+}
@@ -0,0 +1,128 @@
+package net.notjustanna.webview.metrics;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a single bound JavaScript function.
+ * <p>
+ * Latency is measured in nanoseconds, from the moment the webview thread enters the binding until the
+ * callback returns. Request and response sizes are measured in UTF-8 bytes of their JSON payloads.
+ *
+ * @author Anna Silva
+ */
+public final class BindingMetrics {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Latency of the binding callback, in nanoseconds.
+     */
+    @Getter
+    private final Histogram latency = new Histogram();
+
+    /**
+     * Size of the JSON arguments, in UTF-8 bytes.
+     */
+    @Getter
+    private final Histogram requestSize = new Histogram();
+
+    /**
+     * Size of the JSON results and errors, in UTF-8 bytes.
+     */
+    @Getter
+    private final Histogram responseSize = new Histogram();
+
+    /**
+     * Records a call to the binding.
+     *
+     * @param latencyNanos how long the callback ran.
+     * @param request      the JSON arguments.
+     */
+    public void recordCall(long latencyNanos, String request) {
+        calls.increment();
+        latency.record(latencyNanos);
+        requestSize.record(utf8Length(request));
+    }
+
+    /**
+     * Records a call to the binding, whose arguments were never decoded to a string.
+     *
+     * @param latencyNanos how long the callback ran.
+     * @param requestBytes the size of the JSON arguments, in UTF-8 bytes.
+     */
+    public void recordCall(long latencyNanos, long requestBytes) {
+        calls.increment();
+        latency.record(latencyNanos);
+        requestSize.record(requestBytes);
+    }
+
+    /**
+     * Records a response returned to JavaScript.
+     *
+     * @param response the JSON result or error.
+     * @param error    whether the response is an error.
+     */
+    public void recordResponse(String response, boolean error) {
+        responseSize.record(utf8Length(response));
+        if (error) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Returns how many times the binding was called.
+     *
+     * @return The number of calls.
+     */
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * Returns how many calls returned an error to JavaScript.
+     *
+     * @return The number of errors.
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Takes a snapshot of these metrics.
+     *
+     * @return A snapshot of the metrics.
+     */
+    public BindingStats snapshot() {
+        return new BindingStats(
+            getCalls(),
+            getErrors(),
+            latency.snapshot(),
+            requestSize.snapshot(),
+            responseSize.snapshot()
+        );
+    }
+
+    /**
+     * Computes the length of a string encoded as UTF-8, without encoding it.
+     *
+     * @param str the string, may be null.
+     * @return The number of UTF-8 bytes.
+     */
+    static long utf8Length(String str) {
+        if (str == null) {
+            return 0;
+        }
+        int length = str.length();
+        long bytes = length;
+        for (int i = 0; i < length; i++) {
+            char ch = str.charAt(i);
+            if (ch >= 0x80) {
+                // 2 bytes below U+0800, 3 bytes above, and surrogate pairs take 4 bytes for 2 chars.
+                bytes += ch < 0x800 || Character.isSurrogate(ch) ? 1 : 2;
+            }
+        }
+        return bytes;
+    }
+}
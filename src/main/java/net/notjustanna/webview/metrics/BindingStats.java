@@ -0,0 +1,24 @@
+package net.notjustanna.webview.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Point-in-time statistics of a bound JavaScript function.
+ * <p>
+ * Exposed through JMX as composite data.
+ *
+ * @author Anna Silva
+ * @see BindingMetrics
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class BindingStats {
+    private final long calls;
+    private final long errors;
+    private final HistogramStats latencyNanos;
+    private final HistogramStats requestBytes;
+    private final HistogramStats responseBytes;
+}
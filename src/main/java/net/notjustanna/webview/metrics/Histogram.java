@@ -0,0 +1,140 @@
+package net.notjustanna.webview.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free, fixed-size histogram of non-negative {@code long} values.
+ * <p>
+ * Buckets follow the HDR histogram layout: values below {@value #SUB_BUCKET_COUNT} get a bucket
+ * each, and every power of two above that is split into {@value #HALF_COUNT} linear buckets.
+ * Reported values are therefore within about 3% of the recorded ones, across the whole range.
+ * <p>
+ * Recording a value never allocates nor blocks, so histograms can sit on hot paths such as the
+ * webview thread. Reading percentiles walks all buckets, and is meant for monitoring only.
+ *
+ * @author Anna Silva
+ * @implNote Values above {@value #MAX_VALUE} (about 18 minutes, when recording nanoseconds) are
+ * clamped. Reads are not atomic snapshots: values recorded concurrently may be partially seen.
+ */
+public final class Histogram {
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     *
+     * @param value the value to record.
+     */
+    public void record(long value) {
+        long clamped = Math.max(0, Math.min(value, MAX_VALUE));
+        buckets.incrementAndGet(bucketOf(clamped));
+        count.increment();
+        sum.add(clamped);
+        long current;
+        while (clamped > (current = max.get()) && !max.compareAndSet(current, clamped)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Returns how many values were recorded.
+     *
+     * @return The number of recorded values.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the largest recorded value.
+     *
+     * @return The largest value, or zero if nothing was recorded.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return The mean, or zero if nothing was recorded.
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns the value below which the given percentage of recorded values fall.
+     *
+     * @param percentile the percentile, between {@code 0} and {@code 100}.
+     * @return The highest value equivalent to the bucket holding the percentile, or zero if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += buckets.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Takes a snapshot of the usual statistics of this histogram.
+     *
+     * @return A snapshot of the histogram.
+     */
+    public HistogramStats snapshot() {
+        return new HistogramStats(
+            getCount(),
+            getMean(),
+            getValueAtPercentile(50),
+            getValueAtPercentile(90),
+            getValueAtPercentile(99),
+            getValueAtPercentile(99.9),
+            getMax()
+        );
+    }
+
+    private static int bucketOf(long value) {
+        int exponent = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - (PRECISION_BITS - 1));
+        if (exponent == 0) {
+            return (int) value;
+        }
+        return SUB_BUCKET_COUNT + (exponent - 1) * HALF_COUNT + (int) ((value >>> exponent) - HALF_COUNT);
+    }
+
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int exponent = (bucket - SUB_BUCKET_COUNT) / HALF_COUNT + 1;
+        long mantissa = (bucket - SUB_BUCKET_COUNT) % HALF_COUNT + HALF_COUNT;
+        return ((mantissa + 1) << exponent) - 1;
+    }
+
+    private static final int PRECISION_BITS = 6;
+
+    private static final int SUB_BUCKET_COUNT = 1 << PRECISION_BITS;
+
+    private static final int HALF_COUNT = SUB_BUCKET_COUNT / 2;
+
+    private static final long MAX_VALUE = (1L << 40) - 1;
+
+    private static final int BUCKET_COUNT = bucketOf(MAX_VALUE) + 1;
+}
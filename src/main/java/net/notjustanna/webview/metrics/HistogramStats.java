@@ -0,0 +1,25 @@
+package net.notjustanna.webview.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Point-in-time statistics of a {@link Histogram}.
+ * <p>
+ * Exposed through JMX as composite data.
+ *
+ * @author Anna Silva
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class HistogramStats {
+    private final long count;
+    private final double mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+}
@@ -0,0 +1,126 @@
+package net.notjustanna.webview.metrics;
+
+import net.notjustanna.webview.WebviewDispatcher;
+import net.notjustanna.webview.WebviewWatchdog;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metrics registry of a webview: per-binding metrics, and the state of its dispatcher queue.
+ * <p>
+ * Bindings registered through {@link net.notjustanna.webview.WebviewCore#bind WebviewCore.bind}
+ * are recorded automatically. Metrics of a binding are kept after it is unbound, and keep
+ * accumulating if a function with the same name is bound again.
+ *
+ * @author Anna Silva
+ */
+public final class WebviewMetrics implements WebviewMetricsMXBean {
+    private final Map<String, BindingMetrics> bindings = new ConcurrentHashMap<>();
+
+    /**
+     * The dispatcher of the webview. Held weakly, so a registered MXBean doesn't keep a leaked webview reachable.
+     */
+    private final WeakReference<WebviewDispatcher> dispatcherRef;
+
+    /**
+     * Creates a registry for the webview owning the given dispatcher.
+     *
+     * @param dispatcher the dispatcher of the webview.
+     */
+    public WebviewMetrics(@NotNull WebviewDispatcher dispatcher) {
+        this.dispatcherRef = new WeakReference<>(dispatcher);
+    }
+
+    /**
+     * Returns the metrics of a binding, creating them if needed.
+     *
+     * @param name the JavaScript function name.
+     * @return The metrics of the binding.
+     */
+    public @NotNull BindingMetrics binding(@NotNull String name) {
+        return bindings.computeIfAbsent(name, k -> new BindingMetrics());
+    }
+
+    /**
+     * Returns the metrics of every binding recorded so far.
+     *
+     * @return An unmodifiable view of the metrics, by JavaScript function name.
+     */
+    public @NotNull Map<String, BindingMetrics> bindingMetrics() {
+        return Collections.unmodifiableMap(bindings);
+    }
+
+    @Override
+    public int getQueueDepth() {
+        WebviewDispatcher dispatcher = dispatcherRef.get();
+        return dispatcher == null ? 0 : dispatcher.getQueueDepth();
+    }
+
+    @Override
+    public int getPeakQueueDepth() {
+        WebviewDispatcher dispatcher = dispatcherRef.get();
+        return dispatcher == null ? 0 : dispatcher.getPeakQueueDepth();
+    }
+
+    @Override
+    public HistogramStats getQueueDepthStats() {
+        WebviewDispatcher dispatcher = dispatcherRef.get();
+        return (dispatcher == null ? new Histogram() : dispatcher.getQueueDepthHistogram()).snapshot();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        WebviewDispatcher dispatcher = dispatcherRef.get();
+        return dispatcher == null ? 0 : dispatcher.getRejectedCount();
+    }
+
+    @Override
+    public long getDiscardedCount() {
+        WebviewDispatcher dispatcher = dispatcherRef.get();
+        return dispatcher == null ? 0 : dispatcher.getDiscardedCount();
+    }
+
+    @Override
+    public long getDeferredCount() {
+        WebviewDispatcher dispatcher = dispatcherRef.get();
+        return dispatcher == null ? 0 : dispatcher.getDeferredCount();
+    }
+
+    @Override
+    public long getCoalescedCount() {
+        WebviewDispatcher dispatcher = dispatcherRef.get();
+        return dispatcher == null ? 0 : dispatcher.getCoalescedCount();
+    }
+
+    @Override
+    public HistogramStats getEvalBatchSizeStats() {
+        WebviewDispatcher dispatcher = dispatcherRef.get();
+        return (dispatcher == null ? new Histogram() : dispatcher.getEvalBatchSizeHistogram()).snapshot();
+    }
+
+    @Override
+    public HistogramStats getEventLoopLagStats() {
+        WebviewDispatcher dispatcher = dispatcherRef.get();
+        WebviewWatchdog watchdog = dispatcher == null ? null : dispatcher.getWatchdog();
+        return (watchdog == null ? new Histogram() : watchdog.getLagHistogram()).snapshot();
+    }
+
+    @Override
+    public long getStallCount() {
+        WebviewDispatcher dispatcher = dispatcherRef.get();
+        WebviewWatchdog watchdog = dispatcher == null ? null : dispatcher.getWatchdog();
+        return watchdog == null ? 0 : watchdog.getStallCount();
+    }
+
+    @Override
+    public Map<String, BindingStats> getBindings() {
+        Map<String, BindingStats> stats = new TreeMap<>();
+        bindings.forEach((name, metrics) -> stats.put(name, metrics.snapshot()));
+        return stats;
+    }
+}
@@ -0,0 +1,69 @@
+package net.notjustanna.webview.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the metrics of a webview.
+ * <p>
+ * Each webview registers one instance under {@code net.notjustanna.webview:type=Webview,id=<n>},
+ * unless the {@code webview.disable-jmx} system property is set to {@code true}.
+ *
+ * @author Anna Silva
+ * @see WebviewMetrics
+ */
+public interface WebviewMetricsMXBean {
+    /**
+     * @return The number of tasks waiting for the webview thread.
+     */
+    int getQueueDepth();
+
+    /**
+     * @return The highest number of tasks seen waiting for the webview thread.
+     */
+    int getPeakQueueDepth();
+
+    /**
+     * @return Queue depth observed each time the webview thread picked up tasks.
+     */
+    HistogramStats getQueueDepthStats();
+
+    /**
+     * @return The number of tasks rejected by the dispatcher.
+     */
+    long getRejectedCount();
+
+    /**
+     * @return The number of tasks discarded by the dispatcher.
+     */
+    long getDiscardedCount();
+
+    /**
+     * @return The number of tasks queued past capacity by the dispatcher.
+     */
+    long getDeferredCount();
+
+    /**
+     * @return The number of operations dropped because a newer one superseded them.
+     */
+    long getCoalescedCount();
+
+    /**
+     * @return Number of scripts merged into each {@code webview_eval}. Empty unless eval batching is enabled.
+     */
+    HistogramStats getEvalBatchSizeStats();
+
+    /**
+     * @return Event loop lag in nanoseconds, as measured by the watchdog. Empty if the watchdog isn't running.
+     */
+    HistogramStats getEventLoopLagStats();
+
+    /**
+     * @return The number of stalls reported by the watchdog since it was started.
+     */
+    long getStallCount();
+
+    /**
+     * @return Statistics of every binding, by JavaScript function name.
+     */
+    Map<String, BindingStats> getBindings();
+}
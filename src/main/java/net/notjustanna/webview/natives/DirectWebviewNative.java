@@ -0,0 +1,178 @@
+package net.notjustanna.webview.natives;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The {@link NativeBackend#DIRECT} backend, calling the webview library through JNA direct mapping.
+ *
+ * @author Anna Silva
+ * @see WebviewNative
+ */
+final class DirectWebviewNative implements WebviewNative {
+    private DirectWebviewNative() {
+    }
+
+    /**
+     * Registers the {@code native} methods against the extracted library.
+     *
+     * @return The backend.
+     */
+    static WebviewNative load() {
+        Native.register(Natives.class, NativeLibraryLoader.library());
+        return new DirectWebviewNative();
+    }
+
+    @Override
+    public Pointer webview_create(boolean debug, @Nullable Pointer window) {
+        return Natives.webview_create(debug, window);
+    }
+
+    @Override
+    public int webview_destroy(Pointer w) {
+        return Natives.webview_destroy(w);
+    }
+
+    @Override
+    public int webview_run(Pointer w) {
+        return Natives.webview_run(w);
+    }
+
+    @Override
+    public int webview_terminate(Pointer w) {
+        return Natives.webview_terminate(w);
+    }
+
+    @Override
+    public int webview_dispatch(Pointer w, DispatchCallback fn, Pointer arg) {
+        return Natives.webview_dispatch(w, fn, arg);
+    }
+
+    @Override
+    public Pointer webview_get_window(Pointer w) {
+        return Natives.webview_get_window(w);
+    }
+
+    @Override
+    public Pointer webview_get_context(Pointer w, int kind) {
+        return Natives.webview_get_context(w, kind);
+    }
+
+    @Override
+    public int webview_set_title(Pointer w, String title) {
+        return Natives.webview_set_title(w, title);
+    }
+
+    @Override
+    public int webview_set_size(Pointer w, int width, int height, int hints) {
+        return Natives.webview_set_size(w, width, height, hints);
+    }
+
+    @Override
+    public int webview_navigate(Pointer w, String url) {
+        return Natives.webview_navigate(w, url);
+    }
+
+    @Override
+    public int webview_set_html(Pointer w, String html) {
+        return Natives.webview_set_html(w, html);
+    }
+
+    @Override
+    public int webview_set_html(Pointer w, Pointer html) {
+        return Natives.webview_set_html(w, html);
+    }
+
+    @Override
+    public int webview_init(Pointer w, String js) {
+        return Natives.webview_init(w, js);
+    }
+
+    @Override
+    public int webview_init(Pointer w, Pointer js) {
+        return Natives.webview_init(w, js);
+    }
+
+    @Override
+    public int webview_eval(Pointer w, String js) {
+        return Natives.webview_eval(w, js);
+    }
+
+    @Override
+    public int webview_eval(Pointer w, Pointer js) {
+        return Natives.webview_eval(w, js);
+    }
+
+    @Override
+    public int webview_bind(Pointer w, String name, BindCallback fn, Pointer arg) {
+        return Natives.webview_bind(w, name, fn, arg);
+    }
+
+    @Override
+    public int webview_bind_raw(Pointer w, String name, RawBindCallback fn, Pointer arg) {
+        return Natives.webview_bind_raw(w, name, fn, arg);
+    }
+
+    @Override
+    public int webview_unbind(Pointer w, String name) {
+        return Natives.webview_unbind(w, name);
+    }
+
+    @Override
+    public int webview_return(Pointer w, String id, int status, String result) {
+        return Natives.webview_return(w, id, status, result);
+    }
+
+    @Override
+    public VersionInfoStruct webview_version() {
+        return Natives.webview_version();
+    }
+
+    /**
+     * The directly mapped functions. Kept apart, since they share names and parameters with the instance methods.
+     */
+    private static final class Natives {
+        static native Pointer webview_create(boolean debug, Pointer window);
+
+        static native int webview_destroy(Pointer w);
+
+        static native int webview_run(Pointer w);
+
+        static native int webview_terminate(Pointer w);
+
+        static native int webview_dispatch(Pointer w, DispatchCallback fn, Pointer arg);
+
+        static native Pointer webview_get_window(Pointer w);
+
+        static native Pointer webview_get_context(Pointer w, int kind);
+
+        static native int webview_set_title(Pointer w, String title);
+
+        static native int webview_set_size(Pointer w, int width, int height, int hints);
+
+        static native int webview_navigate(Pointer w, String url);
+
+        static native int webview_set_html(Pointer w, String html);
+
+        static native int webview_set_html(Pointer w, Pointer html);
+
+        static native int webview_init(Pointer w, String js);
+
+        static native int webview_init(Pointer w, Pointer js);
+
+        static native int webview_eval(Pointer w, String js);
+
+        static native int webview_eval(Pointer w, Pointer js);
+
+        static native int webview_bind(Pointer w, String name, BindCallback fn, Pointer arg);
+
+        static native int webview_bind_raw(Pointer w, String name, RawBindCallback fn, Pointer arg);
+
+        static native int webview_unbind(Pointer w, String name);
+
+        static native int webview_return(Pointer w, String id, int status, String result);
+
+        static native VersionInfoStruct webview_version();
+    }
+}
@@ -0,0 +1,26 @@
+package net.notjustanna.webview.natives;
+
+/**
+ * The {@link NativeBackend#FFM} backend, calling the webview library through {@code java.lang.foreign}.
+ * <p>
+ * The Foreign Function and Memory API is JVM 21+ specific, so this version only reports it is unavailable.
+ *
+ * @author Anna Silva
+ * @see WebviewNative
+ */
+final class FfmWebviewNative {
+    private FfmWebviewNative() {
+    }
+
+    /**
+     * Looks up the functions of the extracted library.
+     *
+     * @return Never returns.
+     * @throws UnsupportedOperationException Always, since this JVM has no Foreign Function and Memory API.
+     */
+    static WebviewNative load() {
+        throw new UnsupportedOperationException(ERROR_REQUIRES_JAVA_21);
+    }
+
+    private static final String ERROR_REQUIRES_JAVA_21 = "The FFM native backend requires Java 21 or newer.";
+}
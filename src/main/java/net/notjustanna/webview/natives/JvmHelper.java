@@ -1,5 +1,9 @@
 package net.notjustanna.webview.natives;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Helper class for JVM specific operations.
  * <p>
@@ -34,4 +38,22 @@ public class JvmHelper {
     public static boolean isCurrentThreadVirtual() {
         return false;
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates an executor running each task on a new virtual thread.
+     * <p>
+     * Virtual threads are JVM 21+ specific, so this method returns a cached pool of daemon
+     * platform threads instead, which also grows with the number of concurrent tasks.
+     *
+     * @param name the name prefix of the threads.
+     * @return A new executor.
+     */
+    public static ExecutorService newVirtualThreadExecutor(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, name + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
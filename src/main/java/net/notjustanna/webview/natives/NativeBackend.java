@@ -0,0 +1,56 @@
+package net.notjustanna.webview.natives;
+
+import java.util.Locale;
+
+/**
+ * How calls to {@link WebviewNative} reach the native library.
+ * <p>
+ * The backend of {@link WebviewNative#INSTANCE} can be changed with the {@code webview.native.backend}
+ * system property, using either {@code proxy}, {@code direct} or {@code ffm} as the value. All backends behave the same.
+ *
+ * @author Anna Silva
+ */
+public enum NativeBackend {
+    /**
+     * An interface-mapped JNA library, loaded with {@code Native.load}.
+     * <p>
+     * Every call goes through a reflective proxy, then through JNA's generic invocation path.
+     */
+    PROXY,
+
+    /**
+     * JNA direct mapping, registered with {@code Native.register} on {@code native} methods.
+     * <p>
+     * Calls skip the proxy and most of the argument conversion, and go straight through JNI.
+     */
+    DIRECT,
+
+    /**
+     * Downcall and upcall handles of the Foreign Function and Memory API ({@code java.lang.foreign}).
+     * <p>
+     * Calls are cheaper than through JNA, and pointers are passed without conversion. Only available on
+     * JVM 21 started with {@code --enable-preview}; otherwise, {@link WebviewNative#INSTANCE} falls back
+     * to {@link #PROXY}.
+     */
+    FFM;
+
+    /**
+     * Resolves the default backend from the {@code webview.native.backend} system property.
+     *
+     * @return The configured backend, or {@link #PROXY} if none (or an unknown one) was configured.
+     */
+    static NativeBackend fromSystemProperty() {
+        String value = System.getProperty("webview.native.backend");
+        if (value == null) {
+            return PROXY;
+        }
+        switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "direct":
+                return DIRECT;
+            case "ffm":
+                return FFM;
+            default:
+                return PROXY;
+        }
+    }
+}
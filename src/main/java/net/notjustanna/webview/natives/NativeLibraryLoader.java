@@ -0,0 +1,298 @@
+package net.notjustanna.webview.natives;
+
+import com.sun.jna.FunctionMapper;
+import com.sun.jna.Library;
+import com.sun.jna.NativeLibrary;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * Extracts the webview library bundled for the current platform, once for all backends.
+ * <p>
+ * The library is extracted into a per-user cache directory, under the name of the platform and the SHA-256
+ * hash of its content, and reused by every later run. The directory defaults to the usual cache directory of
+ * the platform, and can be changed with the {@code webview.native.cache} system property. Concurrent launches
+ * are serialized with a file lock, and an extraction only becomes visible once complete.
+ * <p>
+ * A cached library is only reused if it is a regular file of the size of the bundled one and, on POSIX file
+ * systems, if it and its directory belong to the current user and can't be written to by anyone else.
+ * Otherwise, it is extracted again.
+ * <p>
+ * If the cache directory can't be written to, the library is extracted into a temporary file instead.
+ *
+ * @author Anna Silva
+ */
+@Log
+final class NativeLibraryLoader {
+    /**
+     * Options shared by all JNA backends.
+     */
+    static final Map<String, Object> OPTIONS = Map.of(
+        Library.OPTION_STRING_ENCODING, "UTF-8",
+        Library.OPTION_FUNCTION_MAPPER, (FunctionMapper) NativeLibraryLoader::functionName
+    );
+
+    private NativeLibraryLoader() {
+    }
+
+    /**
+     * Maps methods named apart from the native function they call, such as {@link WebviewNative#webview_bind_raw},
+     * for both the proxy and the direct backends.
+     */
+    private static String functionName(NativeLibrary library, Method method) {
+        String name = method.getName();
+        return name.equals("webview_bind_raw") ? "webview_bind" : name;
+    }
+
+    /**
+     * @return The absolute path of the extracted library.
+     */
+    static String path() {
+        return Holder.PATH;
+    }
+
+    /**
+     * @return The extracted library, loaded once and shared by all backends.
+     */
+    static NativeLibrary library() {
+        return Holder.LIBRARY;
+    }
+
+    /**
+     * Loads the library with the backend selected by the {@code webview.native.backend} system property,
+     * falling back to {@link NativeBackend#PROXY} if it isn't available on this JVM.
+     *
+     * @return The loaded library.
+     */
+    static WebviewNative loadDefault() {
+        NativeBackend backend = NativeBackend.fromSystemProperty();
+        try {
+            return WebviewNative.load(backend);
+        } catch (UnsupportedOperationException e) {
+            log.log(Level.WARNING, WARN_BACKEND_UNAVAILABLE.formatted(backend), e);
+            return WebviewNative.load(NativeBackend.PROXY);
+        }
+    }
+
+    private static final class Holder {
+        private static final String PATH = extract();
+        private static final NativeLibrary LIBRARY = NativeLibrary.getInstance(PATH, OPTIONS);
+    }
+
+    private static String extract() {
+        String libName = PlatformSpecific.current.getBinaryName();
+        String packageName = PlatformSpecific.current.getPackageName();
+
+        Class<WebviewNative> cls = WebviewNative.class;
+        String lib = "/" + cls.getPackage().getName().replace('.', '/') + "/" + packageName + "/" + libName;
+
+        // The hash is written next to the library when the natives are packaged, so a cached library is
+        // found without reading it. Hashing it at runtime is only a fallback.
+        String hash = readHash(cls, lib + ".sha256");
+        byte[] content = null;
+        long size;
+        if (hash == null) {
+            content = readLibrary(cls, lib, libName);
+            hash = sha256(content);
+            size = content.length;
+        } else {
+            size = resourceSize(cls, lib);
+        }
+
+        Path dir = cacheDirectory().resolve(packageName).resolve(hash);
+        Path cached = dir.resolve(libName).toAbsolutePath();
+        if (size >= 0 && isTrusted(cached, size)) {
+            return cached.toString();
+        }
+
+        if (content == null) {
+            content = readLibrary(cls, lib, libName);
+        }
+        try {
+            return extractToCache(dir, cached, content).toString();
+        } catch (IOException e) {
+            log.log(Level.WARNING, WARN_CACHE_UNAVAILABLE.formatted(dir), e);
+        }
+
+        try {
+            Path temp = Files.createTempFile(PlatformSpecific.current.getFileName(), '.' + PlatformSpecific.current.getFileExtension());
+            temp.toFile().deleteOnExit();
+            Files.write(temp, content);
+            return temp.toAbsolutePath().toString();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load native library: " + libName, e);
+        }
+    }
+
+    private static byte[] readLibrary(Class<?> cls, String lib, String libName) {
+        try (InputStream in = cls.getResourceAsStream(lib)) {
+            Objects.requireNonNull(in, "Native library not found. It might be a missing dependency.");
+            return in.readAllBytes();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load native library: " + libName, e);
+        }
+    }
+
+    /**
+     * @return The hex SHA-256 stored in the given resource, or {@code null} if missing or malformed.
+     */
+    private static String readHash(Class<?> cls, String resource) {
+        try (InputStream in = cls.getResourceAsStream(resource)) {
+            if (in == null) {
+                return null;
+            }
+            String hash = new String(in.readAllBytes(), StandardCharsets.US_ASCII).trim().toLowerCase(Locale.ROOT);
+            return hash.matches("[0-9a-f]{64}") ? hash : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return The size of a resource, without reading it, or {@code -1} if unknown.
+     */
+    private static long resourceSize(Class<?> cls, String resource) {
+        try (InputStream in = cls.getResourceAsStream(resource)) {
+            // Streams of jar entries and files report their exact remaining size, unlike the headers of a
+            // URLConnection, which are much slower to initialize.
+            int size = in == null ? 0 : in.available();
+            return size > 0 ? size : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Checks that a cached library can be loaded as is.
+     * <p>
+     * Hashing it would cost as much as extracting it, so only its size and, where supported, its ownership and
+     * permissions are checked: a truncated file is extracted again, and a file planted by another user in a
+     * shared cache directory is never loaded.
+     *
+     * @param file the cached library.
+     * @param size the size of the bundled library.
+     * @return {@code true} if the file can be reused.
+     */
+    private static boolean isTrusted(Path file, long size) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (!attributes.isRegularFile() || attributes.size() != size) {
+                return false;
+            }
+            if (!file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                return true;
+            }
+            UserPrincipal user = file.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName(System.getProperty("user.name"));
+            return isPrivate(file, user) && isPrivate(file.getParent(), user);
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return Whether a file belongs to the given user, and can't be written to by anyone else.
+     */
+    private static boolean isPrivate(Path path, UserPrincipal user) throws IOException {
+        PosixFileAttributes attributes = Files.readAttributes(path, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        Set<PosixFilePermission> permissions = attributes.permissions();
+        return attributes.owner().equals(user)
+            && !permissions.contains(PosixFilePermission.GROUP_WRITE)
+            && !permissions.contains(PosixFilePermission.OTHERS_WRITE);
+    }
+
+    /**
+     * Extracts the library into its cache directory, unless a previous run already did.
+     *
+     * @return The path of the cached library.
+     */
+    private static Path extractToCache(Path dir, Path target, byte[] content) throws IOException {
+        Files.createDirectories(dir);
+        if (dir.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            // Fails if the directory belongs to another user, in which case the library isn't cached.
+            Files.setPosixFilePermissions(dir, PosixFilePermissions.fromString("rwx------"));
+        }
+        try (FileChannel lockChannel = FileChannel.open(dir.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = lockChannel.lock();
+            try {
+                // Another launch may have extracted it while we waited for the lock.
+                if (isTrusted(target, content.length)) {
+                    return target;
+                }
+                Path partial = Files.createTempFile(dir, target.getFileName().toString(), ".part");
+                try {
+                    Files.write(partial, content);
+                    try {
+                        Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } finally {
+                    Files.deleteIfExists(partial);
+                }
+            } finally {
+                lock.release();
+            }
+        }
+        return target;
+    }
+
+    /**
+     * @return The directory set by the {@code webview.native.cache} system property, or else the usual
+     * per-user cache directory of the platform.
+     */
+    private static Path cacheDirectory() {
+        String configured = System.getProperty("webview.native.cache");
+        if (configured != null && !configured.isBlank()) {
+            return Path.of(configured);
+        }
+
+        Path home = Path.of(System.getProperty("user.home"));
+        if (PlatformSpecific.current.isWindows()) {
+            String localAppData = System.getenv("LOCALAPPDATA");
+            Path base = localAppData != null ? Path.of(localAppData) : home.resolve("AppData").resolve("Local");
+            return base.resolve("webview_java").resolve("natives");
+        }
+        if (PlatformSpecific.current == PlatformSpecific.DARWIN) {
+            return home.resolve("Library").resolve("Caches").resolve("webview_java").resolve("natives");
+        }
+        String xdgCache = System.getenv("XDG_CACHE_HOME");
+        Path base = xdgCache != null && !xdgCache.isBlank() ? Path.of(xdgCache) : home.resolve(".cache");
+        return base.resolve("webview_java").resolve("natives");
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final String WARN_BACKEND_UNAVAILABLE = "Native backend %s is not available, falling back to JNA.";
+    private static final String WARN_CACHE_UNAVAILABLE = "Could not cache the native library in %s, extracting it to a temporary file instead.";
+}
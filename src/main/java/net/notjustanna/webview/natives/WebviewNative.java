@@ -3,13 +3,8 @@ package net.notjustanna.webview.natives;
 import com.sun.jna.*;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 
 /**
  * This interface is used to load the native library for Webview.
@@ -17,7 +12,15 @@ import java.util.Objects;
  * @author Alex Bowles, Anna Silva
  */
 public interface WebviewNative extends Library {
-    WebviewNative INSTANCE = init();
+    /**
+     * Options of the library, such as decoding strings as UTF-8.
+     * <p>
+     * JNA looks this field up for the callbacks declared here, whichever backend loaded the library, so the
+     * strings passed to a {@link BindCallback} are decoded the same way by all of them.
+     */
+    Map<String, Object> OPTIONS = NativeLibraryLoader.OPTIONS;
+
+    WebviewNative INSTANCE = NativeLibraryLoader.loadDefault();
 
     /**
      * Width and height are default size.
@@ -244,6 +247,15 @@ public interface WebviewNative extends Library {
     // WEBVIEW_API webview_error_t webview_set_html(webview_t w, const char *html);
     int webview_set_html(Pointer w, String html);
 
+    /**
+     * Same as {@link #webview_set_html(Pointer, String)}, with content already encoded.
+     *
+     * @param w    The webview instance.
+     * @param html HTML content, as a NUL-terminated UTF-8 string in native memory.
+     * @return {@link WebviewNative#ERROR_OK} on success, other error codes on failure.
+     */
+    int webview_set_html(Pointer w, Pointer html);
+
     /**
      * Injects JavaScript code to be executed immediately upon loading a page.
      * The code will be executed before window.onload.
@@ -255,6 +267,15 @@ public interface WebviewNative extends Library {
     // WEBVIEW_API webview_error_t webview_init(webview_t w, const char *js);
     int webview_init(Pointer w, String js);
 
+    /**
+     * Same as {@link #webview_init(Pointer, String)}, with content already encoded.
+     *
+     * @param w    The webview instance.
+     * @param js   JS content, as a NUL-terminated UTF-8 string in native memory.
+     * @return {@link WebviewNative#ERROR_OK} on success, other error codes on failure.
+     */
+    int webview_init(Pointer w, Pointer js);
+
     /**
      * Evaluates arbitrary JavaScript code.
      * <p>
@@ -267,6 +288,15 @@ public interface WebviewNative extends Library {
     // WEBVIEW_API webview_error_t webview_eval(webview_t w, const char *js);
     int webview_eval(Pointer w, String js);
 
+    /**
+     * Same as {@link #webview_eval(Pointer, String)}, with content already encoded.
+     *
+     * @param w    The webview instance.
+     * @param js   JS content, as a NUL-terminated UTF-8 string in native memory.
+     * @return {@link WebviewNative#ERROR_OK} on success, other error codes on failure.
+     */
+    int webview_eval(Pointer w, Pointer js);
+
 
     /**
      * Binds a function pointer to a new global JavaScript function.
@@ -295,6 +325,32 @@ public interface WebviewNative extends Library {
         void callback(String id, String req, Pointer arg);
     }
 
+    /**
+     * Same as {@link #webview_bind(Pointer, String, BindCallback, Pointer)}, with a callback receiving the
+     * identifier and the request as they are in native memory, without decoding them to strings.
+     * <p>
+     * Named apart from {@code webview_bind} so lambdas passed to either stay unambiguous, but calls the same
+     * native function.
+     *
+     * @param w    The webview instance.
+     * @param name Name of the JS function.
+     * @param fn   Callback function.
+     * @param arg  User argument.
+     * @return {@link WebviewNative#ERROR_OK} on success, WEBVIEW_ERROR_DUPLICATE, if a binding already exists with the specified name, other error codes on failure.
+     */
+    int webview_bind_raw(Pointer w, String name, RawBindCallback fn, Pointer arg);
+
+    @FunctionalInterface
+    interface RawBindCallback extends Callback {
+        /**
+         * @param id  The identifier of the binding call, as a NUL-terminated UTF-8 string.
+         * @param req A JSON array of the arguments passed to the JS function, as a NUL-terminated UTF-8 string.
+         * @param arg User argument.
+         * @implNote Both strings are owned by the webview library, and only valid until the callback returns.
+         */
+        void callback(Pointer id, Pointer req, Pointer arg);
+    }
+
     /**
      * Removes a binding created with webview_bind().
      *
@@ -355,24 +411,29 @@ public interface WebviewNative extends Library {
         }
     }
 
-    private static WebviewNative init() {
-        String libName = PlatformSpecific.current.getBinaryName();
-        String packageName = PlatformSpecific.current.getPackageName();
-
-        Class<WebviewNative> cls = WebviewNative.class;
-        String lib = "/" + cls.getPackage().getName().replace('.', '/') + "/" + packageName + "/" + libName;
-
-        File temp;
-        try (InputStream in = cls.getResourceAsStream(lib)) {
-            Objects.requireNonNull(in, "Native library not found. It might be a missing dependency.");
-            temp = File.createTempFile(PlatformSpecific.current.getFileName(), '.' + PlatformSpecific.current.getFileExtension());
-            temp.deleteOnExit();
-            Files.copy(in, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to load native library: " + libName, e);
+    /**
+     * Loads the webview library bundled for the current platform with the given backend.
+     * <p>
+     * The library is only extracted once. Most code should use {@link #INSTANCE} instead, whose backend
+     * is selected by the {@code webview.native.backend} system property.
+     *
+     * @param backend How calls reach the native library.
+     * @return The loaded library.
+     * @throws UnsupportedOperationException If the backend isn't available on this JVM.
+     */
+    static WebviewNative load(NativeBackend backend) {
+        switch (backend) {
+            case DIRECT:
+                return DirectWebviewNative.load();
+            case FFM:
+                try {
+                    return FfmWebviewNative.load();
+                } catch (LinkageError e) {
+                    throw new UnsupportedOperationException("The FFM native backend requires Java 21 with --enable-preview.", e);
+                }
+            case PROXY:
+            default:
+                return Native.load(NativeLibraryLoader.path(), WebviewNative.class, NativeLibraryLoader.OPTIONS);
         }
-
-        System.load(temp.getAbsolutePath());
-        return Native.load(temp.getAbsolutePath(), cls, Map.of(Library.OPTION_STRING_ENCODING, "UTF-8"));
     }
 }
@@ -0,0 +1,419 @@
+package net.notjustanna.webview.natives;
+
+import com.sun.jna.Callback;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Pointer;
+import com.sun.jna.Structure;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+/**
+ * The {@link NativeBackend#FFM} backend, calling the webview library through {@code java.lang.foreign}.
+ * <p>
+ * Each function is a downcall handle to the library loaded by JNA, so it is only loaded once, and string arguments are encoded into a confined arena which lives for
+ * the duration of the call. Pointer arguments, including pre-encoded strings, are passed without copying.
+ * <p>
+ * Callbacks go through two upcall stubs built once, one for dispatch and one for bindings. The user argument
+ * given to the webview library is a key into a table of the Java callbacks instead, which keeps each callback
+ * reachable for as long as the webview library may call it: until it runs for dispatch, and until the binding
+ * is removed or replaced for bindings. Both are released once their webview is destroyed.
+ *
+ * @author Anna Silva
+ * @implNote The Foreign Function and Memory API is a preview API on JVM 21, so this class only loads when
+ * the JVM runs with {@code --enable-preview}.
+ * @see WebviewNative
+ */
+final class FfmWebviewNative implements WebviewNative {
+    private static final Linker LINKER = Linker.nativeLinker();
+
+    private final MethodHandle create;
+    private final MethodHandle destroy;
+    private final MethodHandle run;
+    private final MethodHandle terminate;
+    private final MethodHandle dispatch;
+    private final MethodHandle getWindow;
+    private final MethodHandle getContext;
+    private final MethodHandle setTitle;
+    private final MethodHandle setSize;
+    private final MethodHandle navigate;
+    private final MethodHandle setHtml;
+    private final MethodHandle init;
+    private final MethodHandle eval;
+    private final MethodHandle bind;
+    private final MethodHandle unbind;
+    private final MethodHandle returns;
+    private final MethodHandle version;
+
+    private final MemorySegment dispatchStub;
+    private final MemorySegment bindStub;
+
+    private final AtomicLong nextKey = new AtomicLong(1);
+    private final Map<Long, Registration<DispatchCallback>> dispatches = new ConcurrentHashMap<>();
+    private final Map<Long, Registration<Callback>> bindings = new ConcurrentHashMap<>();
+
+    /**
+     * Binding keys by webview and binding name, to release the callback on unbind.
+     */
+    private final Map<BindingName, Long> bindingKeys = new ConcurrentHashMap<>();
+
+    private FfmWebviewNative() {
+        NativeLibrary library = NativeLibraryLoader.library();
+        SymbolLookup lookup = name -> {
+            try {
+                return Optional.of(MemorySegment.ofAddress(Pointer.nativeValue(library.getFunction(name))));
+            } catch (UnsatisfiedLinkError e) {
+                return Optional.empty();
+            }
+        };
+        create = downcall(lookup, "webview_create", FunctionDescriptor.of(ADDRESS, JAVA_INT, ADDRESS));
+        destroy = downcall(lookup, "webview_destroy", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+        run = downcall(lookup, "webview_run", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+        terminate = downcall(lookup, "webview_terminate", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+        dispatch = downcall(lookup, "webview_dispatch", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS));
+        getWindow = downcall(lookup, "webview_get_window", FunctionDescriptor.of(ADDRESS, ADDRESS));
+        getContext = downcall(lookup, "webview_get_context", FunctionDescriptor.of(ADDRESS, ADDRESS, JAVA_INT));
+        setTitle = downcall(lookup, "webview_set_title", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+        setSize = downcall(lookup, "webview_set_size", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT, JAVA_INT));
+        navigate = downcall(lookup, "webview_navigate", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+        setHtml = downcall(lookup, "webview_set_html", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+        init = downcall(lookup, "webview_init", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+        eval = downcall(lookup, "webview_eval", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+        bind = downcall(lookup, "webview_bind", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS, ADDRESS));
+        unbind = downcall(lookup, "webview_unbind", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+        returns = downcall(lookup, "webview_return", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, JAVA_INT, ADDRESS));
+        version = downcall(lookup, "webview_version", FunctionDescriptor.of(ADDRESS));
+
+        try {
+            MethodHandles.Lookup self = MethodHandles.lookup();
+            MethodHandle onDispatch = self.findVirtual(FfmWebviewNative.class, "onDispatch",
+                MethodType.methodType(void.class, MemorySegment.class, MemorySegment.class)).bindTo(this);
+            MethodHandle onBind = self.findVirtual(FfmWebviewNative.class, "onBind",
+                MethodType.methodType(void.class, MemorySegment.class, MemorySegment.class, MemorySegment.class)).bindTo(this);
+            dispatchStub = LINKER.upcallStub(onDispatch, FunctionDescriptor.ofVoid(ADDRESS, ADDRESS), Arena.global());
+            bindStub = LINKER.upcallStub(onBind, FunctionDescriptor.ofVoid(ADDRESS, ADDRESS, ADDRESS), Arena.global());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Looks up the functions of the extracted library.
+     *
+     * @return The backend.
+     */
+    static WebviewNative load() {
+        return new FfmWebviewNative();
+    }
+
+    @Override
+    public Pointer webview_create(boolean debug, @Nullable Pointer window) {
+        try {
+            return pointer((MemorySegment) create.invokeExact(debug ? 1 : 0, segment(window)));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int webview_destroy(Pointer w) {
+        try {
+            return (int) destroy.invokeExact(segment(w));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        } finally {
+            release(Pointer.nativeValue(w));
+        }
+    }
+
+    @Override
+    public int webview_run(Pointer w) {
+        try {
+            return (int) run.invokeExact(segment(w));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int webview_terminate(Pointer w) {
+        try {
+            return (int) terminate.invokeExact(segment(w));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int webview_dispatch(Pointer w, DispatchCallback fn, Pointer arg) {
+        long key = nextKey.getAndIncrement();
+        dispatches.put(key, new Registration<>(Pointer.nativeValue(w), fn, arg));
+        try {
+            int result = (int) dispatch.invokeExact(segment(w), dispatchStub, MemorySegment.ofAddress(key));
+            if (result != ERROR_OK) {
+                dispatches.remove(key);
+            }
+            return result;
+        } catch (Throwable t) {
+            dispatches.remove(key);
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public Pointer webview_get_window(Pointer w) {
+        try {
+            return pointer((MemorySegment) getWindow.invokeExact(segment(w)));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public Pointer webview_get_context(Pointer w, int kind) {
+        try {
+            return pointer((MemorySegment) getContext.invokeExact(segment(w), kind));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int webview_set_title(Pointer w, String title) {
+        return callWithString(setTitle, w, title);
+    }
+
+    @Override
+    public int webview_set_size(Pointer w, int width, int height, int hints) {
+        try {
+            return (int) setSize.invokeExact(segment(w), width, height, hints);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int webview_navigate(Pointer w, String url) {
+        return callWithString(navigate, w, url);
+    }
+
+    @Override
+    public int webview_set_html(Pointer w, String html) {
+        return callWithString(setHtml, w, html);
+    }
+
+    @Override
+    public int webview_set_html(Pointer w, Pointer html) {
+        return callWithPointer(setHtml, w, html);
+    }
+
+    @Override
+    public int webview_init(Pointer w, String js) {
+        return callWithString(init, w, js);
+    }
+
+    @Override
+    public int webview_init(Pointer w, Pointer js) {
+        return callWithPointer(init, w, js);
+    }
+
+    @Override
+    public int webview_eval(Pointer w, String js) {
+        return callWithString(eval, w, js);
+    }
+
+    @Override
+    public int webview_eval(Pointer w, Pointer js) {
+        return callWithPointer(eval, w, js);
+    }
+
+    @Override
+    public int webview_bind(Pointer w, String name, BindCallback fn, Pointer arg) {
+        return bind(w, name, fn, arg);
+    }
+
+    @Override
+    public int webview_bind_raw(Pointer w, String name, RawBindCallback fn, Pointer arg) {
+        return bind(w, name, fn, arg);
+    }
+
+    private int bind(Pointer w, String name, Callback fn, Pointer arg) {
+        BindingName bindingName = new BindingName(Pointer.nativeValue(w), name);
+        long key = nextKey.getAndIncrement();
+        bindings.put(key, new Registration<>(Pointer.nativeValue(w), fn, arg));
+        try (Arena arena = Arena.ofConfined()) {
+            int result = (int) bind.invokeExact(segment(w), string(arena, name), bindStub, MemorySegment.ofAddress(key));
+            if (result == ERROR_OK) {
+                Long previous = bindingKeys.put(bindingName, key);
+                if (previous != null) {
+                    bindings.remove(previous);
+                }
+            } else {
+                bindings.remove(key);
+            }
+            return result;
+        } catch (Throwable t) {
+            bindings.remove(key);
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int webview_unbind(Pointer w, String name) {
+        int result = callWithString(unbind, w, name);
+        if (result == ERROR_OK) {
+            Long key = bindingKeys.remove(new BindingName(Pointer.nativeValue(w), name));
+            if (key != null) {
+                bindings.remove(key);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int webview_return(Pointer w, String id, int status, String result) {
+        try (Arena arena = Arena.ofConfined()) {
+            return (int) returns.invokeExact(segment(w), string(arena, id), status, string(arena, result));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public VersionInfoStruct webview_version() {
+        try {
+            Pointer pointer = pointer((MemorySegment) version.invokeExact());
+            if (pointer == null) {
+                return null;
+            }
+            VersionInfoStruct info = Structure.newInstance(VersionInfoStruct.class, pointer);
+            info.read();
+            return info;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Releases the callbacks of a destroyed webview: its bindings, and dispatches which never ran.
+     */
+    private void release(long webview) {
+        dispatches.values().removeIf(registration -> registration.webview == webview);
+        bindings.values().removeIf(registration -> registration.webview == webview);
+        bindingKeys.keySet().removeIf(bindingName -> bindingName.webview == webview);
+    }
+
+    /**
+     * Target of the dispatch upcall stub. Each dispatched callback runs once.
+     */
+    private void onDispatch(MemorySegment w, MemorySegment arg) {
+        Registration<DispatchCallback> registration = dispatches.remove(arg.address());
+        if (registration == null) {
+            return;
+        }
+        try {
+            registration.callback.callback(pointer(w), registration.arg);
+        } catch (Throwable t) {
+            uncaught(registration.callback, t);
+        }
+    }
+
+    /**
+     * Target of the binding upcall stub, for both {@link BindCallback} and {@link RawBindCallback}.
+     */
+    private void onBind(MemorySegment id, MemorySegment req, MemorySegment arg) {
+        Registration<Callback> registration = bindings.get(arg.address());
+        if (registration == null) {
+            return;
+        }
+        try {
+            if (registration.callback instanceof RawBindCallback raw) {
+                raw.callback(pointer(id), pointer(req), registration.arg);
+            } else {
+                ((BindCallback) registration.callback).callback(javaString(id), javaString(req), registration.arg);
+            }
+        } catch (Throwable t) {
+            uncaught(registration.callback, t);
+        }
+    }
+
+    private int callWithString(MethodHandle handle, Pointer w, String value) {
+        try (Arena arena = Arena.ofConfined()) {
+            return (int) handle.invokeExact(segment(w), string(arena, value));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private int callWithPointer(MethodHandle handle, Pointer w, Pointer value) {
+        try {
+            return (int) handle.invokeExact(segment(w), segment(value));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static MethodHandle downcall(SymbolLookup lookup, String name, FunctionDescriptor descriptor) {
+        MemorySegment symbol = lookup.find(name).orElseThrow(() -> new UnsatisfiedLinkError(ERROR_SYMBOL_NOT_FOUND + name));
+        return LINKER.downcallHandle(symbol, descriptor);
+    }
+
+    private static MemorySegment segment(@Nullable Pointer pointer) {
+        return pointer == null ? MemorySegment.NULL : MemorySegment.ofAddress(Pointer.nativeValue(pointer));
+    }
+
+    private static Pointer pointer(MemorySegment segment) {
+        return segment.address() == 0 ? null : new Pointer(segment.address());
+    }
+
+    private static MemorySegment string(Arena arena, @Nullable String value) {
+        return value == null ? MemorySegment.NULL : arena.allocateUtf8String(value);
+    }
+
+    private static String javaString(MemorySegment segment) {
+        return segment.address() == 0 ? null : segment.reinterpret(Long.MAX_VALUE).getUtf8String(0);
+    }
+
+    /**
+     * Reports an exception thrown by a callback like JNA does, since it must not unwind into native code.
+     */
+    private static void uncaught(Callback callback, Throwable t) {
+        Callback.UncaughtExceptionHandler handler = Native.getCallbackExceptionHandler();
+        if (handler != null) {
+            handler.uncaughtException(callback, t);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException e) {
+            throw e;
+        }
+        if (t instanceof Error e) {
+            throw e;
+        }
+        throw new IllegalStateException(t);
+    }
+
+    private record Registration<T extends Callback>(long webview, T callback, Pointer arg) {
+    }
+
+    private record BindingName(long webview, String name) {
+    }
+
+    private static final String ERROR_SYMBOL_NOT_FOUND = "Webview library has no symbol ";
+}
@@ -1,5 +1,8 @@
 package net.notjustanna.webview.natives;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * Helper class for JVM specific operations.
  * <p>
@@ -35,4 +38,14 @@ public class JvmHelper {
     public static boolean isCurrentThreadVirtual() {
         return Thread.currentThread().isVirtual();
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates an executor running each task on a new virtual thread.
+     *
+     * @param name the name prefix of the threads.
+     * @return A new executor.
+     */
+    public static ExecutorService newVirtualThreadExecutor(String name) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+}
@@ -0,0 +1,72 @@
+package net.notjustanna.webview;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares dispatch throughput between {@link DispatchMode#PER_TASK} and {@link DispatchMode#BATCHED}.
+ * <p>
+ * Several producer threads flood the dispatcher with tiny tasks, and the time until
+ * all of them ran on the webview thread is reported for each mode.
+ */
+public class DispatcherBenchmark {
+    private static final int PRODUCERS = 4;
+    private static final int TASKS_PER_PRODUCER = 50_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        try (var webview = new WebviewStandalone(false)) {
+            webview.setTitle("Webview - Dispatcher Benchmark").setSize(400, 300);
+
+            Thread bench = new Thread(() -> {
+                try {
+                    for (DispatchMode mode : DispatchMode.values()) {
+                        runMode(webview.getDispatcher(), mode, 1); // warmup
+                    }
+                    for (DispatchMode mode : DispatchMode.values()) {
+                        runMode(webview.getDispatcher(), mode, ROUNDS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    webview.terminate();
+                }
+            }, "dispatcher-benchmark");
+            bench.start();
+
+            webview.run();
+        }
+    }
+
+    private static void runMode(WebviewDispatcher dispatcher, DispatchMode mode, int rounds) throws InterruptedException {
+        dispatcher.setMode(mode);
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            best = Math.min(best, runRound(dispatcher));
+        }
+        int tasks = PRODUCERS * TASKS_PER_PRODUCER;
+        double seconds = best / 1e9;
+        System.out.printf("%-9s %,d tasks in %.1f ms (%,.0f tasks/s)%n", mode, tasks, best / 1e6, tasks / seconds);
+    }
+
+    private static long runRound(WebviewDispatcher dispatcher) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(PRODUCERS * TASKS_PER_PRODUCER);
+        Thread[] producers = new Thread[PRODUCERS];
+        long start = System.nanoTime();
+        for (int i = 0; i < PRODUCERS; i++) {
+            producers[i] = new Thread(() -> {
+                for (int j = 0; j < TASKS_PER_PRODUCER; j++) {
+                    dispatcher.execute(done::countDown);
+                }
+            });
+            producers[i].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        if (!done.await(5, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Dispatcher did not finish in time");
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,109 @@
+package net.notjustanna.webview.natives;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Compares the per-call cost of each {@link NativeBackend}.
+ * <p>
+ * Cheap functions are called in a tight loop on a webview which is never run, so the time
+ * reported is mostly the cost of getting from Java to the native library and back.
+ * <p>
+ * Before that, a page calls a binding registered through each backend with a non-ASCII argument, checking
+ * they all decode requests as UTF-8. This briefly shows a window.
+ */
+public class NativeBackendBenchmark {
+    private static final int CALLS = 1_000_000;
+    private static final int ROUNDS = 5;
+    private static final String NON_ASCII = "\u65e5\u672c\u00e9";
+
+    public static void main(String[] args) {
+        List<NativeBackend> available = new ArrayList<>();
+        List<WebviewNative> loaded = new ArrayList<>();
+        for (NativeBackend backend : NativeBackend.values()) {
+            try {
+                loaded.add(WebviewNative.load(backend));
+                available.add(backend);
+            } catch (UnsupportedOperationException e) {
+                System.out.printf("%-6s skipped: %s%n", backend, e.getMessage());
+            }
+        }
+        NativeBackend[] backends = available.toArray(NativeBackend[]::new);
+        WebviewNative[] natives = loaded.toArray(WebviewNative[]::new);
+
+        Pointer webview = natives[0].webview_create(false, null);
+        if (webview == null) {
+            throw new IllegalStateException("Failed to create webview");
+        }
+        try {
+            checkBindEncoding(backends, natives, webview);
+
+            Memory script = new Memory(2);
+            script.setString(0, "0", "UTF-8");
+
+            for (int warmup = 0; warmup < 2; warmup++) {
+                for (int i = 0; i < backends.length; i++) {
+                    WebviewNative n = natives[i];
+                    boolean print = warmup == 1;
+                    run(print, backends[i], "webview_get_window", w -> n.webview_get_window(w) == null ? 0 : 1, webview);
+                    run(print, backends[i], "webview_eval(String)", w -> n.webview_eval(w, "0"), webview);
+                    run(print, backends[i], "webview_eval(Pointer)", w -> n.webview_eval(w, script), webview);
+                    run(print, backends[i], "webview_set_title", w -> n.webview_set_title(w, "Benchmark"), webview);
+                }
+            }
+        } finally {
+            natives[0].webview_destroy(webview);
+        }
+    }
+
+    /**
+     * Calls a binding of each backend from a page, and reports whether the request arrived intact.
+     */
+    private static void checkBindEncoding(NativeBackend[] backends, WebviewNative[] natives, Pointer webview) {
+        String expected = "[\"" + NON_ASCII + "\"]";
+        String[] received = new String[backends.length];
+        // Kept reachable until the page is done calling them.
+        List<WebviewNative.BindCallback> callbacks = new ArrayList<>();
+        StringBuilder calls = new StringBuilder();
+        for (int i = 0; i < backends.length; i++) {
+            int index = i;
+            WebviewNative n = natives[i];
+            WebviewNative.BindCallback callback = (id, req, arg) -> {
+                received[index] = req;
+                n.webview_return(webview, id, 0, "null");
+            };
+            callbacks.add(callback);
+            n.webview_bind(webview, "check" + i, callback, null);
+            calls.append("check").append(i).append("('").append(NON_ASCII).append("'),");
+        }
+        WebviewNative.BindCallback done = (id, req, arg) -> natives[0].webview_terminate(webview);
+        callbacks.add(done);
+        natives[0].webview_bind(webview, "done", done, null);
+        natives[0].webview_set_html(webview, "<script>Promise.all([" + calls + "]).then(function() { done(); });</script>");
+        natives[0].webview_run(webview);
+
+        for (int i = 0; i < backends.length; i++) {
+            System.out.printf("%-6s %-22s %s%n", backends[i], "webview_bind(UTF-8)",
+                expected.equals(received[i]) ? "ok" : "MISMATCH, got " + received[i]);
+        }
+    }
+
+    private static void run(boolean print, NativeBackend backend, String name, ToIntFunction<Pointer> call, Pointer webview) {
+        long best = Long.MAX_VALUE;
+        int sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CALLS; i++) {
+                sink += call.applyAsInt(webview);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (print) {
+            System.out.printf("%-6s %-22s %6.1f ns/call (%d)%n", backend, name, (double) best / CALLS, sink & 1);
+        }
+    }
+}